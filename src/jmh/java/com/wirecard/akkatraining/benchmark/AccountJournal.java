@@ -0,0 +1,53 @@
+package com.wirecard.akkatraining.benchmark;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountState;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates the events of an account with completed transfers, as the {@code Account}
+ * aggregate would have persisted them.
+ */
+public final class AccountJournal {
+
+  private static final Money initialBalance = Money.of("1000000000", "EUR");
+
+  private AccountJournal() {
+  }
+
+  public static List<Object> created(AccountId accountId) {
+    List<Object> events = new ArrayList<>();
+    events.add(new AccountProtocol.Created(accountId, "account", initialBalance, Money.of("0", "EUR")));
+    return events;
+  }
+
+  /**
+   * State after any number of the generated transfers, the account credits itself what it is debited.
+   */
+  public static AccountState state() {
+    return new AccountState(initialBalance, Money.of("0", "EUR"), Collections.emptyList(), Collections.emptyList());
+  }
+
+  /**
+   * Allocation, debit and credit of {@code transfers} transfers from {@code firstTransfer} on.
+   */
+  public static List<Object> transfers(AccountId accountId, long firstTransfer, int transfers) {
+    List<Object> events = new ArrayList<>(transfers * 3);
+    AccountId creditor = AccountId.of(accountId.value() + "-creditor");
+    for (long i = firstTransfer; i < firstTransfer + transfers; i++) {
+      TransferId transferId = new TransferId("Transfer-" + accountId.value() + "-" + i);
+      Money amount = Money.of("12.34", "EUR");
+      events.add(new AccountProtocol.MoneyAllocated(i, transferId, accountId, creditor, amount));
+      events.add(new AccountProtocol.DebitSuccessful(i, accountId, new PendingTransfer(transferId, amount, creditor)));
+      events.add(new AccountProtocol.CreditSuccessful(i, transferId, amount, accountId));
+    }
+    return events;
+  }
+}
@@ -0,0 +1,103 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import akka.pattern.PatternsCS;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovery of one {@code Account} from a LevelDB journal of {@code events} events, written
+ * through the tagging event adapter. With {@code snapshot} the account recovers from a
+ * snapshot followed by {@value #tailTransfers} transfers, as the default snapshot policy leaves it.
+ * <p>
+ * The score is recoveries per second, {@code replayedEvents} the replay rate and the gc
+ * profiler's {@code gc.alloc.rate.norm} the allocation per recovery.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountRecoveryBenchmark {
+
+  private static final int transfersPerWrite = 1_000;
+  private static final int tailTransfers = 33;
+
+  @Param({"10000", "100000", "1000000"})
+  private int events;
+
+  @Param({"false", "true"})
+  private boolean snapshot;
+
+  private BenchmarkActorSystem actorSystem;
+  private final AccountId accountId = AccountId.of("Account-recovered");
+  private long replayedEvents;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("account-recovery-benchmark", ConfigFactory.empty());
+    ActorRef writer = actorSystem.system().actorOf(EventWriter.props(accountId.value()));
+    int transfers = events / 3;
+    int transfersBeforeSnapshot = snapshot ? transfers - tailTransfers : transfers;
+
+    write(writer, AccountJournal.created(accountId));
+    for (int written = 0; written < transfersBeforeSnapshot; written += transfersPerWrite) {
+      write(writer, AccountJournal.transfers(accountId, written, Math.min(transfersPerWrite, transfersBeforeSnapshot - written)));
+    }
+    if (snapshot) {
+      ask(writer, new EventWriter.SaveSnapshot(AccountJournal.state()));
+      write(writer, AccountJournal.transfers(accountId, transfersBeforeSnapshot, tailTransfers));
+      replayedEvents = tailTransfers * 3;
+    } else {
+      replayedEvents = transfers * 3 + 1;
+    }
+    actorSystem.system().stop(writer);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @SneakyThrows
+  public Object recovery(RecoveryCounters counters) {
+    ActorRef account = actorSystem.system().actorOf(Account.props(), accountId.value());
+    // the overview is answered once the account is recovered
+    Object overview = ask(account, AccountProtocol.GetAccountOverview.instance());
+    PatternsCS.gracefulStop(account, FiniteDuration.create(10, TimeUnit.SECONDS)).toCompletableFuture().get();
+    counters.replayedEvents += replayedEvents;
+    counters.recoveredAggregates++;
+    return overview;
+  }
+
+  private static void write(ActorRef writer, List<Object> events) {
+    ask(writer, new EventWriter.Write(events));
+  }
+
+  @SneakyThrows
+  private static Object ask(ActorRef actor, Object message) {
+    return PatternsCS.ask(actor, message, 600_000).toCompletableFuture().get();
+  }
+}
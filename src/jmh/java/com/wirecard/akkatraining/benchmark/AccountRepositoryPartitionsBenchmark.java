@@ -0,0 +1,60 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second between 1000 accounts depending on the number of account repository partitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountRepositoryPartitionsBenchmark {
+
+  private static final int transfers = 2_000;
+
+  @Param({"1", "2", "4", "8", "16"})
+  private int partitions;
+
+  private BenchmarkActorSystem actorSystem;
+  private TransferLoad load;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("partitions-benchmark", ConfigFactory.empty());
+    ActorRef accountRepository = actorSystem.system()
+      .actorOf(InMemoryAccountRepository.props(partitions), "accountRepository");
+    load = new TransferLoad(actorSystem.system(), accountRepository, 1_000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(transfers)
+  public void transfers() {
+    load.run(transfers);
+  }
+}
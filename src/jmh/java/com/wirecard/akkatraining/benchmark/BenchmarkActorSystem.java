@@ -0,0 +1,56 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorSystem;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import lombok.SneakyThrows;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Actor system with its own journal and snapshot directories, removed on shutdown. The LevelDB
+ * and the mapped journal both write to the {@code journal} directory.
+ */
+public class BenchmarkActorSystem {
+
+  private final Path directory;
+  private final ActorSystem system;
+
+  @SneakyThrows
+  public BenchmarkActorSystem(String name, Config overrides) {
+    directory = Files.createTempDirectory(name);
+    Config config = overrides
+      .withFallback(ConfigFactory.parseString(
+        "akka.loglevel = INFO\n" +
+          "akka-training.account.debit-settlement-delay = 0ms\n" +
+          "akka.persistence.journal.leveldb.dir = \"" + directory.resolve("journal") + "\"\n" +
+          "akka-training.mapped-journal.dir = \"" + directory.resolve("journal") + "\"\n" +
+          "akka.persistence.snapshot-store.local.dir = \"" + directory.resolve("snapshots") + "\"\n"))
+      .withFallback(ConfigFactory.load());
+    system = ActorSystem.create(name, config);
+  }
+
+  public ActorSystem system() {
+    return system;
+  }
+
+  @SneakyThrows
+  public long journalSize() {
+    try (Stream<Path> files = Files.walk(directory.resolve("journal"))) {
+      return files.map(Path::toFile).filter(File::isFile).mapToLong(File::length).sum();
+    }
+  }
+
+  @SneakyThrows
+  public void shutdown() {
+    system.terminate();
+    system.getWhenTerminated().toCompletableFuture().get();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second between 100 accounts, executed as single transfers or as the lines of one bulk transfer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkTransferBenchmark {
+
+  private static final int transfers = 10_000;
+
+  private BenchmarkActorSystem actorSystem;
+  private TransferLoad load;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("bulk-transfer-benchmark", ConfigFactory.empty());
+    ActorRef accountRepository = actorSystem.system().actorOf(InMemoryAccountRepository.props(), "accountRepository");
+    load = new TransferLoad(actorSystem.system(), accountRepository, 100);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(transfers)
+  public void singleTransfers() {
+    load.run(transfers);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(transfers)
+  public void bulkTransfer() {
+    load.runBulk(transfers);
+  }
+}
@@ -0,0 +1,77 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import akka.persistence.AbstractPersistentActor;
+import akka.persistence.SaveSnapshotSuccess;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Writes prepared events into the journal of a persistence id through the configured
+ * journal plugin, including its event adapters. Replies {@link Written} when all
+ * events of a {@link Write} are stored, or when the snapshot of a {@link SaveSnapshot}
+ * is stored at the last written sequence number.
+ */
+public class EventWriter extends AbstractPersistentActor {
+
+  private final String persistenceId;
+  private ActorRef snapshotRequester;
+
+  private EventWriter(String persistenceId) {
+    this.persistenceId = persistenceId;
+  }
+
+  public static Props props(String persistenceId) {
+    return Props.create(EventWriter.class, () -> new EventWriter(persistenceId));
+  }
+
+  @Override
+  public String persistenceId() {
+    return persistenceId;
+  }
+
+  @Override
+  public Receive createReceiveRecover() {
+    return ReceiveBuilder.create()
+      .matchAny(event -> {
+      })
+      .build();
+  }
+
+  @Override
+  public Receive createReceive() {
+    return ReceiveBuilder.create()
+      .match(Write.class, this::write)
+      .match(SaveSnapshot.class, this::saveSnapshot)
+      .match(SaveSnapshotSuccess.class, saved -> snapshotRequester.tell(Written.instance, self()))
+      .build();
+  }
+
+  private void write(Write write) {
+    persistAll(write.events(), event -> {
+    });
+    deferAsync(write, w -> sender().tell(Written.instance, self()));
+  }
+
+  private void saveSnapshot(SaveSnapshot saveSnapshot) {
+    snapshotRequester = sender();
+    saveSnapshot(saveSnapshot.snapshot());
+  }
+
+  @Value
+  public static class Write {
+    List<?> events;
+  }
+
+  @Value
+  public static class SaveSnapshot {
+    Object snapshot;
+  }
+
+  public static class Written {
+    static final Written instance = new Written();
+  }
+}
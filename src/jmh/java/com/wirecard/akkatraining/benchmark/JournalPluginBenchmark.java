@@ -0,0 +1,142 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.PatternsCS;
+import akka.persistence.query.NoOffset;
+import akka.persistence.query.PersistenceQuery;
+import akka.persistence.query.javadsl.CurrentEventsByTagQuery;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.infrastructure.projections.ProjectionSettings;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LevelDB journal against the memory-mapped {@code MappedJournal}, both forcing their writes to disk.
+ * <p>
+ * {@code write} persists the events of one transfer on each of {@value #writers} transfer and
+ * {@value #writers} account persistence ids concurrently, one event per write like the aggregates do.
+ * Its score is events per second. {@code eventsByTag} reads the account events of {@value #writers}
+ * accounts with {@value #transfersPerAccount} transfers each through the read journal of the plugin,
+ * as the account projection does, its score is events per second as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalPluginBenchmark {
+
+  private static final int writers = 100;
+  private static final int transfersPerAccount = 100;
+  private static final int writtenEvents = writers * 5 + writers * 3;
+  private static final int taggedAccountEvents = writers * (1 + transfersPerAccount * 3);
+  private static final String accountTag = AccountProtocol.Event.class.getName();
+
+  @Param({"leveldb", "mapped"})
+  private String journal;
+
+  private BenchmarkActorSystem actorSystem;
+  private Materializer materializer;
+  private CurrentEventsByTagQuery readJournal;
+  private final List<ActorRef> accountWriters = new ArrayList<>();
+  private final List<ActorRef> transferWriters = new ArrayList<>();
+  private long round;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("journal-plugin-benchmark", plugins());
+    ActorSystem system = actorSystem.system();
+    materializer = ActorMaterializer.create(system);
+    readJournal = PersistenceQuery.get(system).getReadJournalFor(
+      CurrentEventsByTagQuery.class, ProjectionSettings.fromConfig(system.settings().config()).readJournal());
+    List<CompletableFuture<Object>> written = new ArrayList<>();
+    for (int i = 0; i < writers; i++) {
+      AccountId accountId = AccountId.of("Account-" + i);
+      ActorRef accountWriter = system.actorOf(EventWriter.props(accountId.value()));
+      accountWriters.add(accountWriter);
+      written.add(write(accountWriter, AccountJournal.created(accountId)));
+      written.add(write(accountWriter, AccountJournal.transfers(accountId, 0, transfersPerAccount)));
+      transferWriters.add(system.actorOf(EventWriter.props("Transfer-" + i)));
+    }
+    await(written);
+    round = transfersPerAccount;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(writtenEvents)
+  public void write() {
+    List<CompletableFuture<Object>> written = new ArrayList<>(writtenEvents);
+    for (int i = 0; i < writers; i++) {
+      for (Object event : TransferJournal.inProgress(new TransferId("Transfer-" + i + "-" + round))) {
+        written.add(write(transferWriters.get(i), Collections.singletonList(event)));
+      }
+      for (Object event : AccountJournal.transfers(AccountId.of("Account-" + i), round, 1)) {
+        written.add(write(accountWriters.get(i), Collections.singletonList(event)));
+      }
+    }
+    await(written);
+    round++;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(taggedAccountEvents)
+  @SneakyThrows
+  public long eventsByTag() {
+    return readJournal.currentEventsByTag(accountTag, NoOffset.getInstance())
+      .take(taggedAccountEvents)
+      .runWith(Sink.fold(0L, (count, envelope) -> count + 1), materializer)
+      .toCompletableFuture()
+      .get();
+  }
+
+  private Config plugins() {
+    if (!"mapped".equals(journal)) {
+      return ConfigFactory.empty();
+    }
+    return ConfigFactory.parseString(
+      "akka.persistence.journal.plugin = \"akka-training.mapped-journal\"\n" +
+        "akka-training.projection.read-journal = \"akka-training.mapped-read-journal\"\n");
+  }
+
+  private static CompletableFuture<Object> write(ActorRef writer, List<?> events) {
+    return PatternsCS.ask(writer, new EventWriter.Write(events), 60_000).toCompletableFuture();
+  }
+
+  @SneakyThrows
+  private static void await(List<CompletableFuture<Object>> written) {
+    CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).get();
+  }
+}
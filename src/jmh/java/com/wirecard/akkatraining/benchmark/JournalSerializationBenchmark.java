@@ -0,0 +1,118 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import akka.pattern.PatternsCS;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal write throughput, account recovery and on-disk size of the account events with
+ * Java serialization (before) and the protobuf {@code ProtocolSerializer} (after).
+ * The on-disk size is printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JournalSerializationBenchmark {
+
+  private static final int transfersPerWrite = 1_000;
+  private static final int eventsPerWrite = transfersPerWrite * 3;
+  private static final int recoveredTransfers = 10_000;
+  private static final int recoveredEvents = recoveredTransfers * 3 + 1;
+
+  @Param({"java", "protobuf"})
+  private String serializer;
+
+  private BenchmarkActorSystem actorSystem;
+  private ActorRef writer;
+  private AccountId writtenAccount;
+  private long writtenTransfers;
+  private AccountId recoveredAccount;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("serialization-benchmark", serializationBindings());
+
+    recoveredAccount = AccountId.of("Account-recovered");
+    ActorRef recoveredWriter = actorSystem.system().actorOf(EventWriter.props(recoveredAccount.value()));
+    write(recoveredWriter, AccountJournal.created(recoveredAccount));
+    write(recoveredWriter, AccountJournal.transfers(recoveredAccount, 0, recoveredTransfers));
+    actorSystem.system().stop(recoveredWriter);
+    System.out.printf("%n%s serialization: %d events take %d bytes on disk%n",
+      serializer, recoveredEvents, actorSystem.journalSize());
+
+    writtenAccount = AccountId.of("Account-written");
+    writer = actorSystem.system().actorOf(EventWriter.props(writtenAccount.value()));
+    write(writer, AccountJournal.created(writtenAccount));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(eventsPerWrite)
+  public void journalWrite() {
+    write(writer, AccountJournal.transfers(writtenAccount, writtenTransfers, transfersPerWrite));
+    writtenTransfers += transfersPerWrite;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(recoveredEvents)
+  @SneakyThrows
+  public Object accountRecovery() {
+    ActorRef account = actorSystem.system().actorOf(Account.props(), recoveredAccount.value());
+    // the overview is answered once the account is recovered
+    Object overview = PatternsCS.ask(account, AccountProtocol.GetAccountOverview.instance(), 60_000)
+      .toCompletableFuture()
+      .get();
+    PatternsCS.gracefulStop(account, FiniteDuration.create(10, TimeUnit.SECONDS)).toCompletableFuture().get();
+    return overview;
+  }
+
+  private Config serializationBindings() {
+    // recovery has to replay the whole journal each time
+    Config config = ConfigFactory.parseString(
+      "akka.persistence.snapshot-store.plugin = \"akka.persistence.no-snapshot-store\"");
+    if (!"java".equals(serializer)) {
+      return config;
+    }
+    return config.withFallback(ConfigFactory.parseString(
+      "akka.actor.serialization-bindings {\n" +
+        "  \"com.wirecard.akkatraining.domain.account.AccountProtocol$Event\" = java\n" +
+        "  \"com.wirecard.akkatraining.domain.transfer.TransferProtocol$Event\" = java\n" +
+        "}\n" +
+        "akka.actor.warn-about-java-serializer-usage = off\n"));
+  }
+
+  @SneakyThrows
+  private static void write(ActorRef writer, List<Object> events) {
+    PatternsCS.ask(writer, new EventWriter.Write(events), 60_000).toCompletableFuture().get();
+  }
+}
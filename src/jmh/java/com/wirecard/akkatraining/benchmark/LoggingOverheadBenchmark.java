@@ -0,0 +1,88 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.ActorRef;
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.application.DomainEventListener;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second with the previous logging ({@code verbose}: DEBUG, every step and every
+ * domain event logged, written synchronously to STDOUT) and the production logging ({@code production}:
+ * INFO, sampled domain events, written through the non-blocking ASYNC appender of logback.xml).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoggingOverheadBenchmark {
+
+  private static final int transfers = 2_000;
+
+  @Param({"verbose", "production"})
+  private String logging;
+
+  private BenchmarkActorSystem actorSystem;
+  private TransferLoad load;
+  private Level rootLevel;
+  private AsyncAppender async;
+
+  @Setup
+  public void setUp() {
+    boolean verbose = "verbose".equals(logging);
+    Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+    rootLevel = root.getLevel();
+    root.setLevel(verbose ? Level.DEBUG : Level.INFO);
+    if (verbose) {
+      // the logging threads write to the console themselves, as before the ASYNC appender
+      async = (AsyncAppender) root.getAppender("ASYNC");
+      root.detachAppender(async);
+      root.addAppender(async.getAppender("STDOUT"));
+    }
+
+    actorSystem = new BenchmarkActorSystem("logging-benchmark", ConfigFactory.parseString(
+      "akka.loglevel = " + (verbose ? "DEBUG" : "INFO") + "\n" +
+        "akka-training.domain-event-log.sample-every = " + (verbose ? 1 : 1000) + "\n"));
+    actorSystem.system().actorOf(DomainEventListener.props(), "domain-event-listener");
+    ActorRef accountRepository = actorSystem.system().actorOf(InMemoryAccountRepository.props(), "accountRepository");
+    load = new TransferLoad(actorSystem.system(), accountRepository, 1_000);
+  }
+
+  @TearDown
+  public void tearDown() {
+    actorSystem.shutdown();
+    Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+    root.setLevel(rootLevel);
+    if (async != null) {
+      root.detachAppender("STDOUT");
+      root.addAppender(async);
+      async = null;
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(transfers)
+  public void transfers() {
+    load.run(transfers);
+  }
+}
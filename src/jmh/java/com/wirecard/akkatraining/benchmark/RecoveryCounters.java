@@ -0,0 +1,24 @@
+package com.wirecard.akkatraining.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary results of the recovery benchmarks, reported per second.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class RecoveryCounters {
+
+  public long replayedEvents;
+  public long recoveredAggregates;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    replayedEvents = 0;
+    recoveredAggregates = 0;
+  }
+}
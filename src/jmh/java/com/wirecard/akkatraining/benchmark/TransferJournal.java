@@ -0,0 +1,47 @@
+package com.wirecard.akkatraining.benchmark;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.transfer.ConfirmationType;
+import com.wirecard.akkatraining.domain.transfer.Status;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferState;
+import com.wirecard.akkatraining.domain.transfer.TransferState.OutstandingDelivery;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the events of a transfer waiting for its credit and debit confirmations,
+ * as the {@code Transfer} aggregate would have persisted them.
+ */
+public final class TransferJournal {
+
+  private static final AccountId debtor = AccountId.of("Account-debtor");
+  private static final AccountId creditor = AccountId.of("Account-creditor");
+  private static final Money amount = Money.of("12.34", "EUR");
+
+  private TransferJournal() {
+  }
+
+  public static List<Object> inProgress(TransferId transferId) {
+    return Arrays.asList(
+      new TransferProtocol.TransferInitiated(transferId, debtor, creditor, amount, transferId.value()),
+      new TransferProtocol.AllocateMoneySent(new AccountProtocol.AllocateMoney(transferId, creditor, amount)),
+      new TransferProtocol.MessageConfirmed(1L, ConfirmationType.MONEY_ALLOCATED),
+      new TransferProtocol.CreditSent(new AccountProtocol.Credit(transferId, amount)),
+      new TransferProtocol.DebitSent(new AccountProtocol.Debit(transferId)));
+  }
+
+  /**
+   * State after the {@link #inProgress} events, the credit and debit are delivery 2 and 3.
+   */
+  public static TransferState inProgressState(TransferId transferId) {
+    return new TransferState(debtor, creditor, amount, Status.IN_PROGRESS, true, false, false, false, false, "", 3L,
+      Arrays.asList(
+        new OutstandingDelivery(2L, creditor, new AccountProtocol.Credit(transferId, amount)),
+        new OutstandingDelivery(3L, debtor, new AccountProtocol.Debit(transferId))));
+  }
+}
@@ -0,0 +1,147 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import akka.pattern.PatternsCS;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import com.wirecard.akkatraining.domain.transfer.BulkTransfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.Transfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import lombok.SneakyThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates accounts and runs batches of transfers between random pairs of them,
+ * as single transfers or as one bulk transfer.
+ */
+public class TransferLoad {
+
+  private final ActorSystem system;
+  private final ActorRef accountRepository;
+  private final List<AccountId> accounts = new ArrayList<>();
+  private final Random random = new Random(42);
+  private ActorRef transferManager;
+  private ActorRef bulkTransferManager;
+
+  @SneakyThrows
+  public TransferLoad(ActorSystem system, ActorRef accountRepository, int numberOfAccounts) {
+    this.system = system;
+    this.accountRepository = accountRepository;
+    String run = UUID.randomUUID().toString();
+    for (int i = 0; i < numberOfAccounts; i++) {
+      AccountId accountId = AccountId.of("Account-" + run + "-" + i);
+      accounts.add(accountId);
+      accountRepository.tell(
+        new AccountRepositoryProtocol.Save(
+          "account-" + i, accountId, Money.of("1000000000", "EUR"), Money.of("0", "EUR")),
+        ActorRef.noSender());
+    }
+    // accounts are ready once they answer an overview
+    for (AccountId accountId : accounts) {
+      PatternsCS.ask(accountRepository,
+        new AccountRepositoryProtocol.Forward(accountId, AccountProtocol.GetAccountOverview.instance()), 10_000)
+        .toCompletableFuture()
+        .get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Runs the transfers concurrently and waits until all of them finished. The transfers are owned by
+   * a manager like in the application, which stops each of them once it finished.
+   */
+  @SneakyThrows
+  public void run(int transfers) {
+    if (transferManager == null) {
+      transferManager = system.actorOf(
+        TransferManager.props(Transfer.props(accountRepository)), "transferManager-" + UUID.randomUUID());
+    }
+    CompletableFuture<Void> finished = new CompletableFuture<>();
+    ActorRef requester = system.actorOf(Requester.props(transfers, finished));
+    for (int i = 0; i < transfers; i++) {
+      AccountId debtor = randomAccount();
+      AccountId creditor = randomAccount();
+      transferManager.tell(
+        new TransferManagerProtocol.Forward(
+          new TransferId("Transfer-" + UUID.randomUUID()),
+          new TransferProtocol.ExecuteTransfer(Money.of("1", "EUR"), creditor, debtor)),
+        requester);
+    }
+    finished.get(5, TimeUnit.MINUTES);
+    system.stop(requester);
+  }
+
+  /**
+   * Runs the transfers as the lines of one bulk transfer and waits until it finished.
+   */
+  @SneakyThrows
+  public void runBulk(int transfers) {
+    if (bulkTransferManager == null) {
+      bulkTransferManager = system.actorOf(
+        TransferManager.props(BulkTransfer.props(accountRepository)), "bulkTransferManager-" + UUID.randomUUID());
+    }
+    List<BulkTransferProtocol.BulkTransferLine> lines = new ArrayList<>(transfers);
+    for (int i = 0; i < transfers; i++) {
+      lines.add(new BulkTransferProtocol.BulkTransferLine(randomAccount(), randomAccount(), Money.of("1", "EUR")));
+    }
+    CompletableFuture<Void> finished = new CompletableFuture<>();
+    ActorRef requester = system.actorOf(Requester.props(1, finished));
+    bulkTransferManager.tell(
+      new TransferManagerProtocol.Forward(
+        new TransferId("BulkTransfer-" + UUID.randomUUID()), new BulkTransferProtocol.ExecuteBulkTransfer(lines)),
+      requester);
+    finished.get(5, TimeUnit.MINUTES);
+    system.stop(requester);
+  }
+
+  private AccountId randomAccount() {
+    return accounts.get(random.nextInt(accounts.size()));
+  }
+
+  private static class Requester extends AbstractActor {
+
+    private final CompletableFuture<Void> finished;
+    private int remaining;
+
+    private Requester(int transfers, CompletableFuture<Void> finished) {
+      this.remaining = transfers;
+      this.finished = finished;
+    }
+
+    static Props props(int transfers, CompletableFuture<Void> finished) {
+      return Props.create(Requester.class, () -> new Requester(transfers, finished));
+    }
+
+    @Override
+    public Receive createReceive() {
+      return ReceiveBuilder.create()
+        .match(TransferProtocol.TransferCompleted.class, e -> transferFinished())
+        .match(TransferProtocol.TransferFailed.class, e -> transferFinished())
+        .match(BulkTransferProtocol.BulkTransferFinished.class, e -> transferFinished())
+        .matchAny(o -> {
+        })
+        .build();
+    }
+
+    private void transferFinished() {
+      if (--remaining == 0) {
+        finished.complete(null);
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.wirecard.akkatraining.benchmark;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import akka.pattern.PatternsCS;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.transfer.Transfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovery of a backlog of {@code transfers} unfinished {@code Transfer} actors, each waiting
+ * for its credit and debit confirmations, from events or with {@code snapshot} from a snapshot.
+ * The journal is written through the tagging event adapter.
+ * <p>
+ * The score is recovered backlogs per second, {@code recoveredAggregates} the transfer rate and
+ * the gc profiler's {@code gc.alloc.rate.norm} the allocation per backlog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransferRecoveryBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  private int transfers;
+
+  @Param({"false", "true"})
+  private boolean snapshot;
+
+  private BenchmarkActorSystem actorSystem;
+  private ActorRef accountRepository;
+  private long replayedEvents;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    actorSystem = new BenchmarkActorSystem("transfer-recovery-benchmark", ConfigFactory.empty());
+    // the recovered transfers redeliver their commands, nobody answers them
+    accountRepository = actorSystem.system().actorOf(Props.create(Ignore.class, Ignore::new));
+
+    List<CompletableFuture<Object>> written = new ArrayList<>();
+    for (int i = 0; i < transfers; i++) {
+      TransferId transferId = transferId(i);
+      ActorRef writer = actorSystem.system().actorOf(EventWriter.props(transferId.value()));
+      written.add(ask(writer, new EventWriter.Write(TransferJournal.inProgress(transferId))));
+      if (snapshot) {
+        written.add(ask(writer, new EventWriter.SaveSnapshot(TransferJournal.inProgressState(transferId))));
+      }
+    }
+    CompletableFuture.allOf(written.toArray(new CompletableFuture[0])).join();
+    replayedEvents = snapshot ? 0 : (long) transfers * TransferJournal.inProgress(transferId(0)).size();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    actorSystem.shutdown();
+  }
+
+  @Benchmark
+  @SneakyThrows
+  public int recovery(RecoveryCounters counters) {
+    List<ActorRef> recovered = new ArrayList<>(transfers);
+    List<CompletableFuture<Object>> statuses = new ArrayList<>(transfers);
+    for (int i = 0; i < transfers; i++) {
+      ActorRef transfer = actorSystem.system().actorOf(Transfer.props(accountRepository), transferId(i).value());
+      recovered.add(transfer);
+      // the status is answered once the transfer is recovered
+      statuses.add(ask(transfer, TransferProtocol.GetTransferStatus.instance()));
+    }
+    CompletableFuture.allOf(statuses.toArray(new CompletableFuture[0])).join();
+
+    List<CompletableFuture<Boolean>> stopped = new ArrayList<>(transfers);
+    for (ActorRef transfer : recovered) {
+      stopped.add(PatternsCS.gracefulStop(transfer, FiniteDuration.create(10, TimeUnit.SECONDS)).toCompletableFuture());
+    }
+    CompletableFuture.allOf(stopped.toArray(new CompletableFuture[0])).join();
+    counters.replayedEvents += replayedEvents;
+    counters.recoveredAggregates += transfers;
+    return statuses.size();
+  }
+
+  private static TransferId transferId(int i) {
+    return new TransferId("Transfer-" + i);
+  }
+
+  private static CompletableFuture<Object> ask(ActorRef actor, Object message) {
+    return PatternsCS.ask(actor, message, 600_000).toCompletableFuture();
+  }
+
+  static class Ignore extends AbstractActor {
+
+    @Override
+    public Receive createReceive() {
+      return ReceiveBuilder.create()
+        .matchAny(message -> {
+        })
+        .build();
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.wirecard.akkatraining.domain;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Balance arithmetic of an allocation in the {@code Account} aggregate: available balance check,
+ * allocation and charge. Compares the previous {@link BigDecimal} amounts with {@link Money},
+ * run with the gc profiler to compare the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyBenchmark {
+
+  private final BigDecimal decimalAmount = new BigDecimal("12.34");
+  private BigDecimal decimalBalance = new BigDecimal("1000000000.00");
+  private BigDecimal decimalAllocated = new BigDecimal("0.00");
+
+  private final Money amount = Money.of("12.34", "EUR");
+  private Money balance = Money.of("1000000000.00", "EUR");
+  private Money allocated = Money.of("0.00", "EUR");
+
+  @Benchmark
+  public BigDecimal bigDecimal() {
+    if (decimalBalance.subtract(decimalAllocated).compareTo(decimalAmount) >= 0) {
+      decimalAllocated = decimalAllocated.add(decimalAmount);
+      decimalAllocated = decimalAllocated.subtract(decimalAmount);
+      // credited back, the balance stays constant over the iterations
+      decimalBalance = decimalBalance.subtract(decimalAmount).add(decimalAmount);
+    }
+    return decimalBalance;
+  }
+
+  @Benchmark
+  public Money money() {
+    if (balance.minus(allocated).compareTo(amount) >= 0) {
+      allocated = allocated.plus(amount);
+      allocated = allocated.minus(amount);
+      balance = balance.minus(amount).plus(amount);
+    }
+    return balance;
+  }
+}
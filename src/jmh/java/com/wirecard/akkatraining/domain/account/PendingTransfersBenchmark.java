@@ -0,0 +1,80 @@
+package com.wirecard.akkatraining.domain.account;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debit of a pending transfer: lookup by transfer id, removal, and a new allocation
+ * to keep the number of pending transfers constant. Compares the previous list scan
+ * with the keyed {@link PendingTransfers}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PendingTransfersBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  private int pendingTransfers;
+
+  private final AccountId creditor = AccountId.of("Account-creditor");
+  private final List<PendingTransfer> list = new ArrayList<>();
+  private final PendingTransfers indexed = new PendingTransfers();
+  private long next;
+
+  @Setup
+  public void setUp() {
+    for (next = 0; next < pendingTransfers; next++) {
+      PendingTransfer pendingTransfer = pendingTransfer(next);
+      list.add(pendingTransfer);
+      indexed.add(pendingTransfer);
+    }
+  }
+
+  @Benchmark
+  public PendingTransfer listScan() {
+    // the middle element is the average case of the stream filter
+    TransferId transferId = transferId(next - pendingTransfers / 2);
+    PendingTransfer found = list.stream()
+      .filter(pt -> pt.transferId().equals(transferId))
+      .findFirst()
+      .orElseThrow(IllegalStateException::new);
+    list.remove(found);
+    list.add(pendingTransfer(next++));
+    return found;
+  }
+
+  @Benchmark
+  public PendingTransfer keyed() {
+    TransferId transferId = transferId(next - pendingTransfers / 2);
+    PendingTransfer found = indexed.find(transferId).orElseThrow(IllegalStateException::new);
+    indexed.remove(transferId);
+    indexed.add(pendingTransfer(next++));
+    return found;
+  }
+
+  private PendingTransfer pendingTransfer(long i) {
+    return new PendingTransfer(transferId(i), Money.of("1", "EUR"), creditor);
+  }
+
+  private static TransferId transferId(long i) {
+    return new TransferId("Transfer-" + i);
+  }
+}
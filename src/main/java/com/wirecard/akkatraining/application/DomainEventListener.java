@@ -3,25 +3,54 @@ package com.wirecard.akkatraining.application;
 import akka.actor.AbstractLoggingActor;
 import akka.actor.Props;
 import akka.japi.pf.ReceiveBuilder;
+import akka.stream.OverflowStrategy;
 import com.wirecard.akkatraining.domain.account.AccountProtocol;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import com.wirecard.akkatraining.infrastructure.eventbus.DomainEventBus;
 
+import java.util.Arrays;
+
+/**
+ * Logs a sample of the domain events, one of every {@code akka-training.domain-event-log.sample-every}.
+ * The events are formatted only if INFO is enabled for this logger. Events arriving while the
+ * listener is behind are dropped, oldest first.
+ */
 public class DomainEventListener extends AbstractLoggingActor {
 
+  private final long sampleEvery;
+  private long events;
+
   public static Props props() {
     return Props.create(DomainEventListener.class, DomainEventListener::new);
   }
 
   private DomainEventListener() {
-    context().system().eventStream().subscribe(self(), TransferProtocol.Event.class);
-    context().system().eventStream().subscribe(self(), AccountProtocol.Event.class);
-    context().system().eventStream().subscribe(self(), AccountProtocol.CommandRejection.class);
+    sampleEvery = context().system().settings().config().getLong("akka-training.domain-event-log.sample-every");
+    DomainEventBus.get(context().system()).subscribe(self(), Arrays.asList(
+      TransferProtocol.Event.class,
+      AccountProtocol.Event.class,
+      AccountProtocol.CommandRejection.class
+    ), OverflowStrategy.dropHead());
   }
 
   @Override
   public Receive createReceive() {
     return ReceiveBuilder.create()
-      .match(Object.class, o -> log().info(o.toString()))
+      .match(DomainEventBus.Subscribed.class, s -> ack())
+      .match(DomainEventBus.Completed.class, c -> log().warning("Domain event bus completed"))
+      .match(Object.class, this::sample)
       .build();
   }
+
+  private void sample(Object event) {
+    events++;
+    if (sampleEvery > 0 && events % sampleEvery == 0) {
+      log().info("domain-event type={} sampled=1/{} event={}", event.getClass().getSimpleName(), sampleEvery, event);
+    }
+    ack();
+  }
+
+  private void ack() {
+    sender().tell(DomainEventBus.Ack.instance(), self());
+  }
 }
@@ -0,0 +1,112 @@
+package com.wirecard.akkatraining.application;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.ExecuteTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferFailed;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferInitiated;
+import org.HdrHistogram.Histogram;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link LoadGeneratorSettings#concurrency()} transfers in flight until all transfers
+ * finished and completes the report with their latencies.
+ */
+class LoadDriver extends AbstractActor {
+
+  private final LoadGeneratorSettings settings;
+  private final ActorRef transferManager;
+  private final List<AccountId> accounts;
+  private final CompletableFuture<LoadReport> report;
+  private final Random random = new Random(42);
+  private final Map<TransferId, Long> initiatedAt = new HashMap<>();
+  private final Histogram latencies = new Histogram(3);
+  private long startNanos;
+  private int started;
+  private long completed;
+  private long failed;
+
+  private LoadDriver(
+    LoadGeneratorSettings settings, ActorRef transferManager, List<AccountId> accounts,
+    CompletableFuture<LoadReport> report) {
+    this.settings = settings;
+    this.transferManager = transferManager;
+    this.accounts = accounts;
+    this.report = report;
+  }
+
+  static Props props(
+    LoadGeneratorSettings settings, ActorRef transferManager, List<AccountId> accounts,
+    CompletableFuture<LoadReport> report) {
+    return Props.create(LoadDriver.class, () -> new LoadDriver(settings, transferManager, accounts, report));
+  }
+
+  @Override
+  public void preStart() {
+    startNanos = System.nanoTime();
+    while (started < Math.min(settings.concurrency(), settings.transfers())) {
+      startTransfer();
+    }
+  }
+
+  @Override
+  public Receive createReceive() {
+    return ReceiveBuilder.create()
+      .match(TransferInitiated.class, e -> initiatedAt.put(e.transferId(), System.nanoTime()))
+      .match(TransferCompleted.class, e -> {
+        completed++;
+        transferFinished(e.transferId());
+      })
+      .match(TransferFailed.class, e -> {
+        failed++;
+        transferFinished(e.transferId());
+      })
+      .build();
+  }
+
+  private void startTransfer() {
+    started++;
+    AccountId debtor = pickAccount();
+    AccountId creditor = pickAccount();
+    while (creditor.equals(debtor)) {
+      creditor = pickAccount();
+    }
+    TransferId transferId = new TransferId("Transfer-" + UUID.randomUUID());
+    transferManager.tell(new Forward(transferId, new ExecuteTransfer(settings.amount(), creditor, debtor)), self());
+  }
+
+  private AccountId pickAccount() {
+    int hotAccounts = Math.min(settings.hotAccounts(), accounts.size());
+    if (hotAccounts > 0 && random.nextDouble() < settings.hotAccountShare()) {
+      return accounts.get(random.nextInt(hotAccounts));
+    }
+    return accounts.get(random.nextInt(accounts.size()));
+  }
+
+  private void transferFinished(TransferId transferId) {
+    Long initiated = initiatedAt.remove(transferId);
+    if (initiated != null) {
+      latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - initiated));
+    }
+    if (started < settings.transfers()) {
+      startTransfer();
+    } else if (completed + failed == settings.transfers()) {
+      long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+      report.complete(new LoadReport(settings, durationMillis, completed, failed, latencies));
+      context().stop(self());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.wirecard.akkatraining.application;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.pattern.PatternsCS;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Forward;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs transfers between accounts of the {@link InMemoryAccountRepository} and writes
+ * their throughput and latency distribution as JSON, see {@code akka-training.load-generator}.
+ */
+@Slf4j
+public class LoadGenerator {
+
+  public static void main(String[] args) throws Exception {
+    ActorSystem actorSystem = ActorSystem.create();
+    try {
+      LoadGeneratorSettings settings = LoadGeneratorSettings.fromConfig(actorSystem.settings().config());
+      int partitions = actorSystem.settings().config().getInt("akka-training.account-repository.partitions");
+      ActorRef accountRepository = actorSystem.actorOf(InMemoryAccountRepository.props(partitions), "accountRepository");
+
+      List<AccountId> accounts = createAccounts(accountRepository, settings);
+      log.info("Created {} accounts, running {} transfers", accounts.size(), settings.transfers());
+
+      CompletableFuture<LoadReport> report = new CompletableFuture<>();
+      ActorRef transferManager = actorSystem.actorOf(TransferManager.props(accountRepository), "transferManager");
+      actorSystem.actorOf(LoadDriver.props(settings, transferManager, accounts, report), "load-driver");
+      LoadReport result = report.get();
+
+      Path reportFile = Paths.get(settings.reportFile());
+      Files.write(reportFile, result.toJson().getBytes(StandardCharsets.UTF_8));
+      log.info("{} transfers/s, p99 {} us, report written to {}",
+        String.format("%.1f", result.transfersPerSecond()),
+        result.latencies().getValueAtPercentile(99), reportFile.toAbsolutePath());
+    } finally {
+      actorSystem.terminate();
+    }
+  }
+
+  private static List<AccountId> createAccounts(ActorRef accountRepository, LoadGeneratorSettings settings)
+    throws Exception {
+    String run = UUID.randomUUID().toString();
+    List<AccountId> accounts = new ArrayList<>();
+    List<CompletableFuture<Object>> ready = new ArrayList<>();
+    for (int i = 0; i < settings.accounts(); i++) {
+      AccountId accountId = AccountId.of("Account-" + run + "-" + i);
+      accounts.add(accountId);
+      accountRepository.tell(
+        new Save("account-" + i, accountId, settings.initialBalance(), Money.zero(settings.initialBalance().currency())),
+        ActorRef.noSender());
+      // an account is ready once it answers an overview
+      CompletionStage<Object> overview = PatternsCS.ask(
+        accountRepository, new Forward(accountId, AccountProtocol.GetAccountOverview.instance()), 60_000);
+      ready.add(overview.toCompletableFuture());
+    }
+    CompletableFuture.allOf(ready.toArray(new CompletableFuture[0])).get(5, TimeUnit.MINUTES);
+    return accounts;
+  }
+}
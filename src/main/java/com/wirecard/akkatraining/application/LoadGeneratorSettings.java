@@ -0,0 +1,42 @@
+package com.wirecard.akkatraining.application;
+
+import com.typesafe.config.Config;
+import com.wirecard.akkatraining.domain.Money;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+@Value
+public class LoadGeneratorSettings {
+
+  int accounts;
+  Money initialBalance;
+  int transfers;
+  /**
+   * Maximum number of transfers in flight, a finished transfer starts the next one.
+   */
+  int concurrency;
+  /**
+   * The first {@code hotAccounts} accounts take part in {@code hotAccountShare} of the transfers.
+   */
+  int hotAccounts;
+  double hotAccountShare;
+  Money amount;
+  String reportFile;
+
+  public static LoadGeneratorSettings fromConfig(Config config) {
+    Config load = config.getConfig("akka-training.load-generator");
+    Currency currency = Currency.getInstance(load.getString("currency"));
+    return new LoadGeneratorSettings(
+      load.getInt("accounts"),
+      Money.of(new BigDecimal(load.getString("initial-balance")), currency),
+      load.getInt("transfers"),
+      load.getInt("concurrency"),
+      load.getInt("hot-accounts"),
+      load.getDouble("hot-account-share"),
+      Money.of(new BigDecimal(load.getString("amount")), currency),
+      load.getString("report-file")
+    );
+  }
+}
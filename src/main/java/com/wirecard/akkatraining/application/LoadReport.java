@@ -0,0 +1,69 @@
+package com.wirecard.akkatraining.application;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Result of a {@link LoadGenerator} run. Latencies are from {@code TransferInitiated}
+ * to {@code TransferCompleted} or {@code TransferFailed}, in microseconds.
+ */
+@Value
+public class LoadReport {
+
+  LoadGeneratorSettings settings;
+  long durationMillis;
+  long completed;
+  long failed;
+  Histogram latencies;
+
+  public double transfersPerSecond() {
+    return (completed + failed) * 1000.0 / Math.max(durationMillis, 1);
+  }
+
+  /**
+   * The full histogram is included as compressed, base64 encoded HdrHistogram.
+   */
+  public String toJson() {
+    return String.format(Locale.ROOT,
+      "{%n" +
+        "  \"accounts\": %d,%n" +
+        "  \"transfers\": %d,%n" +
+        "  \"concurrency\": %d,%n" +
+        "  \"hotAccounts\": %d,%n" +
+        "  \"hotAccountShare\": %s,%n" +
+        "  \"durationMillis\": %d,%n" +
+        "  \"completed\": %d,%n" +
+        "  \"failed\": %d,%n" +
+        "  \"transfersPerSecond\": %.1f,%n" +
+        "  \"latencyMicros\": {%n" +
+        "    \"min\": %d,%n" +
+        "    \"mean\": %.1f,%n" +
+        "    \"p50\": %d,%n" +
+        "    \"p90\": %d,%n" +
+        "    \"p99\": %d,%n" +
+        "    \"p999\": %d,%n" +
+        "    \"max\": %d,%n" +
+        "    \"histogram\": \"%s\"%n" +
+        "  }%n" +
+        "}%n",
+      settings.accounts(), settings.transfers(), settings.concurrency(), settings.hotAccounts(),
+      settings.hotAccountShare(), durationMillis, completed, failed, transfersPerSecond(),
+      latencies.getMinValue(), latencies.getMean(),
+      latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(90),
+      latencies.getValueAtPercentile(99), latencies.getValueAtPercentile(99.9),
+      latencies.getMaxValue(), encodedHistogram());
+  }
+
+  private String encodedHistogram() {
+    ByteBuffer buffer = ByteBuffer.allocate(latencies.getNeededByteBufferCapacity());
+    int length = latencies.encodeIntoCompressedByteBuffer(buffer);
+    byte[] bytes = new byte[length];
+    buffer.flip();
+    buffer.get(bytes);
+    return Base64.getEncoder().encodeToString(bytes);
+  }
+}
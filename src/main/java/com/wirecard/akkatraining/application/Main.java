@@ -2,21 +2,26 @@ package com.wirecard.akkatraining.application;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import com.wirecard.akkatraining.domain.Money;
 import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
-import com.wirecard.akkatraining.domain.transfer.Transfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
 import com.wirecard.akkatraining.domain.view.Account;
 import com.wirecard.akkatraining.domain.view.AccountViewRepository;
 import com.wirecard.akkatraining.infrastructure.projections.InMemoryAccountProjection;
 import com.wirecard.akkatraining.infrastructure.projections.InMemoryTransferProjection;
+import com.wirecard.akkatraining.infrastructure.projections.ProjectionCheckpointer;
 import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
 import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountViewViewRepository;
 import com.wirecard.akkatraining.infrastructure.repository.InMemoryTransferDao;
 import lombok.extern.slf4j.Slf4j;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
 
 @Slf4j
 public class Main {
@@ -27,20 +32,33 @@ public class Main {
     AccountViewRepository viewRepository = startProjecting(actorSystem);
 
     actorSystem.actorOf(DomainEventListener.props(), "domain-event-listener");
-    ActorRef accountRepository = actorSystem.actorOf(InMemoryAccountRepository.props(), "accountRepository");
+    int partitions = actorSystem.settings().config().getInt("akka-training.account-repository.partitions");
+    ActorRef accountRepository = actorSystem.actorOf(InMemoryAccountRepository.props(partitions), "accountRepository");
 
     AccountId debtor = AccountId.of("Account-1");
     AccountId creditor = AccountId.of("Account-2");
-    Save acc1 = new Save("debtors-account", debtor, BigDecimal.TEN, BigDecimal.ZERO);
-    Save acc2 = new Save("creditors-account", creditor, BigDecimal.ONE, BigDecimal.ZERO);
+    Save acc1 = new Save("debtors-account", debtor, Money.of("10.00", "EUR"), Money.of("0", "EUR"));
+    Save acc2 = new Save("creditors-account", creditor, Money.of("1.00", "EUR"), Money.of("0", "EUR"));
 
     accountRepository.tell(acc1, ActorRef.noSender());
     accountRepository.tell(acc2, ActorRef.noSender());
 
-    TransferId transferId = new TransferId("Transfer-123");
-    ActorRef transfer = actorSystem.actorOf(Transfer.props(accountRepository), transferId.value());
+    ActorRef transferManager = actorSystem.actorOf(TransferManager.props(accountRepository), "transferManager");
+    ActorRef bulkTransferManager = actorSystem.actorOf(
+      TransferManager.props(BulkTransfer.props(accountRepository)), "bulkTransferManager");
 
-    transfer.tell(new TransferProtocol.ExecuteTransfer(BigDecimal.ONE, creditor, debtor), ActorRef.noSender());
+    TransferId transferId = new TransferId("Transfer-123");
+    transferManager.tell(
+      new TransferManagerProtocol.Forward(
+        transferId, new TransferProtocol.ExecuteTransfer(Money.of("1.00", "EUR"), creditor, debtor)),
+      ActorRef.noSender());
+    bulkTransferManager.tell(
+      new TransferManagerProtocol.Forward(
+        new TransferId("BulkTransfer-123"),
+        new BulkTransferProtocol.ExecuteBulkTransfer(Arrays.asList(
+          new BulkTransferProtocol.BulkTransferLine(debtor, creditor, Money.of("2.00", "EUR")),
+          new BulkTransferProtocol.BulkTransferLine(creditor, debtor, Money.of("0.50", "EUR"))))),
+      ActorRef.noSender());
 
     Thread.sleep(1_000);
     Account account1 = viewRepository.find(debtor);
@@ -58,9 +76,18 @@ public class Main {
   }
 
   private static AccountViewRepository startProjecting(ActorSystem actorSystem) {
-    InMemoryAccountViewViewRepository accountViewRepository = new InMemoryAccountViewViewRepository();
-    InMemoryTransferProjection inMemoryTransferProjection = new InMemoryTransferProjection(actorSystem, new InMemoryTransferDao(), accountViewRepository);
-    InMemoryAccountProjection inMemoryAccountProjection = new InMemoryAccountProjection(actorSystem, accountViewRepository);
+    AccountViewRepository accountViewRepository = new InMemoryAccountViewViewRepository();
+    InMemoryTransferDao transferDao = new InMemoryTransferDao(
+      actorSystem.settings().config().getInt("akka-training.transfer-view.max-transfers"));
+    ProjectionCheckpointer checkpointer =
+      ProjectionCheckpointer.fromConfig(actorSystem.settings().config(), accountViewRepository, transferDao);
+    checkpointer.restore();
+    actorSystem.registerOnTermination(checkpointer::checkpoint);
+
+    InMemoryTransferProjection inMemoryTransferProjection =
+      new InMemoryTransferProjection(actorSystem, transferDao, accountViewRepository, checkpointer);
+    InMemoryAccountProjection inMemoryAccountProjection =
+      new InMemoryAccountProjection(actorSystem, accountViewRepository, checkpointer);
 
     inMemoryAccountProjection.runStream();
     inMemoryTransferProjection.runStream();
@@ -0,0 +1,108 @@
+package com.wirecard.akkatraining.domain;
+
+import lombok.EqualsAndHashCode;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Amount of money as a {@code long} number of minor units of its currency, e.g. cents of EUR.
+ * Arithmetic is exact: overflow throws {@link ArithmeticException} and mixing currencies
+ * throws {@link IllegalArgumentException}.
+ */
+@EqualsAndHashCode
+public final class Money implements Comparable<Money>, Serializable {
+
+  private final long minorUnits;
+  private final Currency currency;
+
+  private Money(long minorUnits, Currency currency) {
+    this.minorUnits = minorUnits;
+    this.currency = currency;
+  }
+
+  public static Money ofMinor(long minorUnits, Currency currency) {
+    return new Money(minorUnits, currency);
+  }
+
+  /**
+   * @throws ArithmeticException if the amount has more decimals than the currency or does not fit
+   */
+  public static Money of(BigDecimal amount, Currency currency) {
+    int fractionDigits = fractionDigits(currency);
+    if (amount.stripTrailingZeros().scale() > fractionDigits) {
+      throw new ArithmeticException(
+        amount.toPlainString() + " has more than " + fractionDigits + " decimals of " + currency.getCurrencyCode());
+    }
+    return new Money(amount.setScale(fractionDigits).unscaledValue().longValueExact(), currency);
+  }
+
+  public static Money of(String amount, String currencyCode) {
+    return of(new BigDecimal(amount), Currency.getInstance(currencyCode));
+  }
+
+  public static Money zero(Currency currency) {
+    return new Money(0, currency);
+  }
+
+  public long minorUnits() {
+    return minorUnits;
+  }
+
+  public Currency currency() {
+    return currency;
+  }
+
+  public Money plus(Money other) {
+    requireSameCurrency(other);
+    return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+  }
+
+  public Money minus(Money other) {
+    requireSameCurrency(other);
+    return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+  }
+
+  public Money negate() {
+    return new Money(Math.negateExact(minorUnits), currency);
+  }
+
+  public boolean isNegative() {
+    return minorUnits < 0;
+  }
+
+  public boolean isZero() {
+    return minorUnits == 0;
+  }
+
+  public boolean sameCurrencyAs(Money other) {
+    return currency.equals(other.currency);
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    requireSameCurrency(other);
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, fractionDigits(currency));
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+  }
+
+  private void requireSameCurrency(Money other) {
+    if (!sameCurrencyAs(other)) {
+      throw new IllegalArgumentException("Currency mismatch: " + this + " and " + other);
+    }
+  }
+
+  // currencies without minor units like XAU report -1
+  private static int fractionDigits(Currency currency) {
+    return Math.max(currency.getDefaultFractionDigits(), 0);
+  }
+}
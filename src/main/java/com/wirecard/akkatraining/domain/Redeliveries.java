@@ -0,0 +1,142 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.AbstractActor.ActorContext;
+import akka.actor.AbstractActor.Receive;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.NotInfluenceReceiveTimeout;
+import akka.japi.pf.ReceiveBuilder;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redelivers the unconfirmed messages of an at least once delivery saga with exponential backoff.
+ * The fixed interval redelivery of {@code AtLeastOnceDelivery} is turned off by overriding its
+ * {@code redeliverInterval()} with {@link #atLeastOnceDeliveryInterval}, it still sends the messages
+ * of a replayed saga once its recovery completes.
+ */
+public class Redeliveries {
+
+  /**
+   * Interval of the built-in redelivery, long enough to never compete with the backoff.
+   */
+  public static final FiniteDuration atLeastOnceDeliveryInterval = FiniteDuration.create(1, TimeUnit.DAYS);
+
+  private final ActorContext context;
+  private final RedeliverySettings settings;
+  private final Metrics metrics;
+  private final Map<Long, Unconfirmed> unconfirmed = new HashMap<>();
+  private Cancellable ticks;
+
+  public Redeliveries(ActorContext context, RedeliverySettings settings, Metrics metrics) {
+    this.context = context;
+    this.settings = settings;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Checks for due redeliveries twice per minimum backoff, call it from {@code preStart}. The checks
+   * do not reset the receive timeout of the saga, an idle saga is still passivated.
+   */
+  public void start() {
+    FiniteDuration interval = settings.minBackoff().div(2);
+    ticks = context.system().scheduler().schedule(
+      interval, interval, context.self(), Tick.instance, context.dispatcher(), context.self());
+  }
+
+  /**
+   * Call it from {@code postStop}, an unconfirmed message is tracked again by the next incarnation.
+   */
+  public void stop() {
+    if (ticks != null) {
+      ticks.cancel();
+    }
+    metrics.unconfirmed(-unconfirmed.size());
+    unconfirmed.clear();
+  }
+
+  /**
+   * A message just delivered, or delivered again by the recovery.
+   */
+  public void delivered(long deliveryId, ActorRef destination, Object message) {
+    track(deliveryId, destination, message, System.nanoTime() + backoff(1));
+  }
+
+  /**
+   * A message restored from a snapshot, which is redelivered at the next check.
+   */
+  public void restored(long deliveryId, ActorRef destination, Object message) {
+    track(deliveryId, destination, message, System.nanoTime());
+  }
+
+  public void confirmed(long deliveryId) {
+    if (unconfirmed.remove(deliveryId) != null) {
+      metrics.unconfirmed(-1);
+    }
+  }
+
+  public Receive receive() {
+    return ReceiveBuilder.create()
+      .match(Tick.class, t -> redeliverDue())
+      .build();
+  }
+
+  private void track(long deliveryId, ActorRef destination, Object message, long dueNanos) {
+    if (unconfirmed.put(deliveryId, new Unconfirmed(destination, message, dueNanos)) == null) {
+      metrics.unconfirmed(1);
+    }
+  }
+
+  private void redeliverDue() {
+    long now = System.nanoTime();
+    int redelivered = 0;
+    for (Unconfirmed next : unconfirmed.values()) {
+      if (redelivered == settings.burstLimit()) {
+        // the rest is due at the next check
+        break;
+      }
+      if (next.dueNanos <= now) {
+        next.destination.tell(next.message, context.self());
+        next.attempts++;
+        next.dueNanos = now + backoff(next.attempts + 1);
+        redelivered++;
+      }
+    }
+    if (redelivered > 0) {
+      metrics.redelivered(redelivered);
+    }
+  }
+
+  private long backoff(int attempt) {
+    long min = settings.minBackoff().toNanos();
+    long max = settings.maxBackoff().toNanos();
+    long backoff = min;
+    for (int i = 1; i < attempt && backoff < max; i++) {
+      backoff *= 2;
+    }
+    backoff = Math.min(backoff, max);
+    return (long) (backoff * (1 + ThreadLocalRandom.current().nextDouble() * settings.randomFactor()));
+  }
+
+  private static class Unconfirmed {
+    final ActorRef destination;
+    final Object message;
+    long dueNanos;
+    int attempts;
+
+    Unconfirmed(ActorRef destination, Object message, long dueNanos) {
+      this.destination = destination;
+      this.message = message;
+      this.dueNanos = dueNanos;
+    }
+  }
+
+  private static class Tick implements NotInfluenceReceiveTimeout {
+    private static final Tick instance = new Tick();
+  }
+}
@@ -0,0 +1,45 @@
+package com.wirecard.akkatraining.domain;
+
+import com.typesafe.config.Config;
+import lombok.Value;
+import lombok.experimental.Wither;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+@Wither
+public class RedeliverySettings {
+
+  /**
+   * Wait before the first redelivery, doubled for each further attempt up to {@link #maxBackoff}.
+   */
+  FiniteDuration minBackoff;
+  FiniteDuration maxBackoff;
+  /**
+   * Each wait is prolonged by a random share of up to this factor, so sagas started together spread out.
+   */
+  double randomFactor;
+  /**
+   * More unconfirmed messages fail the saga with a {@code MaxUnconfirmedMessagesExceededException}.
+   */
+  int maxUnconfirmedMessages;
+  /**
+   * Redeliveries per check, bounds the burst into the account repository.
+   */
+  int burstLimit;
+
+  public static RedeliverySettings fromConfig(Config redelivery) {
+    return new RedeliverySettings(
+      duration(redelivery, "min-backoff"),
+      duration(redelivery, "max-backoff"),
+      redelivery.getDouble("random-factor"),
+      redelivery.getInt("max-unconfirmed-messages"),
+      redelivery.getInt("burst-limit")
+    );
+  }
+
+  private static FiniteDuration duration(Config config, String path) {
+    return FiniteDuration.create(config.getDuration(path, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+  }
+}
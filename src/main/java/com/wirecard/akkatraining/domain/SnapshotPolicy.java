@@ -0,0 +1,70 @@
+package com.wirecard.akkatraining.domain;
+
+import com.typesafe.config.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when a persistent actor snapshots its state, checked after each applied event.
+ */
+@FunctionalInterface
+public interface SnapshotPolicy {
+
+  /**
+   * @param eventsSinceSnapshot events applied since the last snapshot or since the recovered one
+   * @param millisSinceSnapshot time since the last snapshot, or since the actor started
+   * @param stateSize number of entries of the state, e.g. pending transfers of an account
+   */
+  boolean shouldSnapshot(long eventsSinceSnapshot, long millisSinceSnapshot, int stateSize);
+
+  static SnapshotPolicy never() {
+    return (events, millis, size) -> false;
+  }
+
+  static SnapshotPolicy afterEvents(long events) {
+    return scaledByStateSize(events, 0);
+  }
+
+  /**
+   * Snapshots after {@code max(minEvents, eventsPerStateEntry * stateSize)} events, so a big state
+   * is written less often and the snapshot cost per event stays bounded.
+   */
+  static SnapshotPolicy scaledByStateSize(long minEvents, double eventsPerStateEntry) {
+    return (events, millis, size) -> events >= Math.max(minEvents, (long) (eventsPerStateEntry * size));
+  }
+
+  /**
+   * Snapshots when the interval elapsed since the last snapshot and at least one event was applied.
+   */
+  static SnapshotPolicy afterInterval(long interval, TimeUnit unit) {
+    long intervalMillis = unit.toMillis(interval);
+    return (events, millis, size) -> events > 0 && millis >= intervalMillis;
+  }
+
+  static SnapshotPolicy anyOf(SnapshotPolicy... policies) {
+    return anyOf(Arrays.asList(policies));
+  }
+
+  static SnapshotPolicy anyOf(List<SnapshotPolicy> policies) {
+    return (events, millis, size) -> policies.stream().anyMatch(p -> p.shouldSnapshot(events, millis, size));
+  }
+
+  /**
+   * Reads {@code events}, {@code events-per-state-entry} and {@code interval}, zero turns a criterion off.
+   */
+  static SnapshotPolicy fromConfig(Config snapshot) {
+    List<SnapshotPolicy> policies = new ArrayList<>();
+    long events = snapshot.getLong("events");
+    if (events > 0) {
+      policies.add(scaledByStateSize(events, snapshot.getDouble("events-per-state-entry")));
+    }
+    long intervalMillis = snapshot.getDuration("interval", TimeUnit.MILLISECONDS);
+    if (intervalMillis > 0) {
+      policies.add(afterInterval(intervalMillis, TimeUnit.MILLISECONDS));
+    }
+    return policies.isEmpty() ? never() : anyOf(policies);
+  }
+}
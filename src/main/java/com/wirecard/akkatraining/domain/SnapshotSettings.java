@@ -0,0 +1,18 @@
+package com.wirecard.akkatraining.domain;
+
+import com.typesafe.config.Config;
+import lombok.Value;
+
+@Value
+public class SnapshotSettings {
+
+  SnapshotPolicy policy;
+  /**
+   * Whether journal events covered by a saved snapshot are deleted.
+   */
+  boolean deleteEvents;
+
+  public static SnapshotSettings fromConfig(Config snapshot) {
+    return new SnapshotSettings(SnapshotPolicy.fromConfig(snapshot), snapshot.getBoolean("delete-events"));
+  }
+}
@@ -0,0 +1,83 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.AbstractActor.Receive;
+import akka.event.LoggingAdapter;
+import akka.japi.pf.ReceiveBuilder;
+import akka.persistence.AbstractPersistentActor;
+import akka.persistence.DeleteMessagesFailure;
+import akka.persistence.DeleteMessagesSuccess;
+import akka.persistence.DeleteSnapshotsFailure;
+import akka.persistence.DeleteSnapshotsSuccess;
+import akka.persistence.SaveSnapshotFailure;
+import akka.persistence.SaveSnapshotSuccess;
+import akka.persistence.SnapshotMetadata;
+import akka.persistence.SnapshotSelectionCriteria;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot bookkeeping of a persistent actor: applies the {@link SnapshotPolicy} and,
+ * once a snapshot is saved, deletes the older snapshots and optionally the covered events.
+ */
+public class Snapshots {
+
+  private final AbstractPersistentActor actor;
+  private final SnapshotSettings settings;
+  private final LoggingAdapter log;
+  private long eventsSinceSnapshot;
+  private long lastSnapshotNanos = System.nanoTime();
+
+  public Snapshots(AbstractPersistentActor actor, SnapshotSettings settings, LoggingAdapter log) {
+    this.actor = actor;
+    this.settings = settings;
+    this.log = log;
+  }
+
+  /**
+   * Counts an applied event and saves a snapshot if the policy asks for it. Replayed events are
+   * only counted, the state is not snapshotted during recovery.
+   */
+  public void eventApplied(int stateSize, Supplier<Object> state) {
+    eventsSinceSnapshot++;
+    if (actor.recoveryRunning()) {
+      return;
+    }
+    long millisSinceSnapshot = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSnapshotNanos);
+    if (settings.policy().shouldSnapshot(eventsSinceSnapshot, millisSinceSnapshot, stateSize)) {
+      actor.saveSnapshot(state.get());
+      reset();
+    }
+  }
+
+  public void snapshotRecovered() {
+    reset();
+  }
+
+  /**
+   * Handles the replies of the snapshot store and journal to the snapshot housekeeping.
+   */
+  public Receive receive() {
+    return ReceiveBuilder.create()
+      .match(SaveSnapshotSuccess.class, this::saved)
+      .match(SaveSnapshotFailure.class, f -> log.warning("Snapshot {} not saved: {}", f.metadata(), f.cause()))
+      .match(DeleteSnapshotsSuccess.class, s -> log.debug("Snapshots deleted up to {}", s.criteria()))
+      .match(DeleteSnapshotsFailure.class, f -> log.warning("Snapshots not deleted: {}", f.cause()))
+      .match(DeleteMessagesSuccess.class, s -> log.debug("Events deleted up to {}", s.toSequenceNr()))
+      .match(DeleteMessagesFailure.class, f -> log.warning("Events not deleted: {}", f.cause()))
+      .build();
+  }
+
+  private void saved(SaveSnapshotSuccess success) {
+    SnapshotMetadata metadata = success.metadata();
+    actor.deleteSnapshots(SnapshotSelectionCriteria.create(metadata.sequenceNr() - 1, metadata.timestamp()));
+    if (settings.deleteEvents()) {
+      actor.deleteMessages(metadata.sequenceNr());
+    }
+  }
+
+  private void reset() {
+    eventsSinceSnapshot = 0;
+    lastSnapshotNanos = System.nanoTime();
+  }
+}
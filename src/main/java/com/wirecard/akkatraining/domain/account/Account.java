@@ -1,61 +1,116 @@
 package com.wirecard.akkatraining.domain.account;
 
+import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.ReceiveTimeout;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.japi.Procedure;
 import akka.japi.pf.ReceiveBuilder;
 import akka.persistence.AbstractPersistentActor;
 import akka.persistence.SnapshotOffer;
 import com.wirecard.akkatraining.domain.Delivery;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.Snapshots;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountNotFound;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoney;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoneyBatch;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.Create;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.Created;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.Credit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditBatch;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditBatchSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditFailed;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditSuccessful;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.Debit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitBatch;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitBatchSuccessful;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitFailed;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitSuccessful;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocated;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocatedBatch;
 import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocationFailed;
+import com.wirecard.akkatraining.domain.account.ProcessedCommand.Kind;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
-import lombok.SneakyThrows;
+import com.wirecard.akkatraining.infrastructure.eventbus.DomainEventBus;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
+import lombok.Value;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 public class Account extends AbstractPersistentActor {
 
-  private static final int snapShotInterval = 100;
-
-  private BigDecimal balance;
-  private BigDecimal allocatedBalance;
-  private final List<PendingTransfer> transfers = new ArrayList<>();
+  private Money balance;
+  private Money allocatedBalance;
+  private final PendingTransfers transfers = new PendingTransfers();
+  // answers redelivered commands with their original confirmation
+  private final ProcessedCommands processed;
+  // accepted, but not yet written commands, the balance is zero in the account currency once created
+  private Money inFlightAllocatedBalance;
+  private final Set<TransferId> inFlightAllocations = new HashSet<>();
+  private final Set<TransferId> inFlightCredits = new HashSet<>();
+  private final Set<TransferId> inFlightDebits = new HashSet<>();
   private final LoggingAdapter log = Logging.getLogger(context().system(), this);
+  private final Metrics metrics = Metrics.get(context().system());
+  private final DomainEventBus eventBus = DomainEventBus.get(context().system());
+  private AccountId accountId;
+  private final AccountSettings settings;
+  private final Snapshots snapshots;
+
+  private Account() {
+    this.settings = AccountSettings.fromConfig(context().system().settings().config());
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+    this.processed = new ProcessedCommands(settings.processedCommandsRetention());
+  }
+
+  private Account(AccountSettings settings) {
+    this.settings = settings;
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+    this.processed = new ProcessedCommands(settings.processedCommandsRetention());
+  }
+
+  @Override
+  public void preStart() throws Exception {
+    super.preStart();
+    getContext().setReceiveTimeout(settings.passivateAfter());
+  }
 
   public static Props props() {
     return Props.create(Account.class, Account::new);
   }
 
+  public static Props props(AccountSettings settings) {
+    return Props.create(Account.class, () -> new Account(settings));
+  }
+
   @Override
   public Receive createReceive() {
     return ReceiveBuilder.create()
       .match(Create.class, this::create)
+      .match(Delivery.class, this::notFound)
+      .match(ReceiveTimeout.class, this::passivate)
       .matchAny(o -> log.error("Unknown message {}", o))
       .build();
   }
 
   private Receive ready() {
-    return ReceiveBuilder.create()
+    return snapshots.receive().orElse(ReceiveBuilder.create()
       .match(Delivery.class, this::delivery)
       .match(AllocateMoney.class, this::allocateMoney)
       .match(Credit.class, this::credit)
       .match(Debit.class, this::debit)
+      .match(SettleDebit.class, this::settleDebit)
+      .match(SettleDebitBatch.class, this::settleDebitBatch)
       .matchEquals(GetAccountOverview.instance(), this::overview)
+      .match(ReceiveTimeout.class, this::passivate)
       .matchAny(o -> log.error("Unknown message {}", o))
-      .build();
+      .build());
   }
 
   private void delivery(Delivery delivery) {
@@ -66,9 +121,24 @@ public class Account extends AbstractPersistentActor {
       credit(delivery.deliveryId(), (Credit) message);
     } else if (message instanceof Debit) {
       debit(delivery.deliveryId(), (Debit) message);
+    } else if (message instanceof AllocateMoneyBatch) {
+      allocateMoneyBatch(delivery.deliveryId(), (AllocateMoneyBatch) message);
+    } else if (message instanceof CreditBatch) {
+      creditBatch(delivery.deliveryId(), (CreditBatch) message);
+    } else if (message instanceof DebitBatch) {
+      debitBatch(delivery.deliveryId(), (DebitBatch) message);
     }
   }
 
+  /**
+   * Answers a delivery to an account that was never created at once, instead of letting the saga redeliver it.
+   */
+  private void notFound(Delivery delivery) {
+    metrics.accountNotFound();
+    log.warning("Account {} not found for {}", accountId(), delivery.message());
+    sender().tell(new AccountNotFound(delivery.deliveryId(), accountId()), self());
+  }
+
   private void create(Create create) {
     Created event = new Created(
       accountId(),
@@ -80,16 +150,37 @@ public class Account extends AbstractPersistentActor {
   }
 
   private void allocateMoney(long deliveryId, AllocateMoney allocateMoney) {
-    BigDecimal amount = allocateMoney.amount();
+    metrics.accountCommand(accountId());
+    Money amount = allocateMoney.amount();
     TransferId transferId = allocateMoney.transferId();
-    if (availableBalance().compareTo(amount) >= 0) {
+    if (inFlightAllocations.contains(transferId)) {
+      // a redelivered allocation, the reply of the first one is on its way
+      return;
+    }
+    Optional<PendingTransfer> pendingTransfer = transfers.find(transferId);
+    Optional<ProcessedCommand> allocation = processed.find(Kind.ALLOCATION, transferId);
+    if (pendingTransfer.isPresent()) {
+      PendingTransfer pending = pendingTransfer.get();
+      reply(new MoneyAllocated(deliveryId, transferId, accountId(), pending.creditor(), pending.amount()), sender());
+    } else if (allocation.isPresent()) {
+      reply(moneyAllocated(deliveryId, allocation.get()), sender());
+    } else if (!amount.sameCurrencyAs(balance)) {
+      reply(new MoneyAllocationFailed(deliveryId, transferId, accountId(), "Currency mismatch!"), sender());
+    } else if (availableBalance().compareTo(amount) >= 0) {
       MoneyAllocated event = new MoneyAllocated(deliveryId, transferId, accountId(), allocateMoney.creditor(), amount);
-      persist(event, this::accept);
-      notify(event);
-      log.info("Current state {}", createOverview());
+      inFlightAllocatedBalance = inFlightAllocatedBalance.plus(amount);
+      inFlightAllocations.add(transferId);
+      persistAndNotify(event, sender(), e -> {
+        inFlightAllocatedBalance = inFlightAllocatedBalance.minus(e.amount());
+        inFlightAllocations.remove(transferId);
+        accept(e);
+      });
+      if (log.isDebugEnabled()) {
+        log.debug("Current state {}", createOverview());
+      }
     } else {
       // rejected
-      notify(new MoneyAllocationFailed(deliveryId, transferId, accountId(), "Not enough balance!"));
+      reply(new MoneyAllocationFailed(deliveryId, transferId, accountId(), "Not enough balance!"), sender());
     }
   }
 
@@ -102,61 +193,293 @@ public class Account extends AbstractPersistentActor {
   }
 
   private void credit(long deliveryId, Credit credit) {
-    CreditSuccessful event = new CreditSuccessful(deliveryId, credit.transferId(), credit.amount(), accountId());
-    persist(event, this::accept);
-    notify(event);
+    metrics.accountCommand(accountId());
+    TransferId transferId = credit.transferId();
+    if (inFlightCredits.contains(transferId)) {
+      // a redelivered credit, the reply of the first one is on its way
+      return;
+    }
+    Optional<ProcessedCommand> processedCredit = processed.find(Kind.CREDIT, transferId);
+    if (processedCredit.isPresent()) {
+      reply(creditSuccessful(deliveryId, processedCredit.get()), sender());
+      return;
+    }
+    if (!credit.amount().sameCurrencyAs(balance)) {
+      reply(new CreditFailed(deliveryId, transferId, accountId(), "Currency mismatch!"), sender());
+      return;
+    }
+    CreditSuccessful event = new CreditSuccessful(deliveryId, transferId, credit.amount(), accountId());
+    inFlightCredits.add(transferId);
+    persistAndNotify(event, sender(), e -> {
+      inFlightCredits.remove(transferId);
+      accept(e);
+    });
   }
 
   private void debit(Debit debit) {
     debit(0, debit);
   }
 
-  @SneakyThrows
+  /**
+   * Debit settlement is simulated by a delay. Instead of blocking the dispatcher thread,
+   * the settlement is scheduled back to this account as a message, so the account keeps
+   * serving other commands in the meantime.
+   */
   private void debit(long deliveryId, Debit debit) {
-    Thread.sleep(2_000);
-    Object result = transfers.stream().filter(transfer -> transfer.transferId().equals(debit.transferId()))
-      .findFirst()
-      .map(transfer -> {
-        DebitSuccessful debitSuccessful = new DebitSuccessful(deliveryId, accountId(), transfer);
-        persist(debitSuccessful, this::accept);
-        return (Object) debitSuccessful;
-      })
-      .orElseGet(() -> new DebitFailed(debit.transferId(), "No allocated money for such transfer"));
+    metrics.accountCommand(accountId());
+    Optional<ProcessedCommand> processedDebit = processed.find(Kind.DEBIT, debit.transferId());
+    if (processedDebit.isPresent()) {
+      // settled before, answered without waiting for a settlement
+      reply(debitSuccessful(deliveryId, processedDebit.get()), sender());
+      return;
+    }
+    context().system().scheduler().scheduleOnce(
+      settings.debitSettlementDelay(),
+      self(),
+      new SettleDebit(deliveryId, debit, sender()),
+      context().dispatcher(),
+      self());
+  }
 
-    notify(result);
+  private void settleDebit(SettleDebit settleDebit) {
+    long deliveryId = settleDebit.deliveryId();
+    TransferId transferId = settleDebit.debit().transferId();
+    if (inFlightDebits.contains(transferId)) {
+      // a redelivered debit, the reply of the first one is on its way
+      return;
+    }
+    Optional<PendingTransfer> pendingTransfer = transfers.find(transferId);
+    Optional<ProcessedCommand> processedDebit = processed.find(Kind.DEBIT, transferId);
+    if (pendingTransfer.isPresent()) {
+      inFlightDebits.add(transferId);
+      persistAndNotify(new DebitSuccessful(deliveryId, accountId(), pendingTransfer.get()), settleDebit.replyTo(), e -> {
+        inFlightDebits.remove(transferId);
+        accept(e);
+      });
+    } else if (processedDebit.isPresent()) {
+      // a redelivered debit settled while this one waited
+      reply(debitSuccessful(deliveryId, processedDebit.get()), settleDebit.replyTo());
+    } else {
+      reply(new DebitFailed(deliveryId, transferId, "No allocated money for such transfer"), settleDebit.replyTo());
+    }
+  }
+
+  /**
+   * Allocates the lines in order as long as the available balance covers them. Lines that are
+   * already pending or processed stem from a redelivered batch, they are answered as allocated again.
+   * A batch without new allocations is answered without writing an event.
+   */
+  private void allocateMoneyBatch(long deliveryId, AllocateMoneyBatch batch) {
+    metrics.accountCommand(accountId());
+    List<MoneyAllocated> allocated = new ArrayList<>();
+    List<MoneyAllocationFailed> rejected = new ArrayList<>();
+    Money available = availableBalance();
+    Money total = Money.zero(balance.currency());
+    List<TransferId> newAllocations = new ArrayList<>();
+    for (AllocateMoney allocation : batch.allocations()) {
+      Money amount = allocation.amount();
+      TransferId transferId = allocation.transferId();
+      if (inFlightAllocations.contains(transferId)) {
+        // a redelivered batch, the reply of the first one is on its way
+        return;
+      }
+      if (transfers.find(transferId).isPresent() || processed.find(Kind.ALLOCATION, transferId).isPresent()) {
+        allocated.add(new MoneyAllocated(0, transferId, accountId(), allocation.creditor(), amount));
+      } else if (!amount.sameCurrencyAs(balance)) {
+        rejected.add(new MoneyAllocationFailed(0, transferId, accountId(), "Currency mismatch!"));
+      } else if (available.compareTo(amount) >= 0) {
+        allocated.add(new MoneyAllocated(0, transferId, accountId(), allocation.creditor(), amount));
+        available = available.minus(amount);
+        total = total.plus(amount);
+        newAllocations.add(transferId);
+      } else {
+        rejected.add(new MoneyAllocationFailed(0, transferId, accountId(), "Not enough balance!"));
+      }
+    }
+    MoneyAllocatedBatch event = new MoneyAllocatedBatch(deliveryId, accountId(), allocated, rejected);
+    if (newAllocations.isEmpty()) {
+      reply(event, sender());
+      return;
+    }
+    // the total of the newly allocated lines, captured by the handler
+    Money inFlight = total;
+    inFlightAllocatedBalance = inFlightAllocatedBalance.plus(inFlight);
+    inFlightAllocations.addAll(newAllocations);
+    persistAndNotify(event, sender(), e -> {
+      inFlightAllocatedBalance = inFlightAllocatedBalance.minus(inFlight);
+      inFlightAllocations.removeAll(newAllocations);
+      accept(e);
+    });
+  }
+
+  /**
+   * Credits the lines in the account currency and rejects the others.
+   */
+  private void creditBatch(long deliveryId, CreditBatch batch) {
+    metrics.accountCommand(accountId());
+    List<CreditSuccessful> credits = new ArrayList<>(batch.credits().size());
+    List<CreditSuccessful> processedCredits = new ArrayList<>();
+    List<CreditFailed> rejected = new ArrayList<>();
+    for (Credit credit : batch.credits()) {
+      if (inFlightCredits.contains(credit.transferId())) {
+        // a redelivered batch, the reply of the first one is on its way
+        return;
+      }
+      Optional<ProcessedCommand> processedCredit = processed.find(Kind.CREDIT, credit.transferId());
+      if (processedCredit.isPresent()) {
+        processedCredits.add(creditSuccessful(0, processedCredit.get()));
+      } else if (!credit.amount().sameCurrencyAs(balance)) {
+        rejected.add(new CreditFailed(0, credit.transferId(), accountId(), "Currency mismatch!"));
+      } else {
+        credits.add(new CreditSuccessful(0, credit.transferId(), credit.amount(), accountId()));
+      }
+    }
+    if (credits.isEmpty()) {
+      // a redelivered batch credited before, or nothing to credit
+      reply(new CreditBatchSuccessful(deliveryId, accountId(), processedCredits, rejected), sender());
+      return;
+    }
+    CreditBatchSuccessful event = new CreditBatchSuccessful(deliveryId, accountId(), credits, rejected);
+    credits.forEach(credit -> inFlightCredits.add(credit.transferId()));
+    persistAndNotify(event, sender(), e -> {
+      e.credits().forEach(credit -> inFlightCredits.remove(credit.transferId()));
+      accept(e);
+    });
+  }
+
+  /**
+   * Settled after a single {@code debit-settlement-delay} for the whole batch.
+   */
+  private void debitBatch(long deliveryId, DebitBatch batch) {
+    metrics.accountCommand(accountId());
+    context().system().scheduler().scheduleOnce(
+      settings.debitSettlementDelay(),
+      self(),
+      new SettleDebitBatch(deliveryId, batch, sender()),
+      context().dispatcher(),
+      self());
+  }
+
+  private void settleDebitBatch(SettleDebitBatch settleDebitBatch) {
+    long deliveryId = settleDebitBatch.deliveryId();
+    List<PendingTransfer> debited = new ArrayList<>();
+    List<PendingTransfer> processedDebits = new ArrayList<>();
+    List<DebitFailed> rejected = new ArrayList<>();
+    for (Debit debit : settleDebitBatch.debitBatch().debits()) {
+      TransferId transferId = debit.transferId();
+      if (inFlightDebits.contains(transferId)) {
+        // a redelivered batch, the reply of the first one is on its way
+        return;
+      }
+      Optional<PendingTransfer> pendingTransfer = transfers.find(transferId);
+      Optional<ProcessedCommand> processedDebit = processed.find(Kind.DEBIT, transferId);
+      if (pendingTransfer.isPresent()) {
+        debited.add(pendingTransfer.get());
+      } else if (processedDebit.isPresent()) {
+        processedDebits.add(pendingTransfer(processedDebit.get()));
+      } else {
+        rejected.add(new DebitFailed(0, transferId, "No allocated money for such transfer"));
+      }
+    }
+    if (debited.isEmpty()) {
+      // debited before or rejected, nothing to write
+      reply(new DebitBatchSuccessful(deliveryId, accountId(), processedDebits, rejected), settleDebitBatch.replyTo());
+      return;
+    }
+    DebitBatchSuccessful event = new DebitBatchSuccessful(deliveryId, accountId(), debited, rejected);
+    debited.forEach(pendingTransfer -> inFlightDebits.add(pendingTransfer.transferId()));
+    persistAndNotify(event, settleDebitBatch.replyTo(), e -> {
+      e.pendingTransfers().forEach(pendingTransfer -> inFlightDebits.remove(pendingTransfer.transferId()));
+      accept(e);
+    });
   }
 
   private void overview(GetAccountOverview o) {
     sender().tell(createOverview(), self());
   }
 
+  private void passivate(ReceiveTimeout timeout) {
+    context().parent().tell(AccountRepositoryProtocol.Passivate.instance(), self());
+  }
+
   private AccountOverview createOverview() {
     return new AccountOverview(balance, allocatedBalance, transfers.size());
   }
 
 
-  private void allocateMoney(BigDecimal amount) {
-    allocatedBalance = allocatedBalance.add(amount);
+  private void allocateMoney(Money amount) {
+    allocatedBalance = allocatedBalance.plus(amount);
   }
 
-  private BigDecimal availableBalance() {
-    return balance.subtract(allocatedBalance);
+  private Money availableBalance() {
+    return balance.minus(allocatedBalance).minus(inFlightAllocatedBalance);
   }
 
-  private void chargeMoney(BigDecimal amount) {
-    allocatedBalance = allocatedBalance.subtract(amount);
-    balance = balance.subtract(amount);
+  private void chargeMoney(Money amount) {
+    allocatedBalance = allocatedBalance.minus(amount);
+    balance = balance.minus(amount);
   }
 
-  private void notify(Object event) {
-    context().system().eventStream().publish(event);
-    sender().tell(event, self());
+  /**
+   * Persists the event and replies with it once it is written, in {@link PersistMode#ASYNC}
+   * without stashing the commands arriving meanwhile.
+   */
+  private <E> void persistAndNotify(E event, ActorRef replyTo, Procedure<E> handler) {
+    long start = System.nanoTime();
+    Procedure<E> handleAndNotify = e -> {
+      metrics.persisted(start);
+      handler.apply(e);
+      notify(replyTo, e);
+    };
+    if (settings.persistMode() == PersistMode.ASYNC) {
+      persistAsync(event, handleAndNotify);
+    } else {
+      persist(event, handleAndNotify);
+    }
+  }
+
+  /**
+   * Replies without writing an event, in {@link PersistMode#ASYNC} after the events in flight are written.
+   */
+  private void reply(Object reply, ActorRef replyTo) {
+    if (settings.persistMode() == PersistMode.ASYNC) {
+      deferAsync(reply, r -> notify(replyTo, r));
+    } else {
+      notify(replyTo, reply);
+    }
+  }
+
+  // the original confirmations of processed commands, for the delivery id of the redelivery
+
+  private MoneyAllocated moneyAllocated(long deliveryId, ProcessedCommand allocation) {
+    return new MoneyAllocated(
+      deliveryId, allocation.transferId(), accountId(), allocation.creditor(), allocation.amount());
+  }
+
+  private CreditSuccessful creditSuccessful(long deliveryId, ProcessedCommand credit) {
+    return new CreditSuccessful(deliveryId, credit.transferId(), credit.amount(), accountId());
+  }
+
+  private DebitSuccessful debitSuccessful(long deliveryId, ProcessedCommand debit) {
+    return new DebitSuccessful(deliveryId, accountId(), pendingTransfer(debit));
+  }
+
+  private static PendingTransfer pendingTransfer(ProcessedCommand debit) {
+    return new PendingTransfer(debit.transferId(), debit.amount(), debit.creditor());
+  }
+
+  private void notify(ActorRef replyTo, Object event) {
+    eventBus.publish(event);
+    replyTo.tell(event, self());
   }
 
   /*  PERSISTENCE & ES */
 
   private AccountId accountId() {
-    return AccountId.of(persistenceId());
+    if (accountId == null) {
+      accountId = AccountId.of(persistenceId());
+    }
+    return accountId;
   }
 
   @Override
@@ -165,9 +488,8 @@ public class Account extends AbstractPersistentActor {
   }
 
   private void saveSnapshotIfNecessary() {
-    if (lastSequenceNr() % snapShotInterval == 0 && lastSequenceNr() > 0) {
-      saveSnapshot(new AccountState(balance, allocatedBalance, transfers));
-    }
+    snapshots.eventApplied(transfers.size() + processed.size(), () ->
+      new AccountState(balance, allocatedBalance, transfers.toList(), processed.toList()));
   }
 
   @Override
@@ -177,6 +499,9 @@ public class Account extends AbstractPersistentActor {
       .match(MoneyAllocated.class, this::accept)
       .match(CreditSuccessful.class, this::accept)
       .match(DebitSuccessful.class, this::accept)
+      .match(MoneyAllocatedBatch.class, this::accept)
+      .match(CreditBatchSuccessful.class, this::accept)
+      .match(DebitBatchSuccessful.class, this::accept)
       .match(SnapshotOffer.class, this::accept)
       .build();
   }
@@ -185,32 +510,98 @@ public class Account extends AbstractPersistentActor {
     AccountState snapshot = (AccountState) snapshotOffer.snapshot();
     balance = snapshot.balance();
     allocatedBalance = snapshot.allocatedBalance();
-    transfers.clear();
-    transfers.addAll(snapshot.transfers());
+    inFlightAllocatedBalance = Money.zero(balance.currency());
+    transfers.replaceWith(snapshot.transfers());
+    processed.replaceWith(snapshot.processedCommands());
+    snapshots.snapshotRecovered();
+    // the Created event is not replayed after a snapshot
+    getContext().become(ready());
   }
 
   private void accept(Created created) {
     balance = created.balance();
     allocatedBalance = created.allocatedBalance();
+    inFlightAllocatedBalance = Money.zero(balance.currency());
     getContext().become(ready());
   }
 
   private void accept(MoneyAllocated moneyAllocated) {
-    BigDecimal amount = moneyAllocated.amount();
+    Money amount = moneyAllocated.amount();
     allocateMoney(amount);
     transfers.add(new PendingTransfer(moneyAllocated.transferId(), amount, moneyAllocated.creditor()));
+    processedAllocation(moneyAllocated);
     saveSnapshotIfNecessary();
   }
 
   private void accept(CreditSuccessful creditSuccessful) {
-    balance = balance.add(creditSuccessful.amount());
+    balance = balance.plus(creditSuccessful.amount());
+    processedCredit(creditSuccessful);
     saveSnapshotIfNecessary();
   }
 
   private void accept(DebitSuccessful debitSuccessful) {
     PendingTransfer pendingTransfer = debitSuccessful.pendingTransfer();
-    transfers.remove(pendingTransfer);
+    transfers.remove(pendingTransfer.transferId());
     chargeMoney(pendingTransfer.amount());
+    processedDebit(pendingTransfer);
+    saveSnapshotIfNecessary();
+  }
+
+  private void accept(MoneyAllocatedBatch batch) {
+    for (MoneyAllocated moneyAllocated : batch.allocated()) {
+      TransferId transferId = moneyAllocated.transferId();
+      if (!transfers.find(transferId).isPresent() && !processed.find(Kind.ALLOCATION, transferId).isPresent()) {
+        allocateMoney(moneyAllocated.amount());
+        transfers.add(new PendingTransfer(transferId, moneyAllocated.amount(), moneyAllocated.creditor()));
+        processedAllocation(moneyAllocated);
+      }
+    }
+    saveSnapshotIfNecessary();
+  }
+
+  private void accept(CreditBatchSuccessful batch) {
+    for (CreditSuccessful creditSuccessful : batch.credits()) {
+      balance = balance.plus(creditSuccessful.amount());
+      processedCredit(creditSuccessful);
+    }
+    saveSnapshotIfNecessary();
+  }
+
+  private void accept(DebitBatchSuccessful batch) {
+    for (PendingTransfer pendingTransfer : batch.pendingTransfers()) {
+      transfers.remove(pendingTransfer.transferId());
+      chargeMoney(pendingTransfer.amount());
+      processedDebit(pendingTransfer);
+    }
     saveSnapshotIfNecessary();
   }
+
+  private void processedAllocation(MoneyAllocated moneyAllocated) {
+    processed.add(new ProcessedCommand(
+      Kind.ALLOCATION, moneyAllocated.transferId(), moneyAllocated.amount(), moneyAllocated.creditor()));
+  }
+
+  private void processedCredit(CreditSuccessful creditSuccessful) {
+    processed.add(new ProcessedCommand(
+      Kind.CREDIT, creditSuccessful.transferId(), creditSuccessful.amount(), creditSuccessful.creditor()));
+  }
+
+  private void processedDebit(PendingTransfer pendingTransfer) {
+    processed.add(new ProcessedCommand(
+      Kind.DEBIT, pendingTransfer.transferId(), pendingTransfer.amount(), pendingTransfer.creditor()));
+  }
+
+  @Value
+  private static class SettleDebitBatch {
+    long deliveryId;
+    DebitBatch debitBatch;
+    ActorRef replyTo;
+  }
+
+  @Value
+  private static class SettleDebit {
+    long deliveryId;
+    Debit debit;
+    ActorRef replyTo;
+  }
 }
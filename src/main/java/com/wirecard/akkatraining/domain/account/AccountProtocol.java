@@ -1,11 +1,12 @@
 package com.wirecard.akkatraining.domain.account;
 
 import com.wirecard.akkatraining.domain.Confirmation;
+import com.wirecard.akkatraining.domain.Money;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
 import lombok.Value;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
+import java.util.List;
 
 public interface AccountProtocol {
 
@@ -24,15 +25,15 @@ public interface AccountProtocol {
   @Value
   class Create implements Command {
     String accountName;
-    BigDecimal balance;
-    BigDecimal allocatedBalance;
+    Money balance;
+    Money allocatedBalance;
   }
 
   @Value
   class AllocateMoney implements Command {
     TransferId transferId;
     AccountId creditor;
-    BigDecimal amount;
+    Money amount;
   }
 
   @Value
@@ -43,15 +44,40 @@ public interface AccountProtocol {
   @Value
   class Credit implements Command {
     TransferId transferId;
-    BigDecimal amount;
+    Money amount;
+  }
+
+  /**
+   * Allocations of a bulk transfer against this account, applied in order with a single journal write.
+   * Lines exceeding the available balance are rejected, the others are allocated.
+   */
+  @Value
+  class AllocateMoneyBatch implements Command {
+    List<AllocateMoney> allocations;
+  }
+
+  /**
+   * Credits of a bulk transfer to this account, written at once.
+   */
+  @Value
+  class CreditBatch implements Command {
+    List<Credit> credits;
+  }
+
+  /**
+   * Debits of a bulk transfer from this account, settled and written at once.
+   */
+  @Value
+  class DebitBatch implements Command {
+    List<Debit> debits;
   }
 
   @Value
   class Created implements Event {
     AccountId accountId;
     String accountName;
-    BigDecimal balance;
-    BigDecimal allocatedBalance;
+    Money balance;
+    Money allocatedBalance;
   }
 
   @Value
@@ -60,7 +86,7 @@ public interface AccountProtocol {
     TransferId transferId;
     AccountId debtor;
     AccountId creditor;
-    BigDecimal amount;
+    Money amount;
   }
 
   @Value
@@ -74,13 +100,62 @@ public interface AccountProtocol {
   class CreditSuccessful implements Event, Confirmation {
     long deliveryId;
     TransferId transferId;
-    BigDecimal amount;
+    Money amount;
     AccountId creditor;
   }
 
+  /**
+   * Outcome of an {@link AllocateMoneyBatch}, the rejected lines change nothing.
+   */
+  @Value
+  class MoneyAllocatedBatch implements Event, Confirmation {
+    long deliveryId;
+    AccountId debtor;
+    List<MoneyAllocated> allocated;
+    List<MoneyAllocationFailed> rejected;
+  }
+
+  /**
+   * Outcome of a {@link DebitBatch}, contains the pending transfers charged. A redelivered batch
+   * answers the lines debited before with an empty list. Lines without allocated money are rejected.
+   */
+  @Value
+  class DebitBatchSuccessful implements Event, Confirmation {
+    long deliveryId;
+    AccountId debtor;
+    List<PendingTransfer> pendingTransfers;
+    List<DebitFailed> rejected;
+  }
+
+  /**
+   * Outcome of a {@link CreditBatch}, the rejected lines change nothing.
+   */
   @Value
-  class DebitFailed implements CommandRejection {
+  class CreditBatchSuccessful implements Event, Confirmation {
+    long deliveryId;
+    AccountId creditor;
+    List<CreditSuccessful> credits;
+    List<CreditFailed> rejected;
+  }
+
+  /**
+   * Nothing is allocated for the transfer, nothing is debited. The delivery id is 0 for a line of a batch.
+   */
+  @Value
+  class DebitFailed implements CommandRejection, Confirmation {
+    long deliveryId;
+    TransferId transferId;
+    String reason;
+  }
+
+  /**
+   * The credit does not fit the account, e.g. its currency, nothing is credited.
+   */
+  @Value
+  class CreditFailed implements CommandRejection, Confirmation {
+    long deliveryId;
     TransferId transferId;
+    AccountId creditor;
     String reason;
   }
 
@@ -92,6 +167,15 @@ public interface AccountProtocol {
     String reason;
   }
 
+  /**
+   * Negative acknowledgement of a delivery to an account that was never created, confirms the delivery.
+   */
+  @Value
+  class AccountNotFound implements CommandRejection, Confirmation {
+    long deliveryId;
+    AccountId accountId;
+  }
+
   @Value
   class GetAccountOverview {
     private static final GetAccountOverview instance = new GetAccountOverview();
@@ -103,8 +187,8 @@ public interface AccountProtocol {
 
   @Value
   class AccountOverview {
-    BigDecimal balance;
-    BigDecimal allocatedBalance;
+    Money balance;
+    Money allocatedBalance;
     Integer pendingTransfers;
   }
 }
@@ -1,22 +1,51 @@
 package com.wirecard.akkatraining.domain.account;
 
+import akka.routing.ConsistentHashingRouter.ConsistentHashable;
+import com.wirecard.akkatraining.domain.Money;
 import lombok.Value;
 
-import java.math.BigDecimal;
-
 public interface AccountRepositoryProtocol {
 
+  /**
+   * Messages for an account, the repository routes them by account id.
+   */
+  interface AccountMessage extends ConsistentHashable {
+
+    AccountId accountId();
+
+    /**
+     * The id as a string, which the router hashes directly. Any other key would be serialized for each message.
+     */
+    @Override
+    default Object consistentHashKey() {
+      return accountId().value();
+    }
+  }
+
   @Value
-  class Forward {
+  class Forward implements AccountMessage {
     AccountId accountId;
     Object command;
   }
 
   @Value
-  class Save {
+  class Save implements AccountMessage {
     String accountName;
     AccountId accountId;
-    BigDecimal balance;
-    BigDecimal allocatedBalance;
+    Money balance;
+    Money allocatedBalance;
+  }
+
+  /**
+   * Sent by an idle account to its partition, which stops it. The account is recovered
+   * from the journal by the next message for it.
+   */
+  @Value
+  class Passivate {
+    private static final Passivate instance = new Passivate();
+
+    public static Passivate instance() {
+      return instance;
+    }
   }
 }
@@ -0,0 +1,59 @@
+package com.wirecard.akkatraining.domain.account;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.wirecard.akkatraining.domain.RedeliverySettings;
+import com.wirecard.akkatraining.domain.SnapshotSettings;
+import lombok.Value;
+import lombok.experimental.Wither;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+@Wither
+public class AccountSettings {
+
+  FiniteDuration debitSettlementDelay;
+  /**
+   * Idle time after which the account asks its partition to be stopped.
+   */
+  FiniteDuration passivateAfter;
+  PersistMode persistMode;
+  SnapshotSettings snapshots;
+  /**
+   * How long processed commands are remembered to answer redeliveries, see {@link ProcessedCommands}.
+   */
+  FiniteDuration processedCommandsRetention;
+
+  /**
+   * Throws {@link ConfigException.BadValue} for a retention shorter than the longest redelivery backoff.
+   */
+  public static AccountSettings fromConfig(Config config) {
+    Config account = config.getConfig("akka-training.account");
+    FiniteDuration retention = duration(account, "processed-commands-retention");
+    FiniteDuration horizon = longestBackoff(config, "akka-training.transfer.redelivery")
+      .max(longestBackoff(config, "akka-training.bulk-transfer.redelivery"));
+    if (retention.lt(horizon)) {
+      throw new ConfigException.BadValue("akka-training.account.processed-commands-retention",
+        "must cover the longest redelivery backoff of " + horizon);
+    }
+    return new AccountSettings(
+      duration(account, "debit-settlement-delay"),
+      duration(account, "passivate-after"),
+      account.getEnum(PersistMode.class, "persist-mode"),
+      SnapshotSettings.fromConfig(account.getConfig("snapshot")),
+      retention
+    );
+  }
+
+  private static FiniteDuration longestBackoff(Config config, String path) {
+    RedeliverySettings redelivery = RedeliverySettings.fromConfig(config.getConfig(path));
+    long millis = (long) (redelivery.maxBackoff().toMillis() * (1 + redelivery.randomFactor()));
+    return FiniteDuration.create(millis, TimeUnit.MILLISECONDS);
+  }
+
+  private static FiniteDuration duration(Config config, String path) {
+    return FiniteDuration.create(config.getDuration(path, TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+  }
+}
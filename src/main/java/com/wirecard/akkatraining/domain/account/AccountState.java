@@ -1,14 +1,18 @@
 package com.wirecard.akkatraining.domain.account;
 
+import com.wirecard.akkatraining.domain.Money;
 import lombok.Value;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 @Value
 public class AccountState {
 
-  BigDecimal balance;
-  BigDecimal allocatedBalance;
+  Money balance;
+  Money allocatedBalance;
   List<PendingTransfer> transfers;
+  /**
+   * Processed commands within the retention, oldest first.
+   */
+  List<ProcessedCommand> processedCommands;
 }
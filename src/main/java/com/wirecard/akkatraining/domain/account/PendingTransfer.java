@@ -1,14 +1,14 @@
 package com.wirecard.akkatraining.domain.account;
 
+import com.wirecard.akkatraining.domain.Money;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
 import lombok.Value;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
 
 @Value
 public class PendingTransfer implements Serializable {
   TransferId transferId;
-  BigDecimal amount;
+  Money amount;
   AccountId creditor;
 }
@@ -0,0 +1,44 @@
+package com.wirecard.akkatraining.domain.account;
+
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Pending transfers of an account keyed by {@link TransferId}.
+ * Lookup and removal are O(1), iteration keeps the allocation order.
+ */
+public class PendingTransfers {
+
+  private final Map<TransferId, PendingTransfer> transfers = new LinkedHashMap<>();
+
+  public void add(PendingTransfer pendingTransfer) {
+    transfers.put(pendingTransfer.transferId(), pendingTransfer);
+  }
+
+  public Optional<PendingTransfer> find(TransferId transferId) {
+    return Optional.ofNullable(transfers.get(transferId));
+  }
+
+  public Optional<PendingTransfer> remove(TransferId transferId) {
+    return Optional.ofNullable(transfers.remove(transferId));
+  }
+
+  public void replaceWith(Collection<PendingTransfer> pendingTransfers) {
+    transfers.clear();
+    pendingTransfers.forEach(this::add);
+  }
+
+  public int size() {
+    return transfers.size();
+  }
+
+  public List<PendingTransfer> toList() {
+    return new ArrayList<>(transfers.values());
+  }
+}
@@ -0,0 +1,14 @@
+package com.wirecard.akkatraining.domain.account;
+
+public enum PersistMode {
+
+  /**
+   * {@code persist}: the account stashes commands while an event is written.
+   */
+  SYNC,
+  /**
+   * {@code persistAsync}: the account keeps processing commands while events are written.
+   * Replies still go out only after their event is durable.
+   */
+  ASYNC
+}
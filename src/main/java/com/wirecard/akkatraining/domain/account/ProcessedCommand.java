@@ -0,0 +1,25 @@
+package com.wirecard.akkatraining.domain.account;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import lombok.Value;
+
+/**
+ * A command of a transfer the account has written its outcome for. It holds what is needed to
+ * answer a redelivery of the command with the original confirmation.
+ */
+@Value
+public class ProcessedCommand {
+
+  Kind kind;
+  TransferId transferId;
+  Money amount;
+  /**
+   * The account itself for a credit.
+   */
+  AccountId creditor;
+
+  public enum Kind {
+    ALLOCATION, CREDIT, DEBIT
+  }
+}
@@ -0,0 +1,79 @@
+package com.wirecard.akkatraining.domain.account;
+
+import com.wirecard.akkatraining.domain.account.ProcessedCommand.Kind;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import lombok.Value;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Processed commands of an account keyed by kind and {@link TransferId}, kept for the {@code retention}
+ * after they were processed. The retention covers the redelivery horizon of the sagas, so a command is
+ * remembered as long as a redelivery of it may arrive, however many commands the account processes
+ * meanwhile, e.g. the lines of a large batch. Lookup is O(1), the memory is bounded by the commands
+ * processed within the retention.
+ * <p>
+ * The processing times are not persisted. A recovered account remembers its commands for a whole
+ * retention again, so the downtime of the account does not shorten it.
+ */
+public class ProcessedCommands {
+
+  private final long retentionMillis;
+  private final Map<Key, Entry> commands = new LinkedHashMap<>();
+
+  public ProcessedCommands(FiniteDuration retention) {
+    this.retentionMillis = retention.toMillis();
+  }
+
+  public void add(ProcessedCommand command) {
+    long now = System.currentTimeMillis();
+    Key key = new Key(command.kind(), command.transferId());
+    // moved to the end, the map stays ordered by processing time
+    commands.remove(key);
+    commands.put(key, new Entry(command, now));
+    evictProcessedBefore(now - retentionMillis);
+  }
+
+  public Optional<ProcessedCommand> find(Kind kind, TransferId transferId) {
+    return Optional.ofNullable(commands.get(new Key(kind, transferId))).map(Entry::command);
+  }
+
+  public void replaceWith(Collection<ProcessedCommand> processedCommands) {
+    commands.clear();
+    processedCommands.forEach(this::add);
+  }
+
+  public int size() {
+    return commands.size();
+  }
+
+  public List<ProcessedCommand> toList() {
+    return commands.values().stream().map(Entry::command).collect(Collectors.toList());
+  }
+
+  private void evictProcessedBefore(long time) {
+    Iterator<Entry> entries = commands.values().iterator();
+    while (entries.hasNext() && entries.next().processedAt() < time) {
+      entries.remove();
+    }
+  }
+
+  @Value
+  private static class Key {
+    Kind kind;
+    TransferId transferId;
+  }
+
+  @Value
+  private static class Entry {
+    ProcessedCommand command;
+    long processedAt;
+  }
+}
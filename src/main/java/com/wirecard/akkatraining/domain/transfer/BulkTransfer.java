@@ -0,0 +1,561 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.ReceiveTimeout;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.japi.pf.ReceiveBuilder;
+import akka.persistence.AbstractPersistentActorWithAtLeastOnceDelivery;
+import akka.persistence.RecoveryCompleted;
+import com.wirecard.akkatraining.domain.Delivery;
+import com.wirecard.akkatraining.domain.Redeliveries;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.AllocationsConfirmed;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferFinished;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferInitiated;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferLine;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferProgress;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferRejected;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferResults;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.CreditsConfirmed;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.CreditsRejected;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.DebitsConfirmed;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.ExecuteBulkTransfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.GetBulkTransferProgress;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.GetBulkTransferResults;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.LineRejected;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.LineResult;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.LineStatus;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.RefundsConfirmed;
+import com.wirecard.akkatraining.infrastructure.eventbus.DomainEventBus;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.lineTransferId;
+
+/**
+ * Executes the lines of a bulk transfer as one saga. Instead of a {@link Transfer} per line,
+ * the lines are grouped per account: each debtor receives one {@link AccountProtocol.AllocateMoneyBatch},
+ * and once all allocations are answered each creditor receives one {@link AccountProtocol.CreditBatch}
+ * and each debtor one {@link AccountProtocol.DebitBatch} for its allocated lines.
+ * <p>
+ * The batches are a function of the events, they are delivered again while the events are replayed
+ * and redelivered after the recovery if still unconfirmed. Lines are numbered from 0 and booked as
+ * transfer {@code <bulk transfer id>-<line>}.
+ * <p>
+ * A debtor that does not exist fails its lines at once. A creditor that does not exist fails its lines
+ * as well, the money already allocated is refunded to the debtors with a {@link AccountProtocol.CreditBatch}.
+ * So are the lines a creditor rejects, e.g. in another currency.
+ */
+public class BulkTransfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
+
+  /**
+   * Not persisted, a recovered bulk transfer publishes its outcome on the domain event bus only.
+   */
+  private ActorRef requester;
+  private List<BulkTransferLine> lines;
+  private LineStatus[] statuses;
+  private final Map<Integer, String> failureReasons = new HashMap<>();
+  private final Map<AccountId, List<Integer>> linesByDebtor = new LinkedHashMap<>();
+  private final Map<AccountId, List<Integer>> linesByCreditor = new LinkedHashMap<>();
+  private int allocationsOutstanding;
+  private int allocated;
+  private int succeeded;
+  private int failed;
+  private boolean finished;
+  private final Map<Long, AccountProtocol.Command> openDeliveries = new HashMap<>();
+  // refund deliveries to the debtors, by the creditor that does not exist
+  private final Map<Long, AccountId> refunds = new HashMap<>();
+  // confirmations received, but not yet written
+  private final Set<Long> confirming = new HashSet<>();
+  private final ActorRef accountRepository;
+
+  private final LoggingAdapter log = Logging.getLogger(context().system(), this);
+  private final BulkTransferSettings settings;
+  private final Redeliveries redeliveries;
+  private final Metrics metrics = Metrics.get(context().system());
+  private final DomainEventBus eventBus = DomainEventBus.get(context().system());
+  /**
+   * Start of a bulk transfer executed by this incarnation, 0 for a recovered one.
+   */
+  private long startNanos;
+
+  private BulkTransfer(ActorRef accountRepository) {
+    this.accountRepository = accountRepository;
+    this.settings = BulkTransferSettings.fromConfig(context().system().settings().config());
+    this.redeliveries = new Redeliveries(getContext(), settings.redelivery(), metrics);
+  }
+
+  private BulkTransfer(ActorRef accountRepository, BulkTransferSettings settings) {
+    this.accountRepository = accountRepository;
+    this.settings = settings;
+    this.redeliveries = new Redeliveries(getContext(), settings.redelivery(), metrics);
+  }
+
+  public static Props props(ActorRef accountRepository) {
+    return Props.create(BulkTransfer.class, () -> new BulkTransfer(accountRepository));
+  }
+
+  public static Props props(ActorRef accountRepository, BulkTransferSettings settings) {
+    return Props.create(BulkTransfer.class, () -> new BulkTransfer(accountRepository, settings));
+  }
+
+  @Override
+  public void preStart() throws Exception {
+    super.preStart();
+    getContext().setReceiveTimeout(settings.passivateAfter());
+    redeliveries.start();
+  }
+
+  @Override
+  public void postStop() throws Exception {
+    redeliveries.stop();
+    super.postStop();
+  }
+
+  @Override
+  public FiniteDuration redeliverInterval() {
+    return Redeliveries.atLeastOnceDeliveryInterval;
+  }
+
+  @Override
+  public int maxUnconfirmedMessages() {
+    return settings.redelivery().maxUnconfirmedMessages();
+  }
+
+  @Override
+  public Receive createReceive() {
+    return ReceiveBuilder.create()
+      .match(ExecuteBulkTransfer.class, this::executeBulkTransfer)
+      .matchEquals(GetBulkTransferProgress.instance(), this::progress)
+      .match(ReceiveTimeout.class, this::passivate)
+      .build()
+      .orElse(redeliveries.receive());
+  }
+
+  private Receive initiated() {
+    return ReceiveBuilder.create()
+      .match(AccountProtocol.MoneyAllocatedBatch.class, this::moneyAllocatedBatch)
+      .match(AccountProtocol.CreditBatchSuccessful.class, this::creditBatchSuccessful)
+      .match(AccountProtocol.DebitBatchSuccessful.class, this::debitBatchSuccessful)
+      .match(AccountProtocol.AccountNotFound.class, this::accountNotFound)
+      .matchEquals(GetBulkTransferProgress.instance(), this::progress)
+      .match(GetBulkTransferResults.class, this::results)
+      .match(ReceiveTimeout.class, this::passivate)
+      .build()
+      .orElse(redeliveries.receive());
+  }
+
+  private void passivate(ReceiveTimeout timeout) {
+    context().parent().tell(TransferManagerProtocol.Passivate.instance(), self());
+  }
+
+  private void notifyFinished() {
+    context().parent().tell(TransferManagerProtocol.Finished.instance(), self());
+  }
+
+  private void executeBulkTransfer(ExecuteBulkTransfer execute) {
+    int size = execute.lines().size();
+    if (size == 0 || size > settings.maxLines()) {
+      String reason = "A bulk transfer has 1 to " + settings.maxLines() + " lines, not " + size;
+      sender().tell(new BulkTransferRejected(bulkTransferId(), reason), self());
+      notifyFinished();
+      return;
+    }
+    requester = sender();
+    startNanos = System.nanoTime();
+    persist(new BulkTransferInitiated(bulkTransferId(), execute.lines(), execute.correlationId()), event -> {
+      onEvent(event);
+      notifyRequester(event);
+    });
+  }
+
+  private void moneyAllocatedBatch(AccountProtocol.MoneyAllocatedBatch batch) {
+    if (isConfirming(batch.deliveryId())) {
+      List<LineRejected> rejected = batch.rejected().stream()
+        .map(rejection -> new LineRejected(line(rejection.transferId()), rejection.reason()))
+        .collect(Collectors.toList());
+      persistConfirmation(new AllocationsConfirmed(batch.deliveryId(), batch.debtor(), rejected));
+    }
+  }
+
+  private void creditBatchSuccessful(AccountProtocol.CreditBatchSuccessful batch) {
+    if (!isConfirming(batch.deliveryId())) {
+      return;
+    }
+    AccountId rejectedCreditor = refunds.get(batch.deliveryId());
+    if (rejectedCreditor == null) {
+      List<LineRejected> rejected = batch.rejected().stream()
+        .map(rejection -> new LineRejected(line(rejection.transferId()), rejection.reason() + " Refunded!"))
+        .collect(Collectors.toList());
+      persistConfirmation(new CreditsConfirmed(batch.deliveryId(), batch.creditor(), rejected));
+    } else {
+      persistConfirmation(new RefundsConfirmed(batch.deliveryId(), batch.creditor(), rejectedCreditor));
+    }
+  }
+
+  private void debitBatchSuccessful(AccountProtocol.DebitBatchSuccessful batch) {
+    if (!isConfirming(batch.deliveryId())) {
+      return;
+    }
+    List<LineRejected> rejected = batch.rejected().stream()
+      .map(rejection -> new LineRejected(line(rejection.transferId()), rejection.reason()))
+      .collect(Collectors.toList());
+    if (!rejected.isEmpty()) {
+      // allocated by the debtor before, only a batch redelivered after the processed commands
+      // retention of the debtor gets here, its lines may have been debited and credited already
+      log.error("Debtor {} rejected the debits of lines {}", batch.debtor(), rejected);
+    }
+    persistConfirmation(new DebitsConfirmed(batch.deliveryId(), batch.debtor(), rejected));
+  }
+
+  private void accountNotFound(AccountProtocol.AccountNotFound notFound) {
+    if (!isConfirming(notFound.deliveryId())) {
+      return;
+    }
+    AccountProtocol.Command command = openDeliveries.get(notFound.deliveryId());
+    if (command instanceof AccountProtocol.AllocateMoneyBatch) {
+      List<LineRejected> rejected = linesByDebtor.get(notFound.accountId()).stream()
+        .map(line -> new LineRejected(line, "Debtor account not found!"))
+        .collect(Collectors.toList());
+      persistConfirmation(new AllocationsConfirmed(notFound.deliveryId(), notFound.accountId(), rejected));
+    } else if (command instanceof AccountProtocol.CreditBatch && !refunds.containsKey(notFound.deliveryId())) {
+      persistConfirmation(new CreditsRejected(notFound.deliveryId(), notFound.accountId()));
+    } else {
+      // debits and refunds go to debtors which answered their allocation, they exist
+      confirming.remove(notFound.deliveryId());
+      log.error("Account {} not found for {}", notFound.accountId(), command);
+    }
+  }
+
+  /**
+   * False for the answer of a redelivered batch that is confirmed already.
+   */
+  private boolean isConfirming(long deliveryId) {
+    return openDeliveries.containsKey(deliveryId) && confirming.add(deliveryId);
+  }
+
+  /**
+   * Confirmations are written asynchronously, a payout to many creditors writes one per creditor.
+   */
+  private void persistConfirmation(BulkTransferProtocol.Event confirmation) {
+    persistAsync(confirmation, event -> {
+      onEvent(event);
+      if (isSettled()) {
+        persistFinished();
+      }
+    });
+  }
+
+  private void persistFinished() {
+    persist(finishedEvent(), event -> {
+      onEvent(event);
+      notifyRequester(event);
+      notifyFinished();
+    });
+  }
+
+  private boolean isSettled() {
+    return !finished && lines != null && allocationsOutstanding == 0 && openDeliveries.isEmpty();
+  }
+
+  private BulkTransferFinished finishedEvent() {
+    List<TransferProtocol.TransferCompleted> completed = new ArrayList<>(succeeded);
+    List<TransferProtocol.TransferFailed> failures = new ArrayList<>(failed);
+    for (int line = 0; line < lines.size(); line++) {
+      BulkTransferLine bulkTransferLine = lines.get(line);
+      TransferId transferId = lineTransferId(bulkTransferId(), line);
+      if (statuses[line] == LineStatus.SUCCEEDED) {
+        completed.add(new TransferProtocol.TransferCompleted(
+          transferId, bulkTransferLine.debtor(), bulkTransferLine.creditor(), bulkTransferLine.amount()));
+      } else {
+        failures.add(new TransferProtocol.TransferFailed(
+          transferId, bulkTransferLine.debtor(), bulkTransferLine.creditor(), bulkTransferLine.amount(),
+          failureReasons.get(line)));
+      }
+    }
+    return new BulkTransferFinished(bulkTransferId(), completed, failures);
+  }
+
+  private void progress(GetBulkTransferProgress getProgress) {
+    int size = lines == null ? 0 : lines.size();
+    sender().tell(
+      new BulkTransferProgress(bulkTransferId(), size, allocated, succeeded, failed, finished), self());
+  }
+
+  private void results(GetBulkTransferResults getResults) {
+    List<LineResult> results = new ArrayList<>();
+    int end = Math.min(lines.size(), getResults.offset() + getResults.limit());
+    for (int line = Math.max(0, getResults.offset()); line < end; line++) {
+      results.add(new LineResult(
+        line, lineTransferId(bulkTransferId(), line), statuses[line], failureReasons.get(line)));
+    }
+    sender().tell(new BulkTransferResults(bulkTransferId(), results), self());
+  }
+
+  private TransferId bulkTransferId() {
+    return new TransferId(self().path().name());
+  }
+
+  private int line(TransferId lineTransferId) {
+    return Integer.parseInt(lineTransferId.value().substring(bulkTransferId().value().length() + 1));
+  }
+
+  private void notifyRequester(Object event) {
+    eventBus.publish(event);
+    if (requester != null) {
+      requester.tell(event, self());
+    }
+    if (event instanceof BulkTransferFinished && startNanos > 0) {
+      // not recorded as transfer latency, a bulk transfer would dominate the histogram
+      log.info("Bulk transfer {} finished in {} ms, {} lines succeeded, {} failed",
+        bulkTransferId(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), succeeded, failed);
+    }
+  }
+
+  // PERSISTENCE
+
+  @Override
+  public String persistenceId() {
+    return self().path().name();
+  }
+
+  @Override
+  public Receive createReceiveRecover() {
+    return ReceiveBuilder.create()
+      .match(BulkTransferProtocol.Event.class, this::onEvent)
+      .match(RecoveryCompleted.class, this::onRecoveryCompleted)
+      .build();
+  }
+
+  private void onRecoveryCompleted(RecoveryCompleted recoveryCompleted) {
+    if (finished) {
+      notifyFinished();
+    } else if (isSettled()) {
+      // stopped between the last confirmation and the finished event
+      persistFinished();
+    }
+  }
+
+  private void onEvent(BulkTransferProtocol.Event event) {
+    if (event instanceof BulkTransferInitiated) {
+      onInitiated((BulkTransferInitiated) event);
+    } else if (event instanceof AllocationsConfirmed) {
+      onAllocationsConfirmed((AllocationsConfirmed) event);
+    } else if (event instanceof CreditsConfirmed) {
+      onCreditsConfirmed((CreditsConfirmed) event);
+    } else if (event instanceof DebitsConfirmed) {
+      onDebitsConfirmed((DebitsConfirmed) event);
+    } else if (event instanceof CreditsRejected) {
+      onCreditsRejected((CreditsRejected) event);
+    } else if (event instanceof RefundsConfirmed) {
+      onRefundsConfirmed((RefundsConfirmed) event);
+    } else if (event instanceof BulkTransferFinished) {
+      finished = true;
+    }
+  }
+
+  private void onInitiated(BulkTransferInitiated initiated) {
+    lines = initiated.lines();
+    statuses = new LineStatus[lines.size()];
+    Arrays.fill(statuses, LineStatus.PENDING);
+    for (int line = 0; line < lines.size(); line++) {
+      BulkTransferLine bulkTransferLine = lines.get(line);
+      linesByDebtor.computeIfAbsent(bulkTransferLine.debtor(), debtor -> new ArrayList<>()).add(line);
+      linesByCreditor.computeIfAbsent(bulkTransferLine.creditor(), creditor -> new ArrayList<>()).add(line);
+    }
+    allocationsOutstanding = linesByDebtor.size();
+    linesByDebtor.forEach((debtor, debtorLines) -> {
+      List<AccountProtocol.AllocateMoney> allocations = debtorLines.stream()
+        .map(line -> new AccountProtocol.AllocateMoney(
+          lineTransferId(initiated.bulkTransferId(), line), lines.get(line).creditor(), lines.get(line).amount()))
+        .collect(Collectors.toList());
+      deliver(debtor, new AccountProtocol.AllocateMoneyBatch(allocations));
+    });
+    getContext().become(initiated());
+  }
+
+  private void onAllocationsConfirmed(AllocationsConfirmed confirmed) {
+    confirm(confirmed.deliveryId());
+    Map<Integer, String> rejected = confirmed.rejected().stream()
+      .collect(Collectors.toMap(LineRejected::line, LineRejected::reason));
+    for (int line : linesByDebtor.get(confirmed.debtor())) {
+      if (statuses[line] != LineStatus.PENDING) {
+        continue;
+      }
+      String reason = rejected.get(line);
+      if (reason == null) {
+        statuses[line] = LineStatus.ALLOCATED;
+        allocated++;
+      } else {
+        statuses[line] = LineStatus.FAILED;
+        failureReasons.put(line, reason);
+        failed++;
+      }
+    }
+    if (--allocationsOutstanding == 0) {
+      startSettlement();
+    }
+  }
+
+  /**
+   * Credits and debits the allocated lines, grouped per account.
+   */
+  private void startSettlement() {
+    linesByCreditor.forEach((creditor, creditorLines) -> {
+      List<AccountProtocol.Credit> credits = creditorLines.stream()
+        .filter(line -> statuses[line] == LineStatus.ALLOCATED)
+        .map(line -> new AccountProtocol.Credit(lineTransferId(bulkTransferId(), line), lines.get(line).amount()))
+        .collect(Collectors.toList());
+      if (!credits.isEmpty()) {
+        deliver(creditor, new AccountProtocol.CreditBatch(credits));
+      }
+    });
+    linesByDebtor.forEach((debtor, debtorLines) -> {
+      List<AccountProtocol.Debit> debits = debtorLines.stream()
+        .filter(line -> statuses[line] == LineStatus.ALLOCATED)
+        .map(line -> new AccountProtocol.Debit(lineTransferId(bulkTransferId(), line)))
+        .collect(Collectors.toList());
+      if (!debits.isEmpty()) {
+        deliver(debtor, new AccountProtocol.DebitBatch(debits));
+      }
+    });
+  }
+
+  private void onCreditsConfirmed(CreditsConfirmed confirmed) {
+    confirm(confirmed.deliveryId());
+    Map<Integer, String> rejected = confirmed.rejected().stream()
+      .collect(Collectors.toMap(LineRejected::line, LineRejected::reason));
+    for (int line : linesByCreditor.get(confirmed.creditor())) {
+      if (rejected.containsKey(line)) {
+        continue;
+      }
+      if (statuses[line] == LineStatus.ALLOCATED) {
+        statuses[line] = LineStatus.CREDITED;
+      } else if (statuses[line] == LineStatus.DEBITED) {
+        statuses[line] = LineStatus.SUCCEEDED;
+        succeeded++;
+      }
+    }
+    refund(confirmed.creditor(), rejected);
+  }
+
+  private void onDebitsConfirmed(DebitsConfirmed confirmed) {
+    confirm(confirmed.deliveryId());
+    Map<Integer, String> rejected = confirmed.rejected().stream()
+      .collect(Collectors.toMap(LineRejected::line, LineRejected::reason));
+    for (int line : linesByDebtor.get(confirmed.debtor())) {
+      String reason = rejected.get(line);
+      if (reason != null) {
+        if (statuses[line] != LineStatus.FAILED) {
+          statuses[line] = LineStatus.FAILED;
+          failureReasons.put(line, reason);
+          failed++;
+        }
+      } else if (statuses[line] == LineStatus.ALLOCATED) {
+        statuses[line] = LineStatus.DEBITED;
+      } else if (statuses[line] == LineStatus.CREDITED) {
+        statuses[line] = LineStatus.SUCCEEDED;
+        succeeded++;
+      } else if (statuses[line] == LineStatus.CREDIT_REJECTED) {
+        statuses[line] = LineStatus.REFUNDING;
+      } else if (statuses[line] == LineStatus.REFUNDED) {
+        statuses[line] = LineStatus.FAILED;
+        failed++;
+      }
+    }
+  }
+
+  private void onCreditsRejected(CreditsRejected rejected) {
+    confirm(rejected.deliveryId());
+    Map<Integer, String> reasons = new HashMap<>();
+    for (int line : linesByCreditor.get(rejected.creditor())) {
+      reasons.put(line, "Creditor account not found, refunded!");
+    }
+    refund(rejected.creditor(), reasons);
+  }
+
+  /**
+   * Refunds the allocated lines of the creditor with a failure reason, grouped per debtor. They fail
+   * with it once debited and refunded.
+   */
+  private void refund(AccountId creditor, Map<Integer, String> reasons) {
+    Map<AccountId, List<AccountProtocol.Credit>> refundsByDebtor = new LinkedHashMap<>();
+    for (int line : linesByCreditor.get(creditor)) {
+      String reason = reasons.get(line);
+      if (reason == null) {
+        continue;
+      }
+      if (statuses[line] == LineStatus.ALLOCATED) {
+        statuses[line] = LineStatus.CREDIT_REJECTED;
+      } else if (statuses[line] == LineStatus.DEBITED) {
+        statuses[line] = LineStatus.REFUNDING;
+      } else {
+        continue;
+      }
+      failureReasons.put(line, reason);
+      refundsByDebtor.computeIfAbsent(lines.get(line).debtor(), debtor -> new ArrayList<>())
+        .add(new AccountProtocol.Credit(lineTransferId(bulkTransferId(), line), lines.get(line).amount()));
+    }
+    refundsByDebtor.forEach((debtor, credits) ->
+      deliverRefund(debtor, creditor, new AccountProtocol.CreditBatch(credits)));
+  }
+
+  private void onRefundsConfirmed(RefundsConfirmed confirmed) {
+    confirm(confirmed.deliveryId());
+    refunds.remove(confirmed.deliveryId());
+    for (int line : linesByCreditor.get(confirmed.creditor())) {
+      if (!lines.get(line).debtor().equals(confirmed.debtor())) {
+        continue;
+      }
+      if (statuses[line] == LineStatus.CREDIT_REJECTED) {
+        statuses[line] = LineStatus.REFUNDED;
+      } else if (statuses[line] == LineStatus.REFUNDING) {
+        statuses[line] = LineStatus.FAILED;
+        failed++;
+      }
+    }
+  }
+
+  // AT LEAST ONCE DELIVERY (confirm delivery)
+  private void confirm(long deliveryId) {
+    confirmDelivery(deliveryId);
+    redeliveries.confirmed(deliveryId);
+    openDeliveries.remove(deliveryId);
+    confirming.remove(deliveryId);
+  }
+
+  // AT LEAST ONCE DELIVERY (deliver)
+  private void deliver(AccountId to, AccountProtocol.Command command) {
+    deliver(accountRepository.path(), deliveryId -> forward(deliveryId, to, command));
+  }
+
+  private void deliverRefund(AccountId debtor, AccountId creditor, AccountProtocol.CreditBatch refund) {
+    deliver(accountRepository.path(), deliveryId -> {
+      refunds.put(deliveryId, creditor);
+      return forward(deliveryId, debtor, refund);
+    });
+  }
+
+  private AccountRepositoryProtocol.Forward forward(long deliveryId, AccountId to, AccountProtocol.Command command) {
+    openDeliveries.put(deliveryId, command);
+    AccountRepositoryProtocol.Forward forward =
+      new AccountRepositoryProtocol.Forward(to, new Delivery(deliveryId, command));
+    redeliveries.delivered(deliveryId, accountRepository, forward);
+    return forward;
+  }
+}
@@ -0,0 +1,193 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.UUID;
+
+public interface BulkTransferProtocol {
+
+  interface Event extends Serializable {
+  }
+
+  @Value
+  class BulkTransferLine {
+    AccountId debtor;
+    AccountId creditor;
+    Money amount;
+  }
+
+  /**
+   * Executes the lines of a payroll or payout file as one tracked job. Line {@code i} is
+   * booked as transfer {@code <bulk transfer id>-i}, see {@link BulkTransferProtocol#lineTransferId}.
+   */
+  @Value
+  class ExecuteBulkTransfer implements TransferProtocol.Command {
+    List<BulkTransferLine> lines;
+    /**
+     * Identifies the request on the requester's side, it is persisted with the bulk transfer.
+     */
+    String correlationId;
+
+    public ExecuteBulkTransfer(List<BulkTransferLine> lines, String correlationId) {
+      this.lines = lines;
+      this.correlationId = correlationId;
+    }
+
+    public ExecuteBulkTransfer(List<BulkTransferLine> lines) {
+      this(lines, UUID.randomUUID().toString());
+    }
+  }
+
+  @Value
+  class BulkTransferRejected {
+    TransferId bulkTransferId;
+    String reason;
+  }
+
+  @Value
+  class GetBulkTransferProgress {
+    private static final GetBulkTransferProgress instance = new GetBulkTransferProgress();
+
+    public static GetBulkTransferProgress instance() {
+      return instance;
+    }
+  }
+
+  @Value
+  class BulkTransferProgress {
+    TransferId bulkTransferId;
+    int lines;
+    /**
+     * Lines whose money is allocated, including the finished ones.
+     */
+    int allocated;
+    int succeeded;
+    int failed;
+    boolean finished;
+  }
+
+  /**
+   * Asks for the results of the lines {@code offset} to {@code offset + limit - 1}.
+   */
+  @Value
+  class GetBulkTransferResults {
+    int offset;
+    int limit;
+  }
+
+  @Value
+  class BulkTransferResults {
+    TransferId bulkTransferId;
+    List<LineResult> results;
+  }
+
+  @Value
+  class LineResult {
+    int line;
+    TransferId transferId;
+    LineStatus status;
+    /**
+     * Set for failed lines only.
+     */
+    String reason;
+  }
+
+  enum LineStatus {
+    PENDING,
+    ALLOCATED,
+    CREDITED,
+    DEBITED,
+    SUCCEEDED,
+    FAILED,
+    /**
+     * The creditor does not exist or rejected the line, the debit and the refund to the debtor are outstanding.
+     */
+    CREDIT_REJECTED,
+    /**
+     * Debited, the refund to the debtor is outstanding.
+     */
+    REFUNDING,
+    /**
+     * Refunded, the debit is outstanding.
+     */
+    REFUNDED
+  }
+
+  static TransferId lineTransferId(TransferId bulkTransferId, int line) {
+    return new TransferId(bulkTransferId.value() + "-" + line);
+  }
+
+  @Value
+  class BulkTransferInitiated implements Event {
+    TransferId bulkTransferId;
+    List<BulkTransferLine> lines;
+    String correlationId;
+  }
+
+  @Value
+  class LineRejected {
+    int line;
+    String reason;
+  }
+
+  /**
+   * The debtor answered its allocation batch, the lines not rejected are allocated.
+   */
+  @Value
+  class AllocationsConfirmed implements Event {
+    long deliveryId;
+    AccountId debtor;
+    List<LineRejected> rejected;
+  }
+
+  /**
+   * The creditor answered its credit batch, the lines it rejected are refunded to their debtors.
+   */
+  @Value
+  class CreditsConfirmed implements Event {
+    long deliveryId;
+    AccountId creditor;
+    List<LineRejected> rejected;
+  }
+
+  /**
+   * The debtor answered its debit batch. It rejects lines it has no allocated money for, they fail.
+   */
+  @Value
+  class DebitsConfirmed implements Event {
+    long deliveryId;
+    AccountId debtor;
+    List<LineRejected> rejected;
+  }
+
+  /**
+   * The creditor does not exist, its lines are refunded to their debtors.
+   */
+  @Value
+  class CreditsRejected implements Event {
+    long deliveryId;
+    AccountId creditor;
+  }
+
+  @Value
+  class RefundsConfirmed implements Event {
+    long deliveryId;
+    AccountId debtor;
+    AccountId creditor;
+  }
+
+  /**
+   * Outcome of every line, tagged as transfer event so the transfer projection books the lines
+   * like single transfers.
+   */
+  @Value
+  class BulkTransferFinished implements Event, TransferProtocol.Event {
+    TransferId bulkTransferId;
+    List<TransferProtocol.TransferCompleted> completed;
+    List<TransferProtocol.TransferFailed> failed;
+  }
+}
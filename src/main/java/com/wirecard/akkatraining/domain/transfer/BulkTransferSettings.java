@@ -0,0 +1,38 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import com.typesafe.config.Config;
+import com.wirecard.akkatraining.domain.RedeliverySettings;
+import lombok.Value;
+import lombok.experimental.Wither;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+@Wither
+public class BulkTransferSettings {
+
+  /**
+   * Larger bulk transfers are rejected, bounds the size of the initiating event.
+   */
+  int maxLines;
+  /**
+   * Idle time after which the bulk transfer asks its manager to be stopped.
+   */
+  FiniteDuration passivateAfter;
+  /**
+   * A bulk transfer has a batch per debtor and creditor in flight at once, its cap on unconfirmed
+   * messages is sized for twice {@link #maxLines}.
+   */
+  RedeliverySettings redelivery;
+
+  public static BulkTransferSettings fromConfig(Config config) {
+    Config bulkTransfer = config.getConfig("akka-training.bulk-transfer");
+    return new BulkTransferSettings(
+      bulkTransfer.getInt("max-lines"),
+      FiniteDuration.create(
+        bulkTransfer.getDuration("passivate-after", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+      RedeliverySettings.fromConfig(bulkTransfer.getConfig("redelivery"))
+    );
+  }
+}
@@ -1,5 +1,5 @@
 package com.wirecard.akkatraining.domain.transfer;
 
 public enum ConfirmationType {
-  DEBIT, CREDIT, MONEY_ALLOCATED, MONEY_ALLOCATION_FAILED
+  DEBIT, CREDIT, MONEY_ALLOCATED, MONEY_ALLOCATION_FAILED, CREDIT_REJECTED, REFUND, DEBIT_REJECTED
 }
@@ -2,149 +2,315 @@ package com.wirecard.akkatraining.domain.transfer;
 
 import akka.actor.ActorRef;
 import akka.actor.Props;
+import akka.actor.ReceiveTimeout;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
+import akka.japi.Util;
 import akka.japi.pf.ReceiveBuilder;
 import akka.persistence.AbstractPersistentActorWithAtLeastOnceDelivery;
+import akka.persistence.AtLeastOnceDelivery.AtLeastOnceDeliverySnapshot;
+import akka.persistence.AtLeastOnceDelivery.UnconfirmedDelivery;
+import akka.persistence.RecoveryCompleted;
+import akka.persistence.SnapshotOffer;
 import com.wirecard.akkatraining.domain.Delivery;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.Redeliveries;
+import com.wirecard.akkatraining.domain.Snapshots;
 import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.account.AccountProtocol;
 import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.AllocateMoneySent;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.CreditSent;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.DebitSent;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.ExecuteTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.GetTransferStatus;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.MessageConfirmed;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.MessageSent;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.RefundSent;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferFailed;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferInitiated;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferStatus;
+import com.wirecard.akkatraining.domain.transfer.TransferState.OutstandingDelivery;
+import com.wirecard.akkatraining.infrastructure.eventbus.DomainEventBus;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
+import scala.concurrent.duration.FiniteDuration;
 
-import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
 
+  private static final String creditorNotFoundReason = "Creditor account not found, refunded!";
+
+  /**
+   * Not persisted, a recovered transfer publishes its outcome on the domain event bus only.
+   */
   private ActorRef requester;
-  private BigDecimal amount;
+  private Money amount;
   private AccountId creditor;
   private AccountId debtor;
   private Status status;
   private ActorRef accountRepository;
+  private boolean moneyAllocated;
   private boolean creditCompleted;
   private boolean debitCompleted;
+  // the creditor does not exist or rejected the credit, the allocated money is credited back to the debtor
+  private boolean creditRejected;
+  private boolean refunded;
+  private String refundReason = "";
 
   private final LoggingAdapter log = Logging.getLogger(context().system(), this);
+  private final TransferSettings settings;
+  private final Snapshots snapshots;
+  private final Redeliveries redeliveries;
+  private final Metrics metrics = Metrics.get(context().system());
+  private final DomainEventBus eventBus = DomainEventBus.get(context().system());
+  /**
+   * Start of a transfer executed by this incarnation, 0 for a recovered one.
+   */
+  private long startNanos;
 
   private Transfer(ActorRef accountRepository) {
     this.accountRepository = accountRepository;
+    this.settings = TransferSettings.fromConfig(context().system().settings().config());
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+    this.redeliveries = new Redeliveries(getContext(), settings.redelivery(), metrics);
+  }
+
+  private Transfer(ActorRef accountRepository, TransferSettings settings) {
+    this.accountRepository = accountRepository;
+    this.settings = settings;
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+    this.redeliveries = new Redeliveries(getContext(), settings.redelivery(), metrics);
   }
 
   public static Props props(ActorRef accountRepository) {
     return Props.create(Transfer.class, () -> new Transfer(accountRepository));
   }
 
+  public static Props props(ActorRef accountRepository, TransferSettings settings) {
+    return Props.create(Transfer.class, () -> new Transfer(accountRepository, settings));
+  }
+
+  @Override
+  public void preStart() throws Exception {
+    super.preStart();
+    getContext().setReceiveTimeout(settings.passivateAfter());
+    redeliveries.start();
+  }
+
+  @Override
+  public void postStop() throws Exception {
+    redeliveries.stop();
+    super.postStop();
+  }
+
+  @Override
+  public FiniteDuration redeliverInterval() {
+    return Redeliveries.atLeastOnceDeliveryInterval;
+  }
+
+  @Override
+  public int maxUnconfirmedMessages() {
+    return settings.redelivery().maxUnconfirmedMessages();
+  }
+
   @Override
   public Receive createReceive() {
     return ReceiveBuilder.create()
       .match(ExecuteTransfer.class, this::executeTransfer)
-      .build();
+      .matchEquals(GetTransferStatus.instance(), this::transferStatus)
+      .match(ReceiveTimeout.class, this::passivate)
+      .build()
+      .orElse(redeliveries.receive());
   }
 
   private Receive transferInitiated() {
-    return ReceiveBuilder.create()
+    return common().orElse(ReceiveBuilder.create()
       .match(AccountProtocol.MoneyAllocated.class, this::moneyAllocated)
       .match(AccountProtocol.MoneyAllocationFailed.class, this::moneyAllocationFailed)
-      .build();
+      .match(AccountProtocol.AccountNotFound.class, this::debtorNotFound)
+      .build());
   }
 
   private Receive finishFlow() {
-    return ReceiveBuilder.create()
+    return common().orElse(ReceiveBuilder.create()
       .match(AccountProtocol.CreditSuccessful.class, this::creditSuccessful)
       .match(AccountProtocol.DebitSuccessful.class, this::debitSuccessful)
-      .build();
+      .match(AccountProtocol.DebitFailed.class, this::debitFailed)
+      .match(AccountProtocol.AccountNotFound.class, this::creditorNotFound)
+      .match(AccountProtocol.CreditFailed.class, this::creditFailed)
+      .build());
+  }
+
+  /**
+   * Behavior of every initiated transfer, the whole behavior of a finished one.
+   */
+  private Receive common() {
+    return snapshots.receive().orElse(redeliveries.receive()).orElse(ReceiveBuilder.create()
+      .matchEquals(GetTransferStatus.instance(), this::transferStatus)
+      .match(ReceiveTimeout.class, this::passivate)
+      .build());
+  }
+
+  private void passivate(ReceiveTimeout timeout) {
+    context().parent().tell(TransferManagerProtocol.Passivate.instance(), self());
+  }
+
+  /**
+   * A finished transfer has nothing left to do, its manager stops it.
+   */
+  private void notifyFinished() {
+    context().parent().tell(TransferManagerProtocol.Finished.instance(), self());
+  }
+
+  private void transferStatus(GetTransferStatus getTransferStatus) {
+    sender().tell(new TransferStatus(transferId(), status), self());
   }
 
   private void executeTransfer(ExecuteTransfer executeTransfer) {
     TransferInitiated event = new TransferInitiated(
       new TransferId(self().path().name()),
-      executeTransfer.debtor(), executeTransfer.creditor(), executeTransfer.amount(), sender());
-
-    persist(event, e -> {
-      onTransferInitiated(e);
-      notifyRequester(event);
-      persist(
-        new MessageSent(
-          new AccountProtocol.AllocateMoney(transferId(), executeTransfer.creditor(), executeTransfer.amount())),
-        this::onMessageSent);
-    });
+      executeTransfer.debtor(), executeTransfer.creditor(), executeTransfer.amount(), executeTransfer.correlationId());
+
+    requester = sender();
+    startNanos = System.nanoTime();
+    persistStep(
+      event,
+      new AllocateMoneySent(
+        new AccountProtocol.AllocateMoney(transferId(), executeTransfer.creditor(), executeTransfer.amount())));
   }
 
   private void moneyAllocated(AccountProtocol.MoneyAllocated moneyAllocated) {
-    persist(
+    persistStep(
       new MessageConfirmed(moneyAllocated.deliveryId(), ConfirmationType.MONEY_ALLOCATED),
-      this::onMessageConfirmed);
-
-    persist(
-      new MessageSent(
+      new CreditSent(
         new AccountProtocol.Credit(transferId(), moneyAllocated.amount())),
-      this::onMessageSent);
+      new DebitSent(
+        new AccountProtocol.Debit(transferId())));
 
-    persist(
-      new MessageSent(
-        new AccountProtocol.Debit(transferId())),
-      this::onMessageSent);
-
-    log.info("Money allocated status: {}", status);
+    log.debug("Money allocated status: {}", status);
   }
 
   private void moneyAllocationFailed(AccountProtocol.MoneyAllocationFailed moneyAllocationFailed) {
-    persist(
+    persistStep(
       new MessageConfirmed(moneyAllocationFailed.deliveryId(), ConfirmationType.MONEY_ALLOCATION_FAILED),
-      this::onMessageConfirmed);
+      new TransferFailed(transferId(), debtor, creditor, amount, moneyAllocationFailed.reason()));
 
-    persist(
-      new TransferFailed(transferId(), debtor, creditor, amount, moneyAllocationFailed.reason()),
-      event -> {
-        onTransferFailed(event);
-        notifyRequester(event);
-      });
+    log.debug("Money allocation failed, status: {}", status);
+  }
 
-    log.info("Money allocation failed, status: {}", status);
+  private void debtorNotFound(AccountProtocol.AccountNotFound notFound) {
+    persistStep(
+      new MessageConfirmed(notFound.deliveryId(), ConfirmationType.MONEY_ALLOCATION_FAILED),
+      new TransferFailed(transferId(), debtor, creditor, amount, "Debtor account not found!"));
+  }
+
+  private void creditorNotFound(AccountProtocol.AccountNotFound notFound) {
+    if (notFound.accountId().equals(creditor)) {
+      creditRejected(notFound.deliveryId(), creditorNotFoundReason);
+    }
+  }
+
+  private void creditFailed(AccountProtocol.CreditFailed creditFailed) {
+    creditRejected(creditFailed.deliveryId(), creditFailed.reason() + " Refunded!");
+  }
+
+  /**
+   * The debit of the allocated money is under way already, it is compensated by a refund to the debtor.
+   */
+  private void creditRejected(long deliveryId, String reason) {
+    if (creditRejected) {
+      return;
+    }
+    persistStep(
+      new MessageConfirmed(deliveryId, ConfirmationType.CREDIT_REJECTED),
+      new RefundSent(new AccountProtocol.Credit(transferId(), amount), reason));
   }
 
   private void creditSuccessful(AccountProtocol.CreditSuccessful creditSuccessful) {
-    persist(
-      new MessageConfirmed(creditSuccessful.deliveryId(), ConfirmationType.CREDIT),
-      mc -> {
-        onMessageConfirmed(mc);
-        if (creditCompleted && debitCompleted) {
-          persist(
-            new TransferCompleted(transferId(), debtor, creditor, amount),
-            tc -> {
-              onTransferCompleted(tc);
-              notifyRequester(tc);
-            });
-        }
+    if (creditRejected) {
+      refundSuccessful(creditSuccessful);
+      return;
+    }
+    if (creditCompleted) {
+      return;
+    }
+    MessageConfirmed confirmed = new MessageConfirmed(creditSuccessful.deliveryId(), ConfirmationType.CREDIT);
+    if (debitCompleted) {
+      persistStep(confirmed, new TransferCompleted(transferId(), debtor, creditor, amount));
+    } else {
+      persistStep(confirmed);
+    }
+    log.debug("Credit successful, status: {}", status);
+  }
 
-      }
-    );
-    log.info("Credit successful, status: {}", status);
+  private void refundSuccessful(AccountProtocol.CreditSuccessful refund) {
+    if (refunded) {
+      return;
+    }
+    MessageConfirmed confirmed = new MessageConfirmed(refund.deliveryId(), ConfirmationType.REFUND);
+    if (debitCompleted) {
+      persistStep(confirmed, refundedFailure());
+    } else {
+      persistStep(confirmed);
+    }
+  }
+
+  private TransferFailed refundedFailure() {
+    // refunds written without their reason are all to creditors not found
+    String reason = refundReason.isEmpty() ? creditorNotFoundReason : refundReason;
+    return new TransferFailed(transferId(), debtor, creditor, amount, reason);
   }
 
   private void debitSuccessful(AccountProtocol.DebitSuccessful debitSuccessful) {
-    persist(
-      new MessageConfirmed(debitSuccessful.deliveryId(), ConfirmationType.DEBIT),
-      mc -> {
-        onMessageConfirmed(mc);
-        if (creditCompleted && debitCompleted) {
-          persist(
-            new TransferCompleted(transferId(), debtor, creditor, amount),
-            tc -> {
-              onTransferCompleted(tc);
-              notifyRequester(tc);
-            });
+    if (debitCompleted) {
+      return;
+    }
+    MessageConfirmed confirmed = new MessageConfirmed(debitSuccessful.deliveryId(), ConfirmationType.DEBIT);
+    if (creditCompleted) {
+      persistStep(confirmed, new TransferCompleted(transferId(), debtor, creditor, amount));
+    } else if (refunded) {
+      persistStep(confirmed, refundedFailure());
+    } else {
+      persistStep(confirmed);
+    }
+    log.debug("Debit successful, status: {}", status);
+  }
+
+  /**
+   * The debtor has no allocation for the transfer, only a saga redelivering longer than the processed
+   * commands retention of the account gets here. The transfer fails, a credit made meanwhile is not reversed.
+   */
+  private void debitFailed(AccountProtocol.DebitFailed debitFailed) {
+    if (debitCompleted) {
+      return;
+    }
+    log.error("Debtor {} rejected the debit of transfer {}: {}", debtor, transferId(), debitFailed.reason());
+    persistStep(
+      new MessageConfirmed(debitFailed.deliveryId(), ConfirmationType.DEBIT_REJECTED),
+      new TransferFailed(transferId(), debtor, creditor, amount, debitFailed.reason()));
+  }
+
+  /**
+   * Persists the events of one saga step with a single atomic journal write.
+   */
+  private void persistStep(TransferProtocol.Event... events) {
+    persistAll(Arrays.asList(events), event -> {
+      onEvent(event);
+      boolean finished = event instanceof TransferCompleted || event instanceof TransferFailed;
+      if (event instanceof TransferInitiated || finished) {
+        notifyRequester(event);
+      }
+      if (finished) {
+        if (startNanos > 0) {
+          metrics.transferFinished(startNanos);
         }
+        notifyFinished();
       }
-    );
-
-    log.info("Debit successful, status: {}", status);
+    });
   }
 
   private TransferId transferId() {
@@ -152,8 +318,10 @@ public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
   }
 
   private void notifyRequester(Object event) {
-    context().system().eventStream().publish(event);
-    requester.tell(event, self());
+    eventBus.publish(event);
+    if (requester != null) {
+      requester.tell(event, self());
+    }
   }
 
   // PERSISTENCE
@@ -166,52 +334,116 @@ public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
   @Override
   public Receive createReceiveRecover() {
     return ReceiveBuilder.create()
-      .match(TransferInitiated.class, this::onTransferInitiated)
-      .match(MessageSent.class, this::onMessageSent)
-      .match(MessageConfirmed.class, this::onMessageConfirmed)
-      .match(TransferCompleted.class, this::onTransferCompleted)
-      .match(TransferFailed.class, this::onTransferFailed)
+      .match(SnapshotOffer.class, this::onSnapshotOffer)
+      .match(TransferProtocol.Event.class, this::onEvent)
+      .match(RecoveryCompleted.class, this::onRecoveryCompleted)
       .build();
   }
 
+  private TransferState state() {
+    AtLeastOnceDeliverySnapshot deliverySnapshot = getDeliverySnapshot();
+    List<OutstandingDelivery> outstanding = deliverySnapshot.getUnconfirmedDeliveries().stream()
+      .map(unconfirmed -> {
+        AccountRepositoryProtocol.Forward forward = (AccountRepositoryProtocol.Forward) unconfirmed.message();
+        Delivery delivery = (Delivery) forward.command();
+        return new OutstandingDelivery(
+          delivery.deliveryId(), forward.accountId(), (AccountProtocol.Command) delivery.message());
+      })
+      .collect(Collectors.toList());
+    return new TransferState(
+      debtor, creditor, amount, status, moneyAllocated, creditCompleted, debitCompleted, creditRejected, refunded,
+      refundReason, deliverySnapshot.currentDeliveryId(), outstanding);
+  }
+
+  // the outstanding commands are redelivered with their original delivery ids at the first redelivery check
+  private void onSnapshotOffer(SnapshotOffer snapshotOffer) {
+    TransferState state = (TransferState) snapshotOffer.snapshot();
+    debtor = state.debtor();
+    creditor = state.creditor();
+    amount = state.amount();
+    status = state.status();
+    moneyAllocated = state.moneyAllocated();
+    creditCompleted = state.creditCompleted();
+    debitCompleted = state.debitCompleted();
+    creditRejected = state.creditRejected();
+    refunded = state.refunded();
+    refundReason = state.refundReason();
+    List<UnconfirmedDelivery> unconfirmed = state.outstandingDeliveries().stream()
+      .map(outstanding -> {
+        AccountRepositoryProtocol.Forward forward = new AccountRepositoryProtocol.Forward(
+          outstanding.recipient(), new Delivery(outstanding.deliveryId(), outstanding.command()));
+        redeliveries.restored(outstanding.deliveryId(), accountRepository, forward);
+        return new UnconfirmedDelivery(outstanding.deliveryId(), accountRepository.path(), forward);
+      })
+      .collect(Collectors.toList());
+    setDeliverySnapshot(new AtLeastOnceDeliverySnapshot(state.currentDeliveryId(), Util.immutableSeq(unconfirmed)));
+    snapshots.snapshotRecovered();
+
+    if (status != Status.IN_PROGRESS) {
+      getContext().become(common());
+    } else if (moneyAllocated) {
+      getContext().become(finishFlow());
+    } else {
+      getContext().become(transferInitiated());
+    }
+  }
+
+  private void onRecoveryCompleted(RecoveryCompleted recoveryCompleted) {
+    if (status == Status.SUCCESS || status == Status.FAILED) {
+      notifyFinished();
+    }
+  }
+
+  private void onEvent(TransferProtocol.Event event) {
+    if (event instanceof TransferInitiated) {
+      onTransferInitiated((TransferInitiated) event);
+    } else if (event instanceof MessageSent) {
+      onMessageSent((MessageSent) event);
+    } else if (event instanceof MessageConfirmed) {
+      onMessageConfirmed((MessageConfirmed) event);
+    } else if (event instanceof TransferCompleted) {
+      onTransferCompleted((TransferCompleted) event);
+    } else if (event instanceof TransferFailed) {
+      onTransferFailed((TransferFailed) event);
+    }
+    snapshots.eventApplied(numberOfUnconfirmed(), this::state);
+  }
+
   private void onTransferInitiated(TransferInitiated transferInitiated) {
     this.amount = transferInitiated.amount();
     this.creditor = transferInitiated.creditor();
     this.debtor = transferInitiated.debtor();
     this.status = Status.IN_PROGRESS;
-    requester = transferInitiated.requester();
     getContext().become(transferInitiated());
   }
 
   private void onTransferFailed(TransferFailed transferFailed) {
     status = Status.FAILED;
-    getContext().become(emptyBehavior());
+    getContext().become(common());
   }
 
   private void onTransferCompleted(TransferCompleted transferCompleted) {
     status = Status.SUCCESS;
-    getContext().become(emptyBehavior());
+    getContext().become(common());
   }
 
   private void onMessageSent(MessageSent messageSent) {
-    Object msg = messageSent.message();
-    if (msg instanceof AccountProtocol.AllocateMoney) {
-      AccountProtocol.AllocateMoney message = (AccountProtocol.AllocateMoney) msg;
-      deliver(debtor, message);
-    }
-    if (msg instanceof AccountProtocol.Credit) {
+    if (messageSent instanceof AllocateMoneySent) {
+      deliver(debtor, messageSent.command());
+    } else if (messageSent instanceof CreditSent) {
       getContext().become(finishFlow());
-      AccountProtocol.Credit message = (AccountProtocol.Credit) msg;
-      deliver(creditor, message);
-    }
-    if (msg instanceof AccountProtocol.Debit) {
+      deliver(creditor, messageSent.command());
+    } else if (messageSent instanceof DebitSent) {
       getContext().become(finishFlow());
-      AccountProtocol.Debit message = (AccountProtocol.Debit) msg;
-      deliver(debtor, message);
+      deliver(debtor, messageSent.command());
+    } else if (messageSent instanceof RefundSent) {
+      refundReason = ((RefundSent) messageSent).reason();
+      deliver(debtor, messageSent.command());
     }
   }
 
   private void onMoneyAllocated() {
+    moneyAllocated = true;
     getContext().become(finishFlow());
   }
 
@@ -226,6 +458,14 @@ public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
     }
   }
 
+  private void onCreditRejected() {
+    creditRejected = true;
+  }
+
+  private void onRefund() {
+    refunded = true;
+  }
+
   private void onCreditSuccessful() {
     creditCompleted = true;
     if (debitCompleted) {
@@ -236,6 +476,7 @@ public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
   // AT LEAST ONCE DELIVERY (confirm delivery)
   private void onMessageConfirmed(MessageConfirmed confirmed) {
     confirmDelivery(confirmed.deliveryId());
+    redeliveries.confirmed(confirmed.deliveryId());
     ConfirmationType confirmationType = confirmed.confirmationType();
     switch (confirmationType) {
       case MONEY_ALLOCATED:
@@ -250,12 +491,25 @@ public class Transfer extends AbstractPersistentActorWithAtLeastOnceDelivery {
       case CREDIT:
         onCreditSuccessful();
         break;
+      case CREDIT_REJECTED:
+        onCreditRejected();
+        break;
+      case REFUND:
+        onRefund();
+        break;
+      case DEBIT_REJECTED:
+        // the transfer fails with the same write
+        break;
     }
   }
 
   // AT LEAST ONCE DELIVERY (deliver)
   private void deliver(AccountId to, Object message) {
-    deliver(accountRepository.path(), deliveryId ->
-      new AccountRepositoryProtocol.Forward(to, new Delivery(deliveryId, message)));
+    deliver(accountRepository.path(), deliveryId -> {
+      AccountRepositoryProtocol.Forward forward =
+        new AccountRepositoryProtocol.Forward(to, new Delivery(deliveryId, message));
+      redeliveries.delivered(deliveryId, accountRepository, forward);
+      return forward;
+    });
   }
 }
@@ -0,0 +1,206 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.event.Logging;
+import akka.event.LoggingAdapter;
+import akka.japi.pf.ReceiveBuilder;
+import akka.persistence.AbstractPersistentActor;
+import akka.persistence.RecoveryCompleted;
+import akka.persistence.SnapshotOffer;
+import com.wirecard.akkatraining.domain.Snapshots;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Finished;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Passivate;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.TransferFinished;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.TransferStarted;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Owns the {@link Transfer} sagas, or the {@link BulkTransfer} sagas when created with their props.
+ * A transfer is started on demand by the first message for it, which recovers it from the journal,
+ * and stopped once it finished or when it passivates.
+ * Messages for a stopping transfer are buffered and delivered to its next incarnation.
+ * <p>
+ * The manager persists which transfers are unfinished. Passivated unfinished transfers are
+ * woken up after {@code wake-up-after} to redeliver their outstanding commands, and all
+ * unfinished transfers are resumed when the manager recovers.
+ */
+public class TransferManager extends AbstractPersistentActor {
+
+  private final Props transferProps;
+  private final TransferManagerSettings settings;
+  private final LoggingAdapter log = Logging.getLogger(context().system(), this);
+  private final Snapshots snapshots;
+  private final Set<TransferId> unfinished = new LinkedHashSet<>();
+  private final Map<String, List<Buffered>> stopping = new HashMap<>();
+
+  private TransferManager(Props transferProps) {
+    this.transferProps = transferProps;
+    this.settings = TransferManagerSettings.fromConfig(context().system().settings().config());
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+  }
+
+  private TransferManager(Props transferProps, TransferManagerSettings settings) {
+    this.transferProps = transferProps;
+    this.settings = settings;
+    this.snapshots = new Snapshots(this, settings.snapshots(), log);
+  }
+
+  public static Props props(ActorRef accountRepository) {
+    return props(Transfer.props(accountRepository));
+  }
+
+  public static Props props(Props transferProps) {
+    return Props.create(TransferManager.class, () -> new TransferManager(transferProps));
+  }
+
+  public static Props props(Props transferProps, TransferManagerSettings settings) {
+    return Props.create(TransferManager.class, () -> new TransferManager(transferProps, settings));
+  }
+
+  @Override
+  public Receive createReceive() {
+    return snapshots.receive().orElse(ReceiveBuilder.create()
+      .match(Forward.class, this::forward)
+      .matchEquals(Passivate.instance(), p -> stop(sender()))
+      .matchEquals(Finished.instance(), this::finished)
+      .match(Terminated.class, this::terminated)
+      .match(WakeUp.class, this::wakeUp)
+      .build());
+  }
+
+  private void forward(Forward forward) {
+    TransferId transferId = forward.transferId();
+    ActorRef sender = sender();
+    if (forward.command() instanceof TransferProtocol.Command && !unfinished.contains(transferId)) {
+      // the transfer starts once it is known to be resumable
+      persistAsync(new TransferStarted(transferId), event -> {
+        accept(event);
+        deliver(transferId, forward.command(), sender);
+      });
+    } else {
+      deliver(transferId, forward.command(), sender);
+    }
+  }
+
+  private void finished(Finished finished) {
+    ActorRef transfer = sender();
+    TransferId transferId = new TransferId(transfer.path().name());
+    stop(transfer);
+    if (unfinished.contains(transferId)) {
+      persistAsync(new TransferFinished(transferId), this::accept);
+    }
+  }
+
+  private void deliver(TransferId transferId, Object message, ActorRef sender) {
+    String name = transferId.value();
+    List<Buffered> buffer = stopping.get(name);
+    if (buffer != null) {
+      buffer.add(new Buffered(message, sender));
+    } else {
+      getContext().findChild(name).orElseGet(() -> start(name)).tell(message, sender);
+    }
+  }
+
+  private ActorRef start(String name) {
+    return context().watch(context().actorOf(transferProps, name));
+  }
+
+  private void stop(ActorRef transfer) {
+    String name = transfer.path().name();
+    if (!stopping.containsKey(name)) {
+      stopping.put(name, new ArrayList<>());
+      // processed after the messages already in the transfer's mailbox
+      transfer.tell(PoisonPill.getInstance(), self());
+    }
+  }
+
+  private void terminated(Terminated terminated) {
+    String name = terminated.actor().path().name();
+    List<Buffered> buffer = stopping.remove(name);
+    if (buffer != null && !buffer.isEmpty()) {
+      log.debug("Restarting transfer {} for {} buffered messages", name, buffer.size());
+      ActorRef transfer = start(name);
+      buffer.forEach(buffered -> transfer.tell(buffered.message(), buffered.sender()));
+    } else if (unfinished.contains(new TransferId(name))) {
+      context().system().scheduler().scheduleOnce(
+        settings.wakeUpAfter(), self(), new WakeUp(name), context().dispatcher(), self());
+    }
+  }
+
+  private void wakeUp(WakeUp wakeUp) {
+    String name = wakeUp.name();
+    if (unfinished.contains(new TransferId(name))
+      && !stopping.containsKey(name)
+      && !getContext().findChild(name).isPresent()) {
+      start(name);
+    }
+  }
+
+  // PERSISTENCE
+
+  @Override
+  public String persistenceId() {
+    return self().path().name();
+  }
+
+  @Override
+  public Receive createReceiveRecover() {
+    return ReceiveBuilder.create()
+      .match(SnapshotOffer.class, this::accept)
+      .match(TransferStarted.class, this::accept)
+      .match(TransferFinished.class, this::accept)
+      .match(RecoveryCompleted.class, this::resume)
+      .build();
+  }
+
+  private void resume(RecoveryCompleted recoveryCompleted) {
+    if (!unfinished.isEmpty()) {
+      log.info("Resuming {} unfinished transfers", unfinished.size());
+      // a started transfer recovers and redelivers its outstanding commands
+      unfinished.forEach(transferId -> start(transferId.value()));
+    }
+  }
+
+  private void accept(SnapshotOffer snapshotOffer) {
+    TransferManagerState state = (TransferManagerState) snapshotOffer.snapshot();
+    unfinished.clear();
+    unfinished.addAll(state.unfinished());
+    snapshots.snapshotRecovered();
+  }
+
+  private void accept(TransferStarted started) {
+    unfinished.add(started.transferId());
+    snapshots.eventApplied(unfinished.size(), this::state);
+  }
+
+  private void accept(TransferFinished finished) {
+    unfinished.remove(finished.transferId());
+    snapshots.eventApplied(unfinished.size(), this::state);
+  }
+
+  private TransferManagerState state() {
+    return new TransferManagerState(new ArrayList<>(unfinished));
+  }
+
+  @Value
+  private static class Buffered {
+    Object message;
+    ActorRef sender;
+  }
+
+  @Value
+  private static class WakeUp {
+    String name;
+  }
+}
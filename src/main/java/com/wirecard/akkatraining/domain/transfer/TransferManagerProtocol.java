@@ -0,0 +1,55 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import lombok.Value;
+
+import java.io.Serializable;
+
+public interface TransferManagerProtocol {
+
+  interface Event extends Serializable {
+  }
+
+  /**
+   * Message for a transfer, the manager starts or recovers the transfer if it is not running.
+   */
+  @Value
+  class Forward {
+    TransferId transferId;
+    Object command;
+  }
+
+  /**
+   * Sent by an idle transfer to its manager, which stops it. An unfinished transfer is woken up
+   * again to redeliver its outstanding commands.
+   */
+  @Value
+  class Passivate {
+    private static final Passivate instance = new Passivate();
+
+    public static Passivate instance() {
+      return instance;
+    }
+  }
+
+  /**
+   * Sent by a completed or failed transfer to its manager, which stops it for good.
+   */
+  @Value
+  class Finished {
+    private static final Finished instance = new Finished();
+
+    public static Finished instance() {
+      return instance;
+    }
+  }
+
+  @Value
+  class TransferStarted implements Event {
+    TransferId transferId;
+  }
+
+  @Value
+  class TransferFinished implements Event {
+    TransferId transferId;
+  }
+}
@@ -0,0 +1,28 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import com.typesafe.config.Config;
+import com.wirecard.akkatraining.domain.SnapshotSettings;
+import lombok.Value;
+import lombok.experimental.Wither;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+@Wither
+public class TransferManagerSettings {
+
+  /**
+   * Time after which a passivated, unfinished transfer is started again to redeliver.
+   */
+  FiniteDuration wakeUpAfter;
+  SnapshotSettings snapshots;
+
+  public static TransferManagerSettings fromConfig(Config config) {
+    Config manager = config.getConfig("akka-training.transfer-manager");
+    return new TransferManagerSettings(
+      FiniteDuration.create(manager.getDuration("wake-up-after", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+      SnapshotSettings.fromConfig(manager.getConfig("snapshot"))
+    );
+  }
+}
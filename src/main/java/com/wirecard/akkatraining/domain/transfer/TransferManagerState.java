@@ -0,0 +1,14 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Snapshot of the {@link TransferManager}.
+ */
+@Value
+public class TransferManagerState {
+
+  List<TransferId> unfinished;
+}
@@ -1,12 +1,13 @@
 package com.wirecard.akkatraining.domain.transfer;
 
-import akka.actor.ActorRef;
 import com.wirecard.akkatraining.domain.Confirmation;
+import com.wirecard.akkatraining.domain.Money;
 import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
 import lombok.Value;
 
 import java.io.Serializable;
-import java.math.BigDecimal;
+import java.util.UUID;
 
 public interface TransferProtocol {
 
@@ -18,14 +19,74 @@ public interface TransferProtocol {
 
   @Value
   class ExecuteTransfer implements Command {
-    BigDecimal amount;
+    Money amount;
     AccountId creditor;
     AccountId debtor;
+    /**
+     * Identifies the request on the requester's side, it is persisted with the transfer.
+     */
+    String correlationId;
+
+    public ExecuteTransfer(Money amount, AccountId creditor, AccountId debtor, String correlationId) {
+      this.amount = amount;
+      this.creditor = creditor;
+      this.debtor = debtor;
+      this.correlationId = correlationId;
+    }
+
+    public ExecuteTransfer(Money amount, AccountId creditor, AccountId debtor) {
+      this(amount, creditor, debtor, UUID.randomUUID().toString());
+    }
+  }
+
+  @Value
+  class GetTransferStatus {
+    private static final GetTransferStatus instance = new GetTransferStatus();
+
+    public static GetTransferStatus instance() {
+      return instance;
+    }
+  }
+
+  @Value
+  class TransferStatus {
+    TransferId transferId;
+    /**
+     * {@code null} until the transfer is initiated.
+     */
+    Status status;
+  }
+
+  /**
+   * Command sent to an account with at least once delivery.
+   */
+  interface MessageSent extends Event {
+    AccountProtocol.Command command();
+  }
+
+  @Value
+  class AllocateMoneySent implements MessageSent {
+    AccountProtocol.AllocateMoney command;
   }
 
   @Value
-  class MessageSent implements Event {
-    Object message;
+  class CreditSent implements MessageSent {
+    AccountProtocol.Credit command;
+  }
+
+  @Value
+  class DebitSent implements MessageSent {
+    AccountProtocol.Debit command;
+  }
+
+  /**
+   * Credits the allocated money back to the debtor, the creditor does not exist or rejected the credit.
+   * The transfer fails with the {@code reason} once refunded and debited, it is empty in refunds written before.
+   */
+  @Value
+  class RefundSent implements MessageSent {
+    AccountProtocol.Credit command;
+    String reason;
   }
 
   @Value
@@ -39,8 +100,8 @@ public interface TransferProtocol {
     TransferId transferId;
     AccountId debtor;
     AccountId creditor;
-    BigDecimal amount;
-    ActorRef requester;
+    Money amount;
+    String correlationId;
   }
 
   @Value
@@ -48,7 +109,7 @@ public interface TransferProtocol {
     TransferId transferId;
     AccountId debtor;
     AccountId creditor;
-    BigDecimal amount;
+    Money amount;
   }
 
   @Value
@@ -56,7 +117,7 @@ public interface TransferProtocol {
     TransferId transferId;
     AccountId debtor;
     AccountId creditor;
-    BigDecimal amount;
+    Money amount;
     String reason;
   }
 }
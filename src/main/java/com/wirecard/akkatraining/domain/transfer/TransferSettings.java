@@ -0,0 +1,31 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import com.typesafe.config.Config;
+import com.wirecard.akkatraining.domain.RedeliverySettings;
+import com.wirecard.akkatraining.domain.SnapshotSettings;
+import lombok.Value;
+import lombok.experimental.Wither;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+@Wither
+public class TransferSettings {
+
+  SnapshotSettings snapshots;
+  /**
+   * Idle time after which the transfer asks its manager to be stopped.
+   */
+  FiniteDuration passivateAfter;
+  RedeliverySettings redelivery;
+
+  public static TransferSettings fromConfig(Config config) {
+    Config transfer = config.getConfig("akka-training.transfer");
+    return new TransferSettings(
+      SnapshotSettings.fromConfig(transfer.getConfig("snapshot")),
+      FiniteDuration.create(transfer.getDuration("passivate-after", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+      RedeliverySettings.fromConfig(transfer.getConfig("redelivery"))
+    );
+  }
+}
@@ -0,0 +1,36 @@
+package com.wirecard.akkatraining.domain.transfer;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Snapshot of a {@link Transfer}, including the commands it has not got a confirmation for yet.
+ */
+@Value
+public class TransferState {
+
+  AccountId debtor;
+  AccountId creditor;
+  Money amount;
+  Status status;
+  boolean moneyAllocated;
+  boolean creditCompleted;
+  boolean debitCompleted;
+  boolean creditRejected;
+  boolean refunded;
+  // empty without a refund and for a refund written without its reason
+  String refundReason;
+  long currentDeliveryId;
+  List<OutstandingDelivery> outstandingDeliveries;
+
+  @Value
+  public static class OutstandingDelivery {
+    long deliveryId;
+    AccountId recipient;
+    AccountProtocol.Command command;
+  }
+}
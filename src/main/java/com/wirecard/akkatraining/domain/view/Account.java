@@ -1,58 +1,146 @@
 package com.wirecard.akkatraining.domain.view;
 
-
 import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.account.PendingTransfer;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+/**
+ * Read model of an account. Projections mutate it while queries read it,
+ * so every access synchronizes on the account itself.
+ * <p>
+ * The allocated balance and the turnover totals are maintained as events are applied,
+ * so the {@link #summary()} does not depend on the history length. Only the last
+ * {@code maxTurnovers} turnovers are retained.
+ */
+public class Account implements Serializable {
+
+  private static final BigDecimal zero = BigDecimal.ZERO.setScale(2);
+
+  @Getter
+  private final AccountId accountId;
+  @Getter
+  private final String accountName;
+  @Getter
+  private final BigDecimal balance;
+  private final int maxTurnovers;
+  private final Map<TransferId, PendingTransfer> pendingTransfers = new LinkedHashMap<>();
+  private BigDecimal allocatedBalance = zero;
+  private final Deque<Turnover> turnovers = new ArrayDeque<>();
+  private long turnoverCount;
+  private BigDecimal credited = zero;
+  private BigDecimal debited = zero;
+
+  @Builder
+  private Account(AccountId accountId, String accountName, BigDecimal balance, int maxTurnovers) {
+    if (maxTurnovers <= 0) {
+      throw new IllegalArgumentException("maxTurnovers must be positive");
+    }
+    this.accountId = accountId;
+    this.accountName = accountName;
+    this.balance = balance;
+    this.maxTurnovers = maxTurnovers;
+  }
+
+  /**
+   * Independent copy of the view, e.g. to write it while the projections go on mutating this one.
+   */
+  public synchronized Account copy() {
+    Account copy = new Account(accountId, accountName, balance, maxTurnovers);
+    copy.pendingTransfers.putAll(pendingTransfers);
+    copy.allocatedBalance = allocatedBalance;
+    copy.turnovers.addAll(turnovers);
+    copy.turnoverCount = turnoverCount;
+    copy.credited = credited;
+    copy.debited = debited;
+    return copy;
+  }
 
-@AllArgsConstructor
-@Builder
-@Getter
-public class Account {
-  private AccountId accountId;
-  private String accountName;
-  private BigDecimal balance;
-  private List<Turnover> turnovers;
-  private List<PendingTransfer> pendingTransfers;
+  public synchronized AccountSummary summary() {
+    return new AccountSummary(
+      accountId, accountName, balance, allocatedBalance, pendingTransfers.size(), turnoverCount, credited, debited);
+  }
+
+  /**
+   * Retained turnovers, oldest first.
+   */
+  public synchronized List<Turnover> turnovers() {
+    return new ArrayList<>(turnovers);
+  }
+
+  /**
+   * Retained turnovers, newest first.
+   */
+  public synchronized List<Turnover> turnovers(int offset, int limit) {
+    List<Turnover> page = new ArrayList<>();
+    Iterator<Turnover> newestFirst = turnovers.descendingIterator();
+    for (int i = 0; i < offset && newestFirst.hasNext(); i++) {
+      newestFirst.next();
+    }
+    while (page.size() < limit && newestFirst.hasNext()) {
+      page.add(newestFirst.next());
+    }
+    return page;
+  }
+
+  public synchronized List<PendingTransfer> pendingTransfers() {
+    return new ArrayList<>(pendingTransfers.values());
+  }
 
-  public BigDecimal allocatedBalance() {
-    return pendingTransfers.stream()
-      .map(PendingTransfer::amount)
-      .reduce(BigDecimal.ZERO, BigDecimal::add)
-      .setScale(2, RoundingMode.HALF_UP);
+  public synchronized BigDecimal allocatedBalance() {
+    return allocatedBalance;
   }
 
-  public void addPendingTransfer(PendingTransfer pendingTransfer) {
-    this.pendingTransfers.add(pendingTransfer);
+  public synchronized void addPendingTransfer(PendingTransfer pendingTransfer) {
+    PendingTransfer previous = pendingTransfers.put(pendingTransfer.transferId(), pendingTransfer);
+    if (previous != null) {
+      allocatedBalance = allocatedBalance.subtract(previous.amount().toBigDecimal());
+    }
+    allocatedBalance = allocatedBalance.add(pendingTransfer.amount().toBigDecimal());
   }
 
-  public void removePendingTransfer(TransferId id) {
-    pendingTransfers.stream()
-      .filter(pt -> pt.transferId().equals(id))
-      .findFirst()
-      .ifPresent(pendingTransfers::remove);
+  public synchronized void removePendingTransfer(TransferId id) {
+    PendingTransfer removed = pendingTransfers.remove(id);
+    if (removed != null) {
+      allocatedBalance = allocatedBalance.subtract(removed.amount().toBigDecimal());
+    }
   }
 
-  public void addTurnover(Turnover turnover) {
-    turnovers.add(turnover);
+  public synchronized void addTurnover(Turnover turnover) {
+    turnovers.addLast(turnover);
+    if (turnovers.size() > maxTurnovers) {
+      turnovers.removeFirst();
+    }
+    turnoverCount++;
+    if (turnover.amount().signum() >= 0) {
+      credited = credited.add(turnover.amount());
+    } else {
+      debited = debited.subtract(turnover.amount());
+    }
   }
 
   @Override
-  public String toString() {
+  public synchronized String toString() {
     return "Account{" +
       "accountId=" + accountId +
       ", accountName='" + accountName + '\'' +
       ", balance=" + balance +
-      ", allocatedBalance=" + allocatedBalance() +
-      ", turnovers=" + turnovers +
-      ", pendingTransfers=" + pendingTransfers +
+      ", allocatedBalance=" + allocatedBalance +
+      ", pendingTransfers=" + pendingTransfers.size() +
+      ", turnovers=" + turnoverCount +
+      ", credited=" + credited +
+      ", debited=" + debited +
       '}';
   }
-}
\ No newline at end of file
+}
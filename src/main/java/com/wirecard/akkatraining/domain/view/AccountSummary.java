@@ -0,0 +1,25 @@
+package com.wirecard.akkatraining.domain.view;
+
+import com.wirecard.akkatraining.domain.account.AccountId;
+import lombok.Value;
+
+import java.math.BigDecimal;
+
+/**
+ * Point in time summary of an {@link Account} view.
+ */
+@Value
+public class AccountSummary {
+
+  AccountId accountId;
+  String accountName;
+  BigDecimal balance;
+  BigDecimal allocatedBalance;
+  int pendingTransfers;
+  /**
+   * All turnovers applied, including the ones no longer retained.
+   */
+  long turnovers;
+  BigDecimal credited;
+  BigDecimal debited;
+}
@@ -2,7 +2,51 @@ package com.wirecard.akkatraining.domain.view;
 
 import com.wirecard.akkatraining.domain.account.AccountId;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Account views, read by the queries and written by the projections. The transfer projection
+ * may run ahead of the account projection, turnovers of an account without a view yet are
+ * parked until its view is created.
+ */
 public interface AccountViewRepository {
 
   Account find(AccountId accountId);
+
+  /**
+   * Applies the update to the account view if it exists.
+   *
+   * @return false if there is no view for the account (yet)
+   */
+  boolean update(AccountId accountId, Consumer<Account> update);
+
+  /**
+   * Replaces the account view by the result of the function, which gets {@code null}
+   * for an unknown account. Returning {@code null} removes the view. A created view
+   * gets the turnovers parked for it.
+   */
+  void compute(AccountId accountId, UnaryOperator<Account> function);
+
+  /**
+   * Adds the turnovers to the account view, or parks them until the view is created.
+   */
+  void addTurnovers(AccountId accountId, List<Turnover> turnovers);
+
+  /**
+   * Copies of the views, unaffected by later updates.
+   */
+  List<Account> snapshot();
+
+  /**
+   * Turnovers waiting for the view of their account, part of the projection checkpoint.
+   */
+  Map<AccountId, List<Turnover>> parkedTurnovers();
+
+  /**
+   * Replaces all views and parked turnovers, e.g. by those of a projection checkpoint.
+   */
+  void restore(List<Account> snapshot, Map<AccountId, List<Turnover>> parked);
 }
@@ -5,11 +5,12 @@ import com.wirecard.akkatraining.domain.transfer.TransferId;
 import lombok.Builder;
 import lombok.Value;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 @Value
 @Builder
-public class Transfer {
+public class Transfer implements Serializable {
   TransferId transferId;
   AccountId debtor;
   AccountId creditor;
@@ -3,10 +3,11 @@ package com.wirecard.akkatraining.domain.view;
 import com.wirecard.akkatraining.domain.account.AccountId;
 import lombok.Value;
 
+import java.io.Serializable;
 import java.math.BigDecimal;
 
 @Value
-public class Turnover {
+public class Turnover implements Serializable {
 
   AccountId owner;
   BigDecimal amount;
@@ -0,0 +1,119 @@
+package com.wirecard.akkatraining.infrastructure.eventbus;
+
+import akka.NotUsed;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Extension;
+import akka.japi.Pair;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.BroadcastHub;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Fan-out of the domain events published by the aggregates, replacing the system event stream.
+ * <p>
+ * {@link #publish} never blocks: events are buffered up to {@code buffer-size} in front of a
+ * {@link BroadcastHub}, the oldest are dropped when the hub cannot keep up. Every subscriber
+ * gets its own bounded buffer and overflow strategy, so with a dropping strategy a slow
+ * subscriber loses its oldest events instead of slowing down the others. Events published
+ * while nobody is subscribed are buffered and then dropped.
+ */
+public class DomainEventBus implements Extension {
+
+  private final Materializer materializer;
+  private final ActorRef publisher;
+  private final Source<Object, NotUsed> hub;
+  private final int subscriberBufferSize;
+
+  DomainEventBus(ActorSystem system) {
+    Config config = system.settings().config().getConfig("akka-training.domain-event-bus");
+    materializer = ActorMaterializer.create(system);
+    subscriberBufferSize = config.getInt("subscriber-buffer-size");
+    Pair<ActorRef, Source<Object, NotUsed>> bus = Source.<Object>actorRef(config.getInt("buffer-size"), OverflowStrategy.dropHead())
+      .toMat(BroadcastHub.of(Object.class, config.getInt("hub-buffer-size")), Keep.both())
+      .run(materializer);
+    publisher = bus.first();
+    hub = bus.second();
+  }
+
+  public static DomainEventBus get(ActorSystem system) {
+    return DomainEventBusExtension.instance.get(system);
+  }
+
+  public void publish(Object event) {
+    publisher.tell(event, ActorRef.noSender());
+  }
+
+  /**
+   * Events of the class published from now on, oldest dropped beyond the default subscriber buffer.
+   */
+  public <T> Source<T, NotUsed> events(Class<T> eventClass) {
+    return events(eventClass, subscriberBufferSize, OverflowStrategy.dropHead());
+  }
+
+  public <T> Source<T, NotUsed> events(Class<T> eventClass, int bufferSize, OverflowStrategy overflowStrategy) {
+    return hub
+      .filter(eventClass::isInstance)
+      .map(eventClass::cast)
+      .buffer(bufferSize, overflowStrategy)
+      // the subscriber runs behind an asynchronous boundary, its buffer keeps draining the hub
+      .async();
+  }
+
+  /**
+   * Events which are instances of any of the classes.
+   */
+  public Source<Object, NotUsed> events(
+    Collection<Class<?>> eventClasses, int bufferSize, OverflowStrategy overflowStrategy) {
+    List<Class<?>> classes = new ArrayList<>(eventClasses);
+    return hub
+      .filter(event -> classes.stream().anyMatch(c -> c.isInstance(event)))
+      .buffer(bufferSize, overflowStrategy)
+      .async();
+  }
+
+  /**
+   * Delivers the events to the actor one at a time, the actor answers every message
+   * (including {@link Subscribed}) with {@link Ack#instance()}. It gets {@link Completed}
+   * when the bus stops.
+   */
+  public void subscribe(ActorRef subscriber, Collection<Class<?>> eventClasses, OverflowStrategy overflowStrategy) {
+    events(eventClasses, subscriberBufferSize, overflowStrategy)
+      .runWith(Sink.actorRefWithAck(
+        subscriber, Subscribed.instance, Ack.instance, Completed.instance, failure -> Completed.instance), materializer);
+  }
+
+  public static final class Subscribed {
+    static final Subscribed instance = new Subscribed();
+
+    private Subscribed() {
+    }
+  }
+
+  public static final class Ack {
+    static final Ack instance = new Ack();
+
+    private Ack() {
+    }
+
+    public static Ack instance() {
+      return instance;
+    }
+  }
+
+  public static final class Completed {
+    static final Completed instance = new Completed();
+
+    private Completed() {
+    }
+  }
+}
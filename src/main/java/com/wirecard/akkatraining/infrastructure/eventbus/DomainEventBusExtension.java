@@ -0,0 +1,24 @@
+package com.wirecard.akkatraining.infrastructure.eventbus;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionId;
+import akka.actor.ExtensionIdProvider;
+
+public class DomainEventBusExtension extends AbstractExtensionId<DomainEventBus> implements ExtensionIdProvider {
+
+  public static final DomainEventBusExtension instance = new DomainEventBusExtension();
+
+  private DomainEventBusExtension() {
+  }
+
+  @Override
+  public ExtensionId<DomainEventBus> lookup() {
+    return instance;
+  }
+
+  @Override
+  public DomainEventBus createExtension(ExtendedActorSystem system) {
+    return new DomainEventBus(system);
+  }
+}
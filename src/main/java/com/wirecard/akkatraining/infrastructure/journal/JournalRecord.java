@@ -0,0 +1,143 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Entry of a {@link MappedLog} segment: {@code int length, int crc32} of the body, followed by the
+ * body {@code byte type, long sequenceNr, persistence id, tags, payload}. Strings are written with
+ * a {@code short} length, the payload with an {@code int} length. A length of 0 ends the data of a segment.
+ */
+@Value
+public class JournalRecord {
+
+  static final int headerSize = 8;
+
+  enum Type {
+    /**
+     * A serialized {@code PersistentRepr}.
+     */
+    EVENT,
+    /**
+     * Events of the persistence id up to the sequence number are deleted.
+     */
+    DELETION,
+    /**
+     * Ends a group commit, records after the last commit are dropped when the log is opened.
+     */
+    COMMIT
+  }
+
+  private static final JournalRecord commit =
+    new JournalRecord(Type.COMMIT, "", 0, Collections.emptyList(), new byte[0]);
+
+  Type type;
+  String persistenceId;
+  long sequenceNr;
+  List<String> tags;
+  byte[] payload;
+
+  public static JournalRecord event(String persistenceId, long sequenceNr, Collection<String> tags, byte[] payload) {
+    return new JournalRecord(Type.EVENT, persistenceId, sequenceNr, new ArrayList<>(tags), payload);
+  }
+
+  public static JournalRecord deletion(String persistenceId, long toSequenceNr) {
+    return new JournalRecord(Type.DELETION, persistenceId, toSequenceNr, Collections.emptyList(), new byte[0]);
+  }
+
+  static JournalRecord commit() {
+    return commit;
+  }
+
+  /**
+   * Header and body, ready to be copied into a segment.
+   */
+  byte[] encode() {
+    if (tags.size() > Byte.MAX_VALUE) {
+      throw new IllegalArgumentException(
+        "More than " + Byte.MAX_VALUE + " tags on event " + sequenceNr + " of " + persistenceId);
+    }
+    byte[] id = bytes(persistenceId);
+    List<byte[]> tagBytes = new ArrayList<>(tags.size());
+    int bodySize = 1 + 8 + 2 + id.length + 1 + 4 + payload.length;
+    for (String tag : tags) {
+      byte[] bytes = bytes(tag);
+      tagBytes.add(bytes);
+      bodySize += 2 + bytes.length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(headerSize + bodySize);
+    buffer.position(headerSize);
+    buffer.put((byte) type.ordinal());
+    buffer.putLong(sequenceNr);
+    buffer.putShort((short) id.length).put(id);
+    buffer.put((byte) tagBytes.size());
+    for (byte[] tag : tagBytes) {
+      buffer.putShort((short) tag.length).put(tag);
+    }
+    buffer.putInt(payload.length).put(payload);
+    buffer.putInt(0, bodySize);
+    buffer.putInt(4, crc(buffer.array(), headerSize, bodySize));
+    return buffer.array();
+  }
+
+  /**
+   * Reads the record at the position of {@code buffer} and advances the position behind it.
+   * Returns {@code null} at the end of the data and for a record torn by a crash.
+   */
+  static JournalRecord decode(ByteBuffer buffer) {
+    if (buffer.remaining() < headerSize) {
+      return null;
+    }
+    int start = buffer.position();
+    int bodySize = buffer.getInt(start);
+    if (bodySize <= 0 || bodySize > buffer.remaining() - headerSize) {
+      return null;
+    }
+    byte[] body = new byte[bodySize];
+    buffer.position(start + headerSize);
+    buffer.get(body);
+    if (crc(body, 0, bodySize) != buffer.getInt(start + 4)) {
+      buffer.position(start);
+      return null;
+    }
+    ByteBuffer in = ByteBuffer.wrap(body);
+    Type type = Type.values()[in.get()];
+    long sequenceNr = in.getLong();
+    String persistenceId = string(in);
+    int tagCount = in.get();
+    List<String> tags = new ArrayList<>(tagCount);
+    for (int i = 0; i < tagCount; i++) {
+      tags.add(string(in));
+    }
+    byte[] payload = new byte[in.getInt()];
+    in.get(payload);
+    return new JournalRecord(type, persistenceId, sequenceNr, tags, payload);
+  }
+
+  private static byte[] bytes(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Persistence id or tag longer than " + Short.MAX_VALUE + " bytes");
+    }
+    return bytes;
+  }
+
+  private static String string(ByteBuffer in) {
+    byte[] bytes = new byte[in.getShort()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int crc(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+}
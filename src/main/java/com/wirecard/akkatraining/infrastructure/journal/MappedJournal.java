@@ -0,0 +1,95 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.dispatch.Futures;
+import akka.persistence.AtomicWrite;
+import akka.persistence.PersistentRepr;
+import akka.persistence.journal.Tagged;
+import akka.persistence.journal.japi.AsyncWriteJournal;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import com.typesafe.config.Config;
+import scala.collection.JavaConverters;
+import scala.compat.java8.FutureConverters;
+import scala.concurrent.Future;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+
+/**
+ * Journal plugin writing to a {@link MappedLog}. The tags of {@link Tagged} events are stored
+ * next to the event for the {@link MappedReadJournal}, the event itself is stored without them.
+ * All atomic writes of one call end up in the same group commit or in consecutive ones.
+ */
+public class MappedJournal extends AsyncWriteJournal {
+
+  private final Serialization serialization = SerializationExtension.get(context().system());
+  private final MappedLog log;
+
+  public MappedJournal(Config config) {
+    log = MappedLogs.get(context().system()).open(MappedJournalSettings.fromConfig(config));
+  }
+
+  @Override
+  public Future<Iterable<Optional<Exception>>> doAsyncWriteMessages(Iterable<AtomicWrite> messages) {
+    List<Optional<Exception>> results = new ArrayList<>();
+    List<CompletableFuture<Void>> appended = new ArrayList<>();
+    for (AtomicWrite write : messages) {
+      try {
+        appended.add(log.append(records(write)).toCompletableFuture());
+        results.add(Optional.empty());
+      } catch (Exception e) {
+        // serialization failures and oversized events reject the write only
+        results.add(Optional.of(e));
+      }
+    }
+    CompletionStage<Iterable<Optional<Exception>>> written = CompletableFuture
+      .allOf(appended.toArray(new CompletableFuture[0]))
+      .thenApply(done -> results);
+    return FutureConverters.toScala(written);
+  }
+
+  @Override
+  public Future<Void> doAsyncDeleteMessagesTo(String persistenceId, long toSequenceNr) {
+    return FutureConverters.toScala(log.deleteTo(persistenceId, toSequenceNr));
+  }
+
+  @Override
+  public Future<Void> doAsyncReplayMessages(
+    String persistenceId, long fromSequenceNr, long toSequenceNr, long max, Consumer<PersistentRepr> replayCallback) {
+    return Futures.future(() -> {
+      log.replay(persistenceId, fromSequenceNr, toSequenceNr, max,
+        record -> replayCallback.accept(persistentRepr(record)));
+      return null;
+    }, context().dispatcher());
+  }
+
+  @Override
+  public Future<Long> doAsyncReadHighestSequenceNr(String persistenceId, long fromSequenceNr) {
+    return Futures.successful(log.highestSequenceNr(persistenceId));
+  }
+
+  private List<JournalRecord> records(AtomicWrite write) {
+    List<JournalRecord> records = new ArrayList<>();
+    for (PersistentRepr repr : JavaConverters.seqAsJavaListConverter(write.payload()).asJava()) {
+      Collection<String> tags = Collections.emptySet();
+      if (repr.payload() instanceof Tagged) {
+        Tagged tagged = (Tagged) repr.payload();
+        tags = JavaConverters.setAsJavaSetConverter(tagged.tags()).asJava();
+        repr = repr.withPayload(tagged.payload());
+      }
+      byte[] payload = serialization.serialize(repr).get();
+      records.add(JournalRecord.event(repr.persistenceId(), repr.sequenceNr(), tags, payload));
+    }
+    return records;
+  }
+
+  private PersistentRepr persistentRepr(JournalRecord record) {
+    return serialization.deserialize(record.payload(), PersistentRepr.class).get();
+  }
+}
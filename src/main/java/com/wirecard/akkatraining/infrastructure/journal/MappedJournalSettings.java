@@ -0,0 +1,34 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import com.typesafe.config.Config;
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Value
+public class MappedJournalSettings {
+
+  Path directory;
+  /**
+   * Size of each mapped segment file, a record never spans two segments.
+   */
+  int segmentSize;
+  /**
+   * Force the written segments to disk before a group commit is confirmed.
+   */
+  boolean fsync;
+  /**
+   * Maximum number of atomic writes appended by one group commit.
+   */
+  int maxGroupCommit;
+
+  public static MappedJournalSettings fromConfig(Config journal) {
+    return new MappedJournalSettings(
+      Paths.get(journal.getString("dir")),
+      Math.toIntExact(journal.getBytes("segment-size")),
+      journal.getBoolean("fsync"),
+      journal.getInt("max-group-commit")
+    );
+  }
+}
@@ -0,0 +1,457 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of journal records in memory-mapped segment files, shared by the
+ * {@link MappedJournal} and the {@link MappedReadJournal} of a directory.
+ * <p>
+ * One writer thread appends the waiting writes as a group commit: it copies all of them into the
+ * current segment, ends them with a commit record, forces the touched segments to disk once and only
+ * then publishes the records to the in-memory indexes and confirms the writes. Opening the log scans
+ * the segments to rebuild the indexes and drops whatever follows the last commit record.
+ * <p>
+ * A record is addressed by its position, the segment number in the high and the offset in the low
+ * 32 bits. The index of a persistence id maps sequence numbers to positions, the index of a tag is
+ * the list of positions in commit order. The tag offset of an event is its 1-based place in that list.
+ * A persistence id whose events are all deleted only keeps its highest sequence number.
+ */
+@Slf4j
+public class MappedLog implements Closeable {
+
+  private static final byte[] commitRecord = JournalRecord.commit().encode();
+
+  private final MappedJournalSettings settings;
+  private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+  private final Map<String, PersistenceIdIndex> persistenceIds = new ConcurrentHashMap<>();
+  /**
+   * Highest sequence numbers of the persistence ids without events, a recovered actor continues after it.
+   */
+  private final Map<String, Long> deletedPersistenceIds = new ConcurrentHashMap<>();
+  private final Map<String, TagIndex> tags = new ConcurrentHashMap<>();
+  private final BlockingQueue<PendingWrite> writes = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  /**
+   * Segment appended to, owned by the writer thread once the log is open.
+   */
+  private Segment current;
+  private volatile boolean closed;
+
+  MappedLog(MappedJournalSettings settings) {
+    this.settings = settings;
+    recover();
+    writer = new Thread(this::writeLoop, "mapped-journal-writer-" + settings.directory().getFileName());
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Appends the records of one atomic write, they are published and confirmed together.
+   * Throws {@link IllegalArgumentException} for a record that does not fit into a segment.
+   */
+  public CompletionStage<Void> append(List<JournalRecord> records) {
+    List<byte[]> encoded = new ArrayList<>(records.size());
+    for (JournalRecord record : records) {
+      byte[] bytes = record.encode();
+      if (bytes.length + commitRecord.length > settings.segmentSize()) {
+        throw new IllegalArgumentException("Event " + record.sequenceNr() + " of " + record.persistenceId()
+          + " is larger than the segment size of " + settings.segmentSize() + " bytes");
+      }
+      encoded.add(bytes);
+    }
+    PendingWrite write = new PendingWrite(records, encoded);
+    writes.add(write);
+    // close() may have drained the queue before the write was added, then nobody else fails it
+    if (closed && writes.remove(write)) {
+      write.done.completeExceptionally(closedException());
+    }
+    return write.done;
+  }
+
+  public CompletionStage<Void> deleteTo(String persistenceId, long toSequenceNr) {
+    return append(Collections.singletonList(JournalRecord.deletion(persistenceId, toSequenceNr)));
+  }
+
+  /**
+   * Passes at most {@code max} events of the persistence id in the sequence number range to {@code callback}.
+   */
+  public void replay(
+    String persistenceId, long fromSequenceNr, long toSequenceNr, long max, Consumer<JournalRecord> callback) {
+    PersistenceIdIndex index = persistenceIds.get(persistenceId);
+    if (index == null) {
+      return;
+    }
+    for (long position : index.positions(fromSequenceNr, toSequenceNr, max)) {
+      callback.accept(read(position));
+    }
+  }
+
+  /**
+   * Highest sequence number written, deleted events included.
+   */
+  public long highestSequenceNr(String persistenceId) {
+    PersistenceIdIndex index = persistenceIds.get(persistenceId);
+    return index != null ? index.highestSequenceNr() : deletedPersistenceIds.getOrDefault(persistenceId, 0L);
+  }
+
+  /**
+   * Number of persistence ids with events in the index.
+   */
+  int indexedPersistenceIds() {
+    return persistenceIds.size();
+  }
+
+  /**
+   * At most {@code max} events of the tag after the tag offset {@code afterOffset}, the offset of
+   * the i-th returned event is {@code afterOffset + i + 1}.
+   */
+  public List<JournalRecord> eventsByTag(String tag, long afterOffset, int max) {
+    TagIndex index = tags.get(tag);
+    if (index == null) {
+      return Collections.emptyList();
+    }
+    long[] positions = index.positions(afterOffset, max);
+    List<JournalRecord> events = new ArrayList<>(positions.length);
+    for (long position : positions) {
+      events.add(read(position));
+    }
+    return events;
+  }
+
+  /**
+   * Tag offset of the last event with the tag.
+   */
+  public long highestTagOffset(String tag) {
+    TagIndex index = tags.get(tag);
+    return index == null ? 0 : index.size();
+  }
+
+  /**
+   * Stops the writer after its current group commit, writes still waiting fail.
+   */
+  @Override
+  @SneakyThrows
+  public void close() {
+    closed = true;
+    writer.join();
+    PendingWrite write;
+    while ((write = writes.poll()) != null) {
+      write.done.completeExceptionally(closedException());
+    }
+    for (Segment segment : segments.values()) {
+      segment.force();
+      segment.close();
+    }
+  }
+
+  private IllegalStateException closedException() {
+    return new IllegalStateException("Journal log " + settings.directory() + " is closed");
+  }
+
+  private JournalRecord read(long position) {
+    JournalRecord record = segments.get((int) (position >>> 32)).read((int) position);
+    if (record == null) {
+      throw new IllegalStateException("No valid record at " + position + " of journal log " + settings.directory());
+    }
+    return record;
+  }
+
+  @SneakyThrows
+  private void recover() {
+    Files.createDirectories(settings.directory());
+    List<Path> files;
+    try (Stream<Path> list = Files.list(settings.directory())) {
+      files = list.filter(Segment::isSegment).sorted().collect(Collectors.toList());
+    }
+    Recovery recovery = new Recovery();
+    for (Path file : files) {
+      Segment segment = Segment.open(settings.directory(), Segment.number(file), settings.segmentSize());
+      segments.put(segment.number(), segment);
+      recovery.scan(segment);
+    }
+    if (files.isEmpty()) {
+      current = Segment.open(settings.directory(), 0, settings.segmentSize());
+      segments.put(current.number(), current);
+      return;
+    }
+    current = recovery.committedSegment != null
+      ? recovery.committedSegment
+      : segments.get(Segment.number(files.get(0)));
+    for (Segment segment : new ArrayList<>(segments.values())) {
+      if (segment.number() > current.number()) {
+        log.warn("Deleting segment {} of journal log {}, it only holds an uncommitted write",
+          segment.number(), settings.directory());
+        segments.remove(segment.number());
+        segment.delete();
+      }
+    }
+    current.truncate(recovery.committedEnd);
+    log.info("Recovered {} events of {} persistence ids from {} segments of journal log {}",
+      recovery.events, persistenceIds.size(), segments.size(), settings.directory());
+  }
+
+  private void writeLoop() {
+    List<PendingWrite> batch = new ArrayList<>();
+    while (!closed) {
+      try {
+        PendingWrite first = writes.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        writes.drainTo(batch, settings.maxGroupCommit() - 1);
+        commit(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Group commit of {} writes to journal log {} failed", batch.size(), settings.directory(), e);
+        batch.forEach(write -> write.done.completeExceptionally(e));
+      }
+      batch.clear();
+    }
+  }
+
+  private void commit(List<PendingWrite> batch) {
+    Segment startSegment = current;
+    int startPosition = current.writePosition();
+    Set<Segment> touched = new LinkedHashSet<>();
+    List<Long> positions = new ArrayList<>();
+    try {
+      for (PendingWrite write : batch) {
+        for (byte[] record : write.encoded) {
+          positions.add(write(record, touched));
+        }
+      }
+      write(commitRecord, touched);
+      if (settings.fsync()) {
+        touched.forEach(Segment::force);
+      }
+    } catch (Exception e) {
+      // also the IOException of opening the next segment, thrown sneakily
+      rollback(startSegment, startPosition);
+      throw e;
+    }
+    int next = 0;
+    for (PendingWrite write : batch) {
+      for (JournalRecord record : write.records) {
+        publish(record, positions.get(next++));
+      }
+      write.done.complete(null);
+    }
+  }
+
+  private long write(byte[] record, Set<Segment> touched) {
+    // the commit record always fits behind a record
+    if (current.remaining() < record.length + (record == commitRecord ? 0 : commitRecord.length)) {
+      current = Segment.open(settings.directory(), current.number() + 1, settings.segmentSize());
+      segments.put(current.number(), current);
+    }
+    touched.add(current);
+    return position(current.number(), current.append(record));
+  }
+
+  /**
+   * Removes the records of a failed group commit, so the commit record of the next one does not cover them.
+   */
+  private void rollback(Segment startSegment, int startPosition) {
+    while (current != startSegment) {
+      segments.remove(current.number());
+      current.delete();
+      current = segments.get(current.number() - 1);
+    }
+    current.truncate(startPosition);
+  }
+
+  private void publish(JournalRecord record, long position) {
+    switch (record.type()) {
+      case EVENT:
+        index(record.persistenceId()).add(record.sequenceNr(), position);
+        for (String tag : record.tags()) {
+          tags.computeIfAbsent(tag, t -> new TagIndex()).add(position);
+        }
+        break;
+      case DELETION:
+        PersistenceIdIndex index = persistenceIds.get(record.persistenceId());
+        if (index != null && index.deleteTo(record.sequenceNr()) == 0) {
+          // published before the index is removed, readers always see one of them
+          deletedPersistenceIds.put(record.persistenceId(), index.highestSequenceNr());
+          persistenceIds.remove(record.persistenceId());
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * The index of the persistence id, a new one continues after the events that were all deleted.
+   * Only called by the writer thread, or while recovering.
+   */
+  private PersistenceIdIndex index(String persistenceId) {
+    PersistenceIdIndex index = persistenceIds.get(persistenceId);
+    if (index == null) {
+      index = new PersistenceIdIndex(deletedPersistenceIds.getOrDefault(persistenceId, 0L));
+      persistenceIds.put(persistenceId, index);
+      deletedPersistenceIds.remove(persistenceId);
+    }
+    return index;
+  }
+
+  private static long position(int segment, int offset) {
+    return (long) segment << 32 | offset;
+  }
+
+  private static class PendingWrite {
+    final List<JournalRecord> records;
+    final List<byte[]> encoded;
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    PendingWrite(List<JournalRecord> records, List<byte[]> encoded) {
+      this.records = records;
+      this.encoded = encoded;
+    }
+  }
+
+  /**
+   * Publishes the records of each group commit found in the segments, in segment order.
+   */
+  private class Recovery {
+    final List<JournalRecord> uncommitted = new ArrayList<>();
+    final List<Long> uncommittedPositions = new ArrayList<>();
+    Segment committedSegment;
+    int committedEnd;
+    long events;
+
+    void scan(Segment segment) {
+      segment.scan((offset, end, record) -> {
+        if (record.type() == JournalRecord.Type.COMMIT) {
+          for (int i = 0; i < uncommitted.size(); i++) {
+            publish(uncommitted.get(i), uncommittedPositions.get(i));
+            if (uncommitted.get(i).type() == JournalRecord.Type.EVENT) {
+              events++;
+            }
+          }
+          uncommitted.clear();
+          uncommittedPositions.clear();
+          committedSegment = segment;
+          committedEnd = end;
+        } else {
+          uncommitted.add(record);
+          uncommittedPositions.add(position(segment.number(), offset));
+        }
+      });
+    }
+  }
+
+  /**
+   * Positions of the events of one persistence id, ascending by sequence number.
+   */
+  private static class PersistenceIdIndex {
+    private long[] sequenceNrs = new long[16];
+    private long[] positions = new long[16];
+    private int size;
+    private long highestSequenceNr;
+
+    PersistenceIdIndex(long highestSequenceNr) {
+      this.highestSequenceNr = highestSequenceNr;
+    }
+
+    synchronized void add(long sequenceNr, long position) {
+      if (size == positions.length) {
+        sequenceNrs = Arrays.copyOf(sequenceNrs, size * 2);
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      sequenceNrs[size] = sequenceNr;
+      positions[size] = position;
+      size++;
+      highestSequenceNr = Math.max(highestSequenceNr, sequenceNr);
+    }
+
+    /**
+     * @return the number of events left
+     */
+    synchronized int deleteTo(long toSequenceNr) {
+      int deleted = firstAbove(toSequenceNr);
+      System.arraycopy(sequenceNrs, deleted, sequenceNrs, 0, size - deleted);
+      System.arraycopy(positions, deleted, positions, 0, size - deleted);
+      size -= deleted;
+      return size;
+    }
+
+    synchronized long highestSequenceNr() {
+      return highestSequenceNr;
+    }
+
+    synchronized long[] positions(long fromSequenceNr, long toSequenceNr, long max) {
+      int start = fromSequenceNr == 0 ? 0 : firstAbove(fromSequenceNr - 1);
+      int end = start;
+      while (end < size && sequenceNrs[end] <= toSequenceNr && end - start < max) {
+        end++;
+      }
+      return Arrays.copyOfRange(positions, start, end);
+    }
+
+    /**
+     * Index of the first event with a sequence number above {@code sequenceNr}.
+     */
+    private int firstAbove(long sequenceNr) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sequenceNrs[middle] <= sequenceNr) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+
+  /**
+   * Positions of the events of one tag in commit order.
+   */
+  private static class TagIndex {
+    private long[] positions = new long[1024];
+    private int size;
+
+    synchronized void add(long position) {
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    synchronized long size() {
+      return size;
+    }
+
+    synchronized long[] positions(long afterOffset, int max) {
+      int start = (int) Math.min(afterOffset, size);
+      return Arrays.copyOfRange(positions, start, (int) Math.min(size, (long) start + max));
+    }
+  }
+}
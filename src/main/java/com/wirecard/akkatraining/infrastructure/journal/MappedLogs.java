@@ -0,0 +1,31 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.actor.ActorSystem;
+import akka.actor.Extension;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The open {@link MappedLog}s of an actor system by directory, so the journal plugin and its read
+ * journal share one log and a restarted journal does not open it again. The logs are closed when
+ * the actor system terminates.
+ */
+public class MappedLogs implements Extension {
+
+  private final Map<Path, MappedLog> logs = new ConcurrentHashMap<>();
+
+  MappedLogs(ActorSystem system) {
+    system.registerOnTermination(() -> logs.values().forEach(MappedLog::close));
+  }
+
+  public static MappedLogs get(ActorSystem system) {
+    return MappedLogsExtension.instance.get(system);
+  }
+
+  public MappedLog open(MappedJournalSettings settings) {
+    Path directory = settings.directory().toAbsolutePath().normalize();
+    return logs.computeIfAbsent(directory, d -> new MappedLog(settings));
+  }
+}
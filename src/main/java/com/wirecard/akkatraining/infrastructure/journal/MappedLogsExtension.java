@@ -0,0 +1,24 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionId;
+import akka.actor.ExtensionIdProvider;
+
+public class MappedLogsExtension extends AbstractExtensionId<MappedLogs> implements ExtensionIdProvider {
+
+  public static final MappedLogsExtension instance = new MappedLogsExtension();
+
+  private MappedLogsExtension() {
+  }
+
+  @Override
+  public ExtensionId<MappedLogs> lookup() {
+    return instance;
+  }
+
+  @Override
+  public MappedLogs createExtension(ExtendedActorSystem system) {
+    return new MappedLogs(system);
+  }
+}
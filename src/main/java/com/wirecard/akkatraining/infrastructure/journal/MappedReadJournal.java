@@ -0,0 +1,111 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.NotUsed;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.Scheduler;
+import akka.japi.Pair;
+import akka.pattern.PatternsCS;
+import akka.persistence.PersistentRepr;
+import akka.persistence.query.EventEnvelope;
+import akka.persistence.query.NoOffset;
+import akka.persistence.query.Offset;
+import akka.persistence.query.Sequence;
+import akka.persistence.query.javadsl.CurrentEventsByTagQuery;
+import akka.persistence.query.javadsl.EventsByTagQuery;
+import akka.persistence.query.javadsl.ReadJournal;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tag queries on the {@link MappedLog} of a {@link MappedJournal}, with the offsets of the LevelDB
+ * read journal: a {@link Sequence} counting the events of the tag from 1, exclusive when passed in.
+ * The live query polls the tag index every {@code refresh-interval} once it has caught up. Deleted
+ * events stay in the tag queries, so the offsets of a tag never change.
+ */
+public class MappedReadJournal implements ReadJournal, EventsByTagQuery, CurrentEventsByTagQuery {
+
+  public static final String Identifier = "akka-training.mapped-read-journal";
+
+  private final MappedLog log;
+  private final Serialization serialization;
+  private final Scheduler scheduler;
+  private final ExecutionContext dispatcher;
+  private final FiniteDuration refreshInterval;
+  private final int maxBufferSize;
+
+  public MappedReadJournal(ExtendedActorSystem system, Config config) {
+    Config journal = system.settings().config().getConfig(config.getString("write-plugin"));
+    log = MappedLogs.get(system).open(MappedJournalSettings.fromConfig(journal));
+    serialization = SerializationExtension.get(system);
+    scheduler = system.scheduler();
+    dispatcher = system.dispatcher();
+    refreshInterval = FiniteDuration.create(
+      config.getDuration("refresh-interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+    maxBufferSize = config.getInt("max-buffer-size");
+  }
+
+  @Override
+  public Source<EventEnvelope, NotUsed> eventsByTag(String tag, Offset offset) {
+    return events(tag, sequence(offset), Long.MAX_VALUE);
+  }
+
+  @Override
+  public Source<EventEnvelope, NotUsed> currentEventsByTag(String tag, Offset offset) {
+    return events(tag, sequence(offset), log.highestTagOffset(tag));
+  }
+
+  /**
+   * Offset of the last event with the tag, without reading it.
+   */
+  public long highestOffset(String tag) {
+    return log.highestTagOffset(tag);
+  }
+
+  private Source<EventEnvelope, NotUsed> events(String tag, long afterOffset, long endOffset) {
+    return Source.unfoldAsync(afterOffset, after -> next(tag, after, endOffset))
+      .mapConcat(envelopes -> envelopes);
+  }
+
+  /**
+   * The next chunk of at most {@code max-buffer-size} events after the tag offset {@code after}.
+   */
+  private CompletionStage<Optional<Pair<Long, List<EventEnvelope>>>> next(String tag, long after, long endOffset) {
+    if (after >= endOffset) {
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+    List<JournalRecord> records = log.eventsByTag(tag, after, (int) Math.min(maxBufferSize, endOffset - after));
+    if (records.isEmpty()) {
+      return PatternsCS.after(refreshInterval, scheduler, dispatcher, () ->
+        CompletableFuture.completedFuture(Optional.of(Pair.create(after, Collections.<EventEnvelope>emptyList()))));
+    }
+    List<EventEnvelope> envelopes = new ArrayList<>(records.size());
+    for (JournalRecord record : records) {
+      PersistentRepr repr = serialization.deserialize(record.payload(), PersistentRepr.class).get();
+      envelopes.add(new EventEnvelope(
+        new Sequence(after + envelopes.size() + 1), repr.persistenceId(), repr.sequenceNr(), repr.payload()));
+    }
+    return CompletableFuture.completedFuture(Optional.of(Pair.create(after + envelopes.size(), envelopes)));
+  }
+
+  private static long sequence(Offset offset) {
+    if (offset instanceof Sequence) {
+      return ((Sequence) offset).value();
+    }
+    if (offset == NoOffset.getInstance()) {
+      return 0;
+    }
+    throw new IllegalArgumentException("Offset " + offset + " is not supported, use a Sequence offset");
+  }
+}
@@ -0,0 +1,28 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.actor.ExtendedActorSystem;
+import akka.persistence.query.ReadJournalProvider;
+import com.typesafe.config.Config;
+
+/**
+ * Read journal plugin of the {@link MappedJournal}, the queries are only implemented for the Java API.
+ */
+public class MappedReadJournalProvider implements ReadJournalProvider {
+
+  private final MappedReadJournal readJournal;
+
+  public MappedReadJournalProvider(ExtendedActorSystem system, Config config) {
+    readJournal = new MappedReadJournal(system, config);
+  }
+
+  @Override
+  public akka.persistence.query.scaladsl.ReadJournal scaladslReadJournal() {
+    return new akka.persistence.query.scaladsl.ReadJournal() {
+    };
+  }
+
+  @Override
+  public akka.persistence.query.javadsl.ReadJournal javadslReadJournal() {
+    return readJournal;
+  }
+}
@@ -0,0 +1,136 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import lombok.SneakyThrows;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One preallocated file of a {@link MappedLog}, mapped into memory as a whole. Records are appended
+ * by the writer thread of the log only, readers work on duplicates of the buffer and only read
+ * records the log has published to them.
+ */
+class Segment implements Closeable {
+
+  private final int number;
+  private final Path file;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private int writePosition;
+
+  private Segment(int number, Path file, FileChannel channel, MappedByteBuffer buffer) {
+    this.number = number;
+    this.file = file;
+    this.channel = channel;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Opens the segment, a new one is created with {@code size} zero bytes.
+   */
+  @SneakyThrows
+  static Segment open(Path directory, int number, int size) {
+    Path file = directory.resolve(fileName(number));
+    FileChannel channel = FileChannel.open(
+      file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    // a segment written with a larger segment size keeps its size
+    long length = Math.max(size, channel.size());
+    return new Segment(number, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, length));
+  }
+
+  static String fileName(int number) {
+    return String.format("%010d.segment", number);
+  }
+
+  static boolean isSegment(Path file) {
+    return file.getFileName().toString().matches("\\d{10}\\.segment");
+  }
+
+  static int number(Path file) {
+    return Integer.parseInt(file.getFileName().toString().substring(0, 10));
+  }
+
+  int number() {
+    return number;
+  }
+
+  int writePosition() {
+    return writePosition;
+  }
+
+  int remaining() {
+    return buffer.capacity() - writePosition;
+  }
+
+  /**
+   * Copies the encoded record behind the last one and returns its offset.
+   */
+  int append(byte[] record) {
+    int offset = writePosition;
+    buffer.position(offset);
+    buffer.put(record);
+    writePosition += record.length;
+    return offset;
+  }
+
+  JournalRecord read(int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    return JournalRecord.decode(view);
+  }
+
+  /**
+   * Passes the records from the start of the segment to the first torn or missing one to {@code consumer}.
+   */
+  void scan(RecordConsumer consumer) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(0);
+    int offset = 0;
+    JournalRecord record;
+    while ((record = JournalRecord.decode(view)) != null) {
+      consumer.accept(offset, view.position(), record);
+      offset = view.position();
+    }
+  }
+
+  /**
+   * Continues appending at {@code position}. What a crash left behind it is zeroed, the pages of
+   * a torn group commit may have reached the disk in any order.
+   */
+  void truncate(int position) {
+    writePosition = position;
+    for (int i = position; i < buffer.capacity(); i++) {
+      if (buffer.get(i) != 0) {
+        buffer.put(i, (byte) 0);
+      }
+    }
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  @SneakyThrows
+  void delete() {
+    close();
+    Files.delete(file);
+  }
+
+  /**
+   * Closes the file, the mapping itself is released with the buffer by the garbage collector.
+   */
+  @Override
+  @SneakyThrows
+  public void close() {
+    channel.close();
+  }
+
+  interface RecordConsumer {
+    void accept(int offset, int end, JournalRecord record);
+  }
+}
@@ -0,0 +1,98 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import com.wirecard.akkatraining.domain.account.AccountId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate command counts of the hottest accounts in bounded memory (space-saving algorithm).
+ * At most {@code capacity} accounts are counted. An untracked account takes over the counter with
+ * the lowest count and continues from it, so its count is overestimated by at most that count. An
+ * account with more than {@code total commands / capacity} commands is always tracked.
+ * <p>
+ * The counters are split into stripes by account, so concurrent partitions rarely wait for each other.
+ */
+class HotAccounts {
+
+  private static final int stripeCount = 16;
+
+  private final Stripe[] stripes = new Stripe[stripeCount];
+
+  HotAccounts(int capacity) {
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(Math.max(1, capacity / stripeCount));
+    }
+  }
+
+  void increment(AccountId accountId) {
+    stripe(accountId).increment(accountId);
+  }
+
+  long count(AccountId accountId) {
+    return stripe(accountId).count(accountId);
+  }
+
+  /**
+   * The {@code limit} accounts with the highest counts, as {@code account=count, ...}.
+   */
+  String hottest(int limit) {
+    List<Map.Entry<AccountId, Long>> counts = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      counts.addAll(stripe.counts().entrySet());
+    }
+    return counts.stream()
+      .sorted(Map.Entry.<AccountId, Long>comparingByValue().reversed())
+      .limit(limit)
+      .map(e -> e.getKey().value() + "=" + e.getValue())
+      .collect(Collectors.joining(", "));
+  }
+
+  private Stripe stripe(AccountId accountId) {
+    return stripes[Math.floorMod(accountId.hashCode(), stripeCount)];
+  }
+
+  private static class Stripe {
+    private final int capacity;
+    private final Map<AccountId, long[]> counts = new HashMap<>();
+
+    Stripe(int capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized void increment(AccountId accountId) {
+      long[] count = counts.get(accountId);
+      if (count != null) {
+        count[0]++;
+      } else if (counts.size() < capacity) {
+        counts.put(accountId, new long[] {1});
+      } else {
+        AccountId lowest = null;
+        long lowestCount = Long.MAX_VALUE;
+        for (Map.Entry<AccountId, long[]> entry : counts.entrySet()) {
+          if (entry.getValue()[0] < lowestCount) {
+            lowest = entry.getKey();
+            lowestCount = entry.getValue()[0];
+          }
+        }
+        count = counts.remove(lowest);
+        count[0] = lowestCount + 1;
+        counts.put(accountId, count);
+      }
+    }
+
+    synchronized long count(AccountId accountId) {
+      long[] count = counts.get(accountId);
+      return count == null ? 0 : count[0];
+    }
+
+    synchronized Map<AccountId, Long> counts() {
+      Map<AccountId, Long> copy = new HashMap<>();
+      counts.forEach((accountId, count) -> copy.put(accountId, count[0]));
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Unbounded mailbox which reports its depth to {@link Metrics}, see
+ * {@code akka-training.instrumented-mailbox}.
+ */
+public class InstrumentedMailbox implements MailboxType, ProducesMessageQueue<InstrumentedMailbox.InstrumentedMessageQueue> {
+
+  public InstrumentedMailbox(ActorSystem.Settings settings, Config config) {
+  }
+
+  @Override
+  public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+    if (owner.isEmpty() || system.isEmpty()) {
+      return new InstrumentedMessageQueue(new LongAdder(), () -> {
+      });
+    }
+    Metrics metrics = Metrics.get(system.get());
+    String name = owner.get().path().toStringWithoutAddress();
+    LongAdder depth = new LongAdder();
+    metrics.registerMailbox(name, depth);
+    return new InstrumentedMessageQueue(depth, () -> metrics.unregisterMailbox(name));
+  }
+
+  public static class InstrumentedMessageQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+    private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final LongAdder depth;
+    private final Runnable onCleanUp;
+
+    InstrumentedMessageQueue(LongAdder depth, Runnable onCleanUp) {
+      this.depth = depth;
+      this.onCleanUp = onCleanUp;
+    }
+
+    @Override
+    public void enqueue(ActorRef receiver, Envelope handle) {
+      queue.offer(handle);
+      depth.increment();
+    }
+
+    @Override
+    public Envelope dequeue() {
+      Envelope envelope = queue.poll();
+      if (envelope != null) {
+        depth.decrement();
+      }
+      return envelope;
+    }
+
+    @Override
+    public int numberOfMessages() {
+      return (int) depth.sum();
+    }
+
+    @Override
+    public boolean hasMessages() {
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+      onCleanUp.run();
+      Envelope envelope;
+      while ((envelope = dequeue()) != null) {
+        deadLetters.enqueue(owner, envelope);
+      }
+    }
+  }
+}
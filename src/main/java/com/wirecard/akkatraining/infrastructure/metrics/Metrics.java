@@ -0,0 +1,245 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import akka.actor.ActorSystem;
+import akka.actor.Extension;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Hot path metrics of an actor system. Recording is lock-free, counters are {@link LongAdder}s
+ * and latencies go to HdrHistogram {@link Recorder}s. The values are read through JMX as
+ * {@code com.wirecard.akkatraining:type=Metrics,name=<actor system>}.
+ */
+@Slf4j
+public class Metrics implements Extension {
+
+  private static final int hottestAccounts = 10;
+
+  private final LongAdder accountCommands = new LongAdder();
+  private final HotAccounts hotAccounts;
+  private final Recorder persistLatency = new Recorder(3);
+  private final Recorder transferLatency = new Recorder(3);
+  private final LongAdder redeliveries = new LongAdder();
+  private final LongAdder unconfirmed = new LongAdder();
+  private final LongAdder accountsNotFound = new LongAdder();
+  private final Map<String, LongAdder> mailboxDepths = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> projectionReadOffsets = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> projectionAppliedOffsets = new ConcurrentHashMap<>();
+  private final Map<String, LongSupplier> projectionHeads = new ConcurrentHashMap<>();
+  private final Histogram persistLatencyTotal = new Histogram(3);
+  private final Histogram transferLatencyTotal = new Histogram(3);
+
+  Metrics(ActorSystem system) {
+    hotAccounts = new HotAccounts(system.settings().config().getInt("akka-training.metrics.tracked-accounts"));
+    if (system.settings().config().getBoolean("akka-training.metrics.jmx")) {
+      registerMBean(system);
+    }
+  }
+
+  public static Metrics get(ActorSystem system) {
+    return MetricsExtension.instance.get(system);
+  }
+
+  public void accountCommand(AccountId accountId) {
+    accountCommands.increment();
+    hotAccounts.increment(accountId);
+  }
+
+  /**
+   * Time from the persist call to its handler, started at {@code startNanos}.
+   */
+  public void persisted(long startNanos) {
+    persistLatency.recordValue(micros(startNanos));
+  }
+
+  /**
+   * Time from the transfer's start at {@code startNanos} to its completion or failure.
+   */
+  public void transferFinished(long startNanos) {
+    transferLatency.recordValue(micros(startNanos));
+  }
+
+  public void redelivered(int deliveries) {
+    redeliveries.add(deliveries);
+  }
+
+  /**
+   * Change of the number of messages the sagas wait for a confirmation of.
+   */
+  public void unconfirmed(int delta) {
+    unconfirmed.add(delta);
+  }
+
+  /**
+   * A command for an account that was never created, answered with a negative acknowledgement.
+   */
+  public void accountNotFound() {
+    accountsNotFound.increment();
+  }
+
+  /**
+   * The depth is maintained by the owner's {@link InstrumentedMailbox} until it is unregistered.
+   */
+  public void registerMailbox(String owner, LongAdder depth) {
+    mailboxDepths.put(owner, depth);
+  }
+
+  public void unregisterMailbox(String owner) {
+    mailboxDepths.remove(owner);
+  }
+
+  /**
+   * Journal offset of the last event the projection read.
+   */
+  public void projectionRead(String projection, long offset) {
+    offset(projectionReadOffsets, projection).set(offset);
+  }
+
+  /**
+   * Journal offset of the last event the projection applied to its views.
+   */
+  public void projectionApplied(String projection, long offset) {
+    offset(projectionAppliedOffsets, projection).set(offset);
+  }
+
+  /**
+   * Offset of the newest event with the projection's tag in the journal, the lag is measured against it.
+   * Without it the lag only covers the events read but not yet applied.
+   */
+  public void projectionHead(String projection, LongSupplier head) {
+    projectionHeads.put(projection, head);
+  }
+
+  // computeIfAbsent locks the bin even if the key is present, the hot path reads first
+  private static AtomicLong offset(Map<String, AtomicLong> offsets, String projection) {
+    AtomicLong offset = offsets.get(projection);
+    return offset != null ? offset : offsets.computeIfAbsent(projection, p -> new AtomicLong());
+  }
+
+  /**
+   * Commands of the account if it is among the tracked hot accounts, see {@link HotAccounts}.
+   */
+  public long commandsOf(AccountId accountId) {
+    return hotAccounts.count(accountId);
+  }
+
+  public long mailboxDepth(String owner) {
+    LongAdder depth = mailboxDepths.get(owner);
+    return depth == null ? 0 : depth.sum();
+  }
+
+  /**
+   * Current values by name, latencies in microseconds since start or the last {@link #resetHistograms()}.
+   */
+  public synchronized Map<String, Object> values() {
+    Map<String, Object> values = new LinkedHashMap<>();
+    gauges().forEach((name, gauge) -> values.put(name, gauge.get()));
+    return values;
+  }
+
+  /**
+   * The requested values only, unknown names are left out.
+   */
+  public synchronized Map<String, Object> values(Collection<String> names) {
+    Map<String, Supplier<Object>> gauges = gauges();
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (String name : names) {
+      Supplier<Object> gauge = gauges.get(name);
+      if (gauge != null) {
+        values.put(name, gauge.get());
+      }
+    }
+    return values;
+  }
+
+  public Set<String> names() {
+    return gauges().keySet();
+  }
+
+  /**
+   * Each value is only computed when it is read, so reading one attribute does not rank the accounts.
+   */
+  private Map<String, Supplier<Object>> gauges() {
+    Map<String, Supplier<Object>> gauges = new LinkedHashMap<>();
+    gauges.put("account.commands", accountCommands::sum);
+    gauges.put("account.hottest", () -> hotAccounts.hottest(hottestAccounts));
+    putLatency(gauges, "account.persistLatency", persistLatency, persistLatencyTotal);
+    putLatency(gauges, "transfer.latency", transferLatency, transferLatencyTotal);
+    gauges.put("transfer.redeliveries", redeliveries::sum);
+    gauges.put("transfer.unconfirmed", unconfirmed::sum);
+    gauges.put("account.notFound", accountsNotFound::sum);
+
+    mailboxDepths.forEach((owner, depth) -> gauges.put("mailbox." + owner + ".depth", depth::sum));
+    gauges.put("mailbox.totalDepth", () -> mailboxDepths.values().stream().mapToLong(LongAdder::sum).sum());
+    gauges.put("mailbox.maxDepth", () -> mailboxDepths.values().stream().mapToLong(LongAdder::sum).max().orElse(0));
+
+    projectionReadOffsets.forEach((projection, read) -> {
+      AtomicLong applied = offset(projectionAppliedOffsets, projection);
+      String name = "projection." + projection.substring(projection.lastIndexOf('.') + 1);
+      gauges.put(name + ".readOffset", read::get);
+      gauges.put(name + ".appliedOffset", applied::get);
+      LongSupplier head = projectionHeads.getOrDefault(projection, read::get);
+      gauges.put(name + ".headOffset", head::getAsLong);
+      // a tailed head may trail the applied offset
+      gauges.put(name + ".lag", () -> Math.max(0, head.getAsLong() - applied.get()));
+    });
+    return gauges;
+  }
+
+  public synchronized void resetHistograms() {
+    persistLatency.reset();
+    persistLatencyTotal.reset();
+    transferLatency.reset();
+    transferLatencyTotal.reset();
+  }
+
+  private static void putLatency(
+    Map<String, Supplier<Object>> gauges, String name, Recorder recorder, Histogram total) {
+    gauges.put(name + ".count", () -> drain(recorder, total).getTotalCount());
+    gauges.put(name + ".p50Micros", () -> drain(recorder, total).getValueAtPercentile(50));
+    gauges.put(name + ".p99Micros", () -> drain(recorder, total).getValueAtPercentile(99));
+    gauges.put(name + ".p999Micros", () -> drain(recorder, total).getValueAtPercentile(99.9));
+    gauges.put(name + ".maxMicros", () -> drain(recorder, total).getMaxValue());
+  }
+
+  // adds what was recorded since the last read, called with the lock held
+  private static Histogram drain(Recorder recorder, Histogram total) {
+    total.add(recorder.getIntervalHistogram());
+    return total;
+  }
+
+  private static long micros(long startNanos) {
+    return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+  }
+
+  private void registerMBean(ActorSystem system) {
+    try {
+      ObjectName name = new ObjectName("com.wirecard.akkatraining:type=Metrics,name=" + ObjectName.quote(system.name()));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), name);
+      system.registerOnTermination(() -> {
+        try {
+          ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+          log.warn("Metrics MBean {} not unregistered", name, e);
+        }
+      });
+    } catch (Exception e) {
+      log.warn("Metrics MBean of {} not registered", system.name(), e);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import akka.actor.AbstractExtensionId;
+import akka.actor.ExtendedActorSystem;
+import akka.actor.ExtensionId;
+import akka.actor.ExtensionIdProvider;
+
+public class MetricsExtension extends AbstractExtensionId<Metrics> implements ExtensionIdProvider {
+
+  public static final MetricsExtension instance = new MetricsExtension();
+
+  private MetricsExtension() {
+  }
+
+  @Override
+  public ExtensionId<Metrics> lookup() {
+    return instance;
+  }
+
+  @Override
+  public Metrics createExtension(ExtendedActorSystem system) {
+    return new Metrics(system);
+  }
+}
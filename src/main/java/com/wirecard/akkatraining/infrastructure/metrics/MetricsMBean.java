@@ -0,0 +1,80 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Read-only view of the {@link Metrics} values, one attribute per value. Mailboxes and
+ * projections appear as attributes once they are registered.
+ */
+class MetricsMBean implements DynamicMBean {
+
+  private static final String resetHistograms = "resetHistograms";
+
+  private final Metrics metrics;
+
+  MetricsMBean(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Object value = metrics.values(Collections.singletonList(attribute)).get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    metrics.values(Arrays.asList(attributes)).forEach((name, value) -> list.add(new Attribute(name, value)));
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    if (resetHistograms.equals(actionName)) {
+      metrics.resetHistograms();
+      return null;
+    }
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    // the names only, reading the values would drain the histograms and rank the hot accounts
+    MBeanAttributeInfo[] attributes = metrics.names().stream()
+      .map(name -> new MBeanAttributeInfo(name, type(name), name, true, false, false))
+      .toArray(MBeanAttributeInfo[]::new);
+    MBeanOperationInfo[] operations = {
+      new MBeanOperationInfo(resetHistograms, "Clears the latency histograms",
+        new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+    };
+    return new MBeanInfo(Metrics.class.getName(), "Hot path metrics", attributes, null, operations, null);
+  }
+
+  private static String type(String name) {
+    return name.equals("account.hottest") ? String.class.getName() : Long.class.getName();
+  }
+}
@@ -4,75 +4,136 @@ import akka.actor.ActorSystem;
 import akka.persistence.query.EventEnvelope;
 import akka.persistence.query.PersistenceQuery;
 import akka.persistence.query.Sequence;
-import akka.persistence.query.journal.leveldb.javadsl.LeveldbReadJournal;
+import akka.persistence.query.javadsl.EventsByTagQuery;
 import akka.stream.ActorMaterializer;
 import akka.stream.Materializer;
 import akka.stream.javadsl.Sink;
+import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.account.AccountProtocol;
 import com.wirecard.akkatraining.domain.account.PendingTransfer;
-import com.wirecard.akkatraining.domain.transfer.TransferId;
 import com.wirecard.akkatraining.domain.view.Account;
-import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountViewViewRepository;
-import lombok.SneakyThrows;
+import com.wirecard.akkatraining.domain.view.AccountViewRepository;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class InMemoryAccountProjection {
 
+  private static final String tag = AccountProtocol.Event.class.getName();
+
+  private final ActorSystem actorSystem;
   private final Materializer materializer;
-  private final LeveldbReadJournal journal;
-  private final InMemoryAccountViewViewRepository accountRepository;
+  private final EventsByTagQuery journal;
+  private final AccountViewRepository accountRepository;
+  private final ProjectionSettings settings;
+  private final ProjectionCheckpointer checkpointer;
+  private final Metrics metrics;
+  private final int maxTurnovers;
 
   public InMemoryAccountProjection(
     ActorSystem actorSystem,
-    InMemoryAccountViewViewRepository accountRepository
+    AccountViewRepository accountRepository,
+    ProjectionCheckpointer checkpointer
   ) {
-    journal = PersistenceQuery.get(actorSystem)
-      .getReadJournalFor(LeveldbReadJournal.class, LeveldbReadJournal.Identifier());
+    this.actorSystem = actorSystem;
     materializer = ActorMaterializer.create(actorSystem);
+    settings = ProjectionSettings.fromConfig(actorSystem.settings().config());
+    journal = PersistenceQuery.get(actorSystem)
+      .getReadJournalFor(EventsByTagQuery.class, settings.readJournal());
+    metrics = Metrics.get(actorSystem);
+    maxTurnovers = actorSystem.settings().config().getInt("akka-training.account-view.max-turnovers");
+    this.checkpointer = checkpointer;
     this.accountRepository = accountRepository;
   }
 
   public void runStream() {
-    journal.eventsByTag(AccountProtocol.Event.class.getName(), new Sequence(0L))
-      .map(EventEnvelope::event)
-      .map(e -> (AccountProtocol.Event) e)
-      .runWith(Sink.foreach(this::processEvent), materializer);
+    metrics.projectionHead(tag, TagHead.track(actorSystem, settings, tag, materializer));
+    journal.eventsByTag(tag, new Sequence(checkpointer.offset(tag)))
+      .map(envelope -> {
+        metrics.projectionRead(tag, ((Sequence) envelope.offset()).value());
+        return envelope;
+      })
+      .groupedWithin(settings.batchSize(), settings.batchLatency())
+      .runWith(Sink.foreach(batch -> {
+        long offset = offset(batch);
+        checkpointer.commit(tag, offset, () -> processBatch(batch));
+        metrics.projectionApplied(tag, offset);
+      }), materializer);
   }
 
-  @SneakyThrows
-  private void processEvent(AccountProtocol.Event event) {
-    log.info("Got event: {}", event);
-    if (event instanceof AccountProtocol.Created) {
-      AccountProtocol.Created created = (AccountProtocol.Created) event;
-      Account account = Account.builder()
-        .accountId(created.accountId())
-        .accountName(created.accountName())
-        .balance(created.balance())
-        .pendingTransfers(new ArrayList<>())
-        .turnovers(new ArrayList<>())
-        .build();
-      accountRepository.add(account);
-    } else if (event instanceof AccountProtocol.MoneyAllocated) {
-      addPendingTransfer((AccountProtocol.MoneyAllocated) event);
-    } else if (event instanceof AccountProtocol.DebitSuccessful) {
-      removePendingTransfer((AccountProtocol.DebitSuccessful) event);
+  private static long offset(List<EventEnvelope> batch) {
+    return ((Sequence) batch.get(batch.size() - 1).offset()).value();
+  }
+
+  /**
+   * Groups the events of the batch by account, so each account view is looked up
+   * and locked once per batch, and applies them in journal order.
+   */
+  private void processBatch(List<EventEnvelope> batch) {
+    Map<AccountId, List<AccountProtocol.Event>> eventsByAccount = new LinkedHashMap<>();
+    for (EventEnvelope envelope : batch) {
+      AccountProtocol.Event event = (AccountProtocol.Event) envelope.event();
+      AccountId accountId = accountId(event);
+      if (accountId != null) {
+        eventsByAccount.computeIfAbsent(accountId, id -> new ArrayList<>()).add(event);
+      }
     }
+    eventsByAccount.forEach((accountId, events) ->
+      accountRepository.compute(accountId, account -> applyAll(accountId, account, events)));
+    log.debug("Applied batch of {} events to {} accounts", batch.size(), eventsByAccount.size());
   }
 
-  private void addPendingTransfer(AccountProtocol.MoneyAllocated event) {
-    PendingTransfer pendingTransfer = new PendingTransfer(event.transferId(), event.amount(), event.creditor());
-    Account account = accountRepository.find(event.debtor());
-    account.addPendingTransfer(pendingTransfer);
-    log.info("Added pending transfer: {}", pendingTransfer);
+  private Account applyAll(AccountId accountId, Account account, List<AccountProtocol.Event> events) {
+    for (AccountProtocol.Event event : events) {
+      if (event instanceof AccountProtocol.Created) {
+        account = createAccount((AccountProtocol.Created) event);
+      } else if (account == null) {
+        log.warn("No view of account {} for event {}", accountId, event);
+      } else if (event instanceof AccountProtocol.MoneyAllocated) {
+        AccountProtocol.MoneyAllocated ma = (AccountProtocol.MoneyAllocated) event;
+        account.addPendingTransfer(new PendingTransfer(ma.transferId(), ma.amount(), ma.creditor()));
+      } else if (event instanceof AccountProtocol.DebitSuccessful) {
+        account.removePendingTransfer(((AccountProtocol.DebitSuccessful) event).pendingTransfer().transferId());
+      } else if (event instanceof AccountProtocol.MoneyAllocatedBatch) {
+        for (AccountProtocol.MoneyAllocated ma : ((AccountProtocol.MoneyAllocatedBatch) event).allocated()) {
+          account.addPendingTransfer(new PendingTransfer(ma.transferId(), ma.amount(), ma.creditor()));
+        }
+      } else if (event instanceof AccountProtocol.DebitBatchSuccessful) {
+        for (PendingTransfer pendingTransfer : ((AccountProtocol.DebitBatchSuccessful) event).pendingTransfers()) {
+          account.removePendingTransfer(pendingTransfer.transferId());
+        }
+      }
+    }
+    return account;
+  }
+
+  private Account createAccount(AccountProtocol.Created created) {
+    return Account.builder()
+      .accountId(created.accountId())
+      .accountName(created.accountName())
+      .balance(created.balance().toBigDecimal())
+      .maxTurnovers(maxTurnovers)
+      .build();
   }
 
-  private void removePendingTransfer(AccountProtocol.DebitSuccessful ds) {
-    Account account = accountRepository.find(ds.debtor());
-    TransferId transferId = ds.pendingTransfer().transferId();
-    account.removePendingTransfer(transferId);
-    log.info("Pending transfer removed: {}", transferId);
+  // events which change the account view
+  private static AccountId accountId(AccountProtocol.Event event) {
+    if (event instanceof AccountProtocol.Created) {
+      return ((AccountProtocol.Created) event).accountId();
+    } else if (event instanceof AccountProtocol.MoneyAllocated) {
+      return ((AccountProtocol.MoneyAllocated) event).debtor();
+    } else if (event instanceof AccountProtocol.DebitSuccessful) {
+      return ((AccountProtocol.DebitSuccessful) event).debtor();
+    } else if (event instanceof AccountProtocol.MoneyAllocatedBatch) {
+      return ((AccountProtocol.MoneyAllocatedBatch) event).debtor();
+    } else if (event instanceof AccountProtocol.DebitBatchSuccessful) {
+      return ((AccountProtocol.DebitBatchSuccessful) event).debtor();
+    }
+    return null;
   }
 }
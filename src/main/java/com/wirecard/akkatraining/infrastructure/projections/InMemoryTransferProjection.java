@@ -4,87 +4,142 @@ import akka.actor.ActorSystem;
 import akka.persistence.query.EventEnvelope;
 import akka.persistence.query.PersistenceQuery;
 import akka.persistence.query.Sequence;
-import akka.persistence.query.journal.leveldb.javadsl.LeveldbReadJournal;
+import akka.persistence.query.javadsl.EventsByTagQuery;
 import akka.stream.ActorMaterializer;
 import akka.stream.Materializer;
 import akka.stream.javadsl.Sink;
+import com.wirecard.akkatraining.domain.Money;
 import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol;
 import com.wirecard.akkatraining.domain.transfer.Status;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
 import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
 import com.wirecard.akkatraining.domain.view.AccountViewRepository;
 import com.wirecard.akkatraining.domain.view.Transfer;
 import com.wirecard.akkatraining.domain.view.Turnover;
+import com.wirecard.akkatraining.infrastructure.metrics.Metrics;
 import com.wirecard.akkatraining.infrastructure.repository.InMemoryTransferDao;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 public class InMemoryTransferProjection {
 
+  private static final String tag = TransferProtocol.Event.class.getName();
+
+  private final ActorSystem actorSystem;
   private final Materializer materializer;
   private final InMemoryTransferDao transferDao;
-  private final LeveldbReadJournal journal;
+  private final EventsByTagQuery journal;
   private final AccountViewRepository accountViewRepository;
+  private final ProjectionSettings settings;
+  private final ProjectionCheckpointer checkpointer;
+  private final Metrics metrics;
 
   public InMemoryTransferProjection(
     ActorSystem actorSystem,
     InMemoryTransferDao transferDao,
-    AccountViewRepository accountViewRepository) {
-    journal = PersistenceQuery.get(actorSystem)
-      .getReadJournalFor(LeveldbReadJournal.class, LeveldbReadJournal.Identifier());
+    AccountViewRepository accountViewRepository,
+    ProjectionCheckpointer checkpointer) {
+    this.actorSystem = actorSystem;
     materializer = ActorMaterializer.create(actorSystem);
+    settings = ProjectionSettings.fromConfig(actorSystem.settings().config());
+    journal = PersistenceQuery.get(actorSystem)
+      .getReadJournalFor(EventsByTagQuery.class, settings.readJournal());
+    metrics = Metrics.get(actorSystem);
+    this.checkpointer = checkpointer;
     this.transferDao = transferDao;
     this.accountViewRepository = accountViewRepository;
   }
 
   public void runStream() {
-    journal.eventsByTag(TransferProtocol.Event.class.getName(), new Sequence(0L))
-      .map(EventEnvelope::event)
-      .map(event -> (TransferProtocol.Event) event)
-      .runWith(Sink.foreach(this::processEvent), materializer);
+    metrics.projectionHead(tag, TagHead.track(actorSystem, settings, tag, materializer));
+    journal.eventsByTag(tag, new Sequence(checkpointer.offset(tag)))
+      .map(envelope -> {
+        metrics.projectionRead(tag, ((Sequence) envelope.offset()).value());
+        return envelope;
+      })
+      .groupedWithin(settings.batchSize(), settings.batchLatency())
+      .runWith(Sink.foreach(batch -> {
+        long offset = offset(batch);
+        checkpointer.commit(tag, offset, () -> processBatch(batch));
+        metrics.projectionApplied(tag, offset);
+      }), materializer);
+  }
+
+  private static long offset(List<EventEnvelope> batch) {
+    return ((Sequence) batch.get(batch.size() - 1).offset()).value();
   }
 
-  @SneakyThrows
-  private void processEvent(TransferProtocol.Event event) {
-    log.info("Got event: {}", event);
-    if (event instanceof TransferProtocol.TransferCompleted) {
-      TransferProtocol.TransferCompleted tc = (TransferProtocol.TransferCompleted) event;
-      insertTransfer(tc.transferId(), tc.debtor(), tc.creditor(), tc.amount(), Status.SUCCESS.name());
-      insertTurnover(tc.creditor(), tc.debtor(), BigDecimal.ONE, tc.amount());
-      insertTurnover(tc.debtor(), tc.creditor(), BigDecimal.valueOf(-1), tc.amount());
-    } else if (event instanceof TransferProtocol.TransferFailed) {
-      TransferProtocol.TransferFailed tf = (TransferProtocol.TransferFailed) event;
-      insertTransfer(tf.transferId(), tf.debtor(), tf.creditor(), tf.amount(), Status.FAILED.name());
+  /**
+   * Collects the finished transfers and turnovers of the batch and writes them with one
+   * DAO write and one update per account.
+   */
+  private void processBatch(List<EventEnvelope> batch) {
+    List<Transfer> transfers = new ArrayList<>();
+    Map<AccountId, List<Turnover>> turnovers = new LinkedHashMap<>();
+    for (EventEnvelope envelope : batch) {
+      Object event = envelope.event();
+      if (event instanceof TransferProtocol.TransferCompleted) {
+        completed((TransferProtocol.TransferCompleted) event, transfers, turnovers);
+      } else if (event instanceof TransferProtocol.TransferFailed) {
+        failed((TransferProtocol.TransferFailed) event, transfers);
+      } else if (event instanceof BulkTransferProtocol.BulkTransferFinished) {
+        // the lines of a bulk transfer are booked like single transfers
+        BulkTransferProtocol.BulkTransferFinished finished = (BulkTransferProtocol.BulkTransferFinished) event;
+        finished.completed().forEach(tc -> completed(tc, transfers, turnovers));
+        finished.failed().forEach(tf -> failed(tf, transfers));
+      }
     }
+    transferDao.addAll(transfers);
+    // the account projection may not have created the view yet, its turnovers are parked until it does
+    turnovers.forEach(accountViewRepository::addTurnovers);
+    log.debug("Applied batch of {} events, {} transfers finished", batch.size(), transfers.size());
+  }
+
+  private static void completed(
+    TransferProtocol.TransferCompleted tc,
+    List<Transfer> transfers,
+    Map<AccountId, List<Turnover>> turnovers
+  ) {
+    transfers.add(transfer(tc.transferId(), tc.debtor(), tc.creditor(), tc.amount(), Status.SUCCESS.name()));
+    addTurnover(turnovers, tc.creditor(), tc.debtor(), BigDecimal.ONE, tc.amount());
+    addTurnover(turnovers, tc.debtor(), tc.creditor(), BigDecimal.valueOf(-1), tc.amount());
+  }
+
+  private static void failed(TransferProtocol.TransferFailed tf, List<Transfer> transfers) {
+    transfers.add(transfer(tf.transferId(), tf.debtor(), tf.creditor(), tf.amount(), Status.FAILED.name()));
   }
 
-  private void insertTransfer(
+  private static Transfer transfer(
     TransferId transferId,
     AccountId debtor,
     AccountId creditor,
-    BigDecimal amount,
+    Money amount,
     String status
   ) {
-    Transfer transfer = Transfer.builder()
+    return Transfer.builder()
       .transferId(transferId)
       .debtor(debtor)
       .creditor(creditor)
-      .amount(amount)
+      .amount(amount.toBigDecimal())
       .status(status)
       .build();
-    transferDao.add(transfer);
   }
 
-  private void insertTurnover(
+  private static void addTurnover(
+    Map<AccountId, List<Turnover>> turnovers,
     AccountId accountId,
     AccountId reference,
     BigDecimal sigNum,
-    BigDecimal amount
+    Money amount
   ) {
-    Turnover turnover = new Turnover(accountId, amount.multiply(sigNum), reference);
-    accountViewRepository.find(accountId).addTurnover(turnover);
+    Turnover turnover = new Turnover(accountId, amount.toBigDecimal().multiply(sigNum), reference);
+    turnovers.computeIfAbsent(accountId, id -> new ArrayList<>()).add(turnover);
   }
 }
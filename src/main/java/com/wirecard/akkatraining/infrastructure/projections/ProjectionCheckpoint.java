@@ -0,0 +1,27 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.view.Account;
+import com.wirecard.akkatraining.domain.view.Transfer;
+import com.wirecard.akkatraining.domain.view.Turnover;
+import lombok.Value;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * State of the in-memory views together with the journal offsets of the projections
+ * which produced it.
+ */
+@Value
+public class ProjectionCheckpoint implements Serializable {
+
+  Map<String, Long> offsets;
+  List<Account> accounts;
+  List<Transfer> transfers;
+  /**
+   * Turnovers the transfer projection applied before the account projection created their view.
+   */
+  Map<AccountId, List<Turnover>> parkedTurnovers;
+}
@@ -0,0 +1,56 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Keeps the latest {@link ProjectionCheckpoint} in a file. The checkpoint is written
+ * to a temporary file first and then moved over the previous one, so a crash while
+ * writing never leaves a broken checkpoint behind. A checkpoint of an older format is ignored,
+ * the projections then rebuild the views from the start of the journal.
+ */
+@Slf4j
+public class ProjectionCheckpointStore {
+
+  private static final String fileName = "checkpoint";
+
+  private final Path file;
+  private final Path tempFile;
+
+  public ProjectionCheckpointStore(Path directory) {
+    this.file = directory.resolve(fileName);
+    this.tempFile = directory.resolve(fileName + ".tmp");
+  }
+
+  @SneakyThrows
+  public Optional<ProjectionCheckpoint> load() {
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      return Optional.of((ProjectionCheckpoint) in.readObject());
+    } catch (InvalidClassException e) {
+      log.warn("Ignoring projection checkpoint {} of an older format: {}", file, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  @SneakyThrows
+  public void save(ProjectionCheckpoint checkpoint) {
+    Files.createDirectories(file.getParent());
+    try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+      out.writeObject(checkpoint);
+    }
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
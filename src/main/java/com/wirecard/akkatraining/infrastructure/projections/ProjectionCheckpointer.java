@@ -0,0 +1,145 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import com.typesafe.config.Config;
+import com.wirecard.akkatraining.domain.view.AccountViewRepository;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryTransferDao;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the applied journal offset of each projection and periodically writes it
+ * together with the view state to the {@link ProjectionCheckpointStore}.
+ * <p>
+ * Both projections write to the account views, so batches are applied under the
+ * checkpointer's lock. The view state is copied under the lock too, a checkpoint therefore
+ * always holds exactly the events up to the recorded offsets. The copy is written by a
+ * dedicated thread, the projections go on applying batches meanwhile. A checkpoint falling
+ * due while the previous one is still written is skipped. Readers of the views are not
+ * affected by the lock.
+ */
+@Slf4j
+public class ProjectionCheckpointer {
+
+  private final ProjectionCheckpointStore store;
+  private final AccountViewRepository accountRepository;
+  private final InMemoryTransferDao transferDao;
+  private final long intervalNanos;
+  private final Map<String, Long> offsets = new HashMap<>();
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "projection-checkpoint-writer");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private Future<?> lastWrite = CompletableFuture.completedFuture(null);
+  private long lastCheckpoint = System.nanoTime();
+  private boolean dirty;
+
+  public ProjectionCheckpointer(
+    ProjectionCheckpointStore store,
+    AccountViewRepository accountRepository,
+    InMemoryTransferDao transferDao,
+    long interval,
+    TimeUnit unit
+  ) {
+    this.store = store;
+    this.accountRepository = accountRepository;
+    this.transferDao = transferDao;
+    this.intervalNanos = unit.toNanos(interval);
+  }
+
+  public static ProjectionCheckpointer fromConfig(
+    Config config,
+    AccountViewRepository accountRepository,
+    InMemoryTransferDao transferDao
+  ) {
+    Config checkpoint = config.getConfig("akka-training.projection.checkpoint");
+    return new ProjectionCheckpointer(
+      new ProjectionCheckpointStore(Paths.get(checkpoint.getString("directory"))),
+      accountRepository,
+      transferDao,
+      checkpoint.getDuration("interval", TimeUnit.MILLISECONDS),
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Restores the views from the last checkpoint, to be called before the projections start.
+   */
+  public synchronized void restore() {
+    store.load().ifPresent(checkpoint -> {
+      accountRepository.restore(checkpoint.accounts(), checkpoint.parkedTurnovers());
+      transferDao.restore(checkpoint.transfers());
+      offsets.putAll(checkpoint.offsets());
+      log.info("Restored projection checkpoint at offsets {}", offsets);
+    });
+  }
+
+  /**
+   * Journal offset the projection has applied, the projection resumes after it.
+   */
+  public synchronized long offset(String projection) {
+    return offsets.getOrDefault(projection, 0L);
+  }
+
+  /**
+   * Applies the batch of the projection and records the offset of its last event.
+   */
+  public synchronized void commit(String projection, long offset, Runnable applyBatch) {
+    applyBatch.run();
+    offsets.put(projection, offset);
+    dirty = true;
+    if (System.nanoTime() - lastCheckpoint >= intervalNanos && lastWrite.isDone()) {
+      lastWrite = write(capture());
+    }
+  }
+
+  /**
+   * Writes the state of the applied batches and waits until it is written, e.g. on shutdown.
+   */
+  @SneakyThrows
+  public void checkpoint() {
+    Future<?> written;
+    synchronized (this) {
+      if (dirty) {
+        lastWrite = write(capture());
+      }
+      written = lastWrite;
+    }
+    written.get();
+  }
+
+  private ProjectionCheckpoint capture() {
+    ProjectionCheckpoint checkpoint = new ProjectionCheckpoint(new HashMap<>(offsets), accountRepository.snapshot(),
+      transferDao.snapshot(), accountRepository.parkedTurnovers());
+    dirty = false;
+    lastCheckpoint = System.nanoTime();
+    return checkpoint;
+  }
+
+  /**
+   * Checkpoints are written one after the other, in the order they were captured.
+   */
+  private Future<?> write(ProjectionCheckpoint checkpoint) {
+    return writer.submit(() -> {
+      long start = System.nanoTime();
+      try {
+        store.save(checkpoint);
+        log.info("Projection checkpoint at offsets {} written in {} ms",
+          checkpoint.offsets(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      } catch (Exception e) {
+        log.error("Projection checkpoint at offsets {} not written", checkpoint.offsets(), e);
+        synchronized (this) {
+          dirty = true;
+        }
+      }
+    });
+  }
+}
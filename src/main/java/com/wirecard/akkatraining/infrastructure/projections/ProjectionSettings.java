@@ -0,0 +1,39 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import com.typesafe.config.Config;
+import lombok.Value;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Value
+public class ProjectionSettings {
+
+  /**
+   * Maximum number of events applied to the view store in one pass.
+   */
+  int batchSize;
+  /**
+   * Maximum time an event waits for its batch to fill up.
+   */
+  FiniteDuration batchLatency;
+  /**
+   * Plugin id of the read journal the events are queried from by tag.
+   */
+  String readJournal;
+  /**
+   * How often the newest offset of a tag is read from a journal without a tag index, see {@link TagHead}.
+   */
+  FiniteDuration headRefreshInterval;
+
+  public static ProjectionSettings fromConfig(Config config) {
+    Config projection = config.getConfig("akka-training.projection");
+    return new ProjectionSettings(
+      projection.getInt("batch-size"),
+      FiniteDuration.create(projection.getDuration("batch-latency", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS),
+      projection.getString("read-journal"),
+      FiniteDuration.create(
+        projection.getDuration("head-refresh-interval", TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+    );
+  }
+}
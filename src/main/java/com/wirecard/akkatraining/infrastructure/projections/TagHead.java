@@ -0,0 +1,55 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import akka.actor.ActorSystem;
+import akka.persistence.query.PersistenceQuery;
+import akka.persistence.query.Sequence;
+import akka.persistence.query.javadsl.CurrentEventsByTagQuery;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import com.wirecard.akkatraining.infrastructure.journal.MappedReadJournal;
+import lombok.extern.slf4j.Slf4j;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Offset of the newest event of a tag in the journal, the projection lag is measured against it.
+ * The mapped read journal looks it up in its tag index. Other read journals are tailed: every
+ * {@code head-refresh-interval} the events after the last known head are read once more with
+ * {@code currentEventsByTag}, so their head trails the journal by up to that interval.
+ */
+@Slf4j
+final class TagHead {
+
+  private TagHead() {
+  }
+
+  static LongSupplier track(ActorSystem system, ProjectionSettings settings, String tag, Materializer materializer) {
+    PersistenceQuery query = PersistenceQuery.get(system);
+    if (MappedReadJournal.Identifier.equals(settings.readJournal())) {
+      MappedReadJournal journal = query.getReadJournalFor(MappedReadJournal.class, settings.readJournal());
+      return () -> journal.highestOffset(tag);
+    }
+    CurrentEventsByTagQuery journal = query.getReadJournalFor(CurrentEventsByTagQuery.class, settings.readJournal());
+    AtomicLong head = new AtomicLong();
+    AtomicBoolean tailing = new AtomicBoolean();
+    system.scheduler().schedule(Duration.Zero(), settings.headRefreshInterval(), () -> {
+      // a slow tail is not overtaken by the next one
+      if (tailing.compareAndSet(false, true)) {
+        journal.currentEventsByTag(tag, new Sequence(head.get()))
+          .runWith(Sink.lastOption(), materializer)
+          .whenComplete((last, failure) -> {
+            if (failure != null) {
+              log.warn("Journal head of {} not read", tag, failure);
+            } else {
+              last.ifPresent(envelope -> head.set(((Sequence) envelope.offset()).value()));
+            }
+            tailing.set(false);
+          });
+      }
+    }, system.dispatcher());
+    return head::get;
+  }
+}
@@ -0,0 +1,104 @@
+package com.wirecard.akkatraining.infrastructure.repository;
+
+import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import akka.japi.pf.ReceiveBuilder;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns the accounts of one repository partition. Accounts are started on demand, which recovers them
+ * from the journal, and stopped when they passivate. Messages for a passivating account
+ * are buffered and delivered to its next incarnation.
+ */
+public class AccountPartition extends AbstractLoggingActor {
+
+  private final Props accountProps;
+  private final Map<String, List<Buffered>> passivating = new HashMap<>();
+
+  private AccountPartition(Props accountProps) {
+    this.accountProps = accountProps;
+  }
+
+  public static Props props() {
+    return props(Account.props());
+  }
+
+  public static Props props(Props accountProps) {
+    return Props.create(AccountPartition.class, () -> new AccountPartition(accountProps));
+  }
+
+  @Override
+  public Receive createReceive() {
+    return ReceiveBuilder.create()
+      .match(AccountRepositoryProtocol.Forward.class, this::forward)
+      .match(AccountRepositoryProtocol.Save.class, this::save)
+      .matchEquals(AccountRepositoryProtocol.Passivate.instance(), this::passivate)
+      .match(Terminated.class, this::terminated)
+      .build();
+  }
+
+  private void save(AccountRepositoryProtocol.Save save) {
+    AccountProtocol.Create create = new AccountProtocol.Create(save.accountName(), save.balance(), save.allocatedBalance());
+    deliver(save.accountId(), create, self());
+  }
+
+  private void forward(AccountRepositoryProtocol.Forward msg) {
+    deliver(msg.accountId(), msg.command(), sender());
+  }
+
+  private void deliver(AccountId accountId, Object message, ActorRef sender) {
+    String name = accountId.value();
+    List<Buffered> buffer = passivating.get(name);
+    if (buffer != null) {
+      buffer.add(new Buffered(message, sender));
+    } else {
+      account(name).tell(message, sender);
+    }
+  }
+
+  private ActorRef account(String name) {
+    return getContext().findChild(name).orElseGet(() -> start(name));
+  }
+
+  private ActorRef start(String name) {
+    return context().watch(context().actorOf(accountProps, name));
+  }
+
+  private void passivate(AccountRepositoryProtocol.Passivate passivate) {
+    ActorRef account = sender();
+    String name = account.path().name();
+    if (!passivating.containsKey(name)) {
+      passivating.put(name, new ArrayList<>());
+      // processed after the messages already in the account's mailbox
+      account.tell(PoisonPill.getInstance(), self());
+    }
+  }
+
+  private void terminated(Terminated terminated) {
+    String name = terminated.actor().path().name();
+    List<Buffered> buffer = passivating.remove(name);
+    if (buffer != null && !buffer.isEmpty()) {
+      log().debug("Restarting account {} for {} buffered messages", name, buffer.size());
+      ActorRef account = start(name);
+      buffer.forEach(buffered -> account.tell(buffered.message(), buffered.sender()));
+    }
+  }
+
+  @Value
+  private static class Buffered {
+    Object message;
+    ActorRef sender;
+  }
+}
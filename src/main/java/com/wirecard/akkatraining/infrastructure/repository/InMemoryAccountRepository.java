@@ -1,37 +1,29 @@
 package com.wirecard.akkatraining.infrastructure.repository;
 
-import akka.actor.AbstractLoggingActor;
 import akka.actor.Props;
-import akka.japi.pf.ReceiveBuilder;
-import com.wirecard.akkatraining.domain.account.Account;
-import com.wirecard.akkatraining.domain.account.AccountId;
-import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import akka.actor.SupervisorStrategy;
+import akka.routing.ConsistentHashingPool;
 import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
 
-public class InMemoryAccountRepository extends AbstractLoggingActor {
+/**
+ * The account repository is a consistent hashing router over {@link AccountPartition}s.
+ * Every {@link AccountRepositoryProtocol.AccountMessage} goes to the partition owning its
+ * account. Routing runs on the sender's thread, so there is no single repository mailbox
+ * all account traffic has to pass through. The partition mailbox depths are reported to
+ * {@code Metrics}.
+ */
+public final class InMemoryAccountRepository {
 
-  public static Props props() {
-    return Props.create(InMemoryAccountRepository.class, InMemoryAccountRepository::new);
-  }
-
-  @Override
-  public Receive createReceive() {
-    return ReceiveBuilder.create()
-      .match(AccountRepositoryProtocol.Forward.class, this::forward)
-      .match(AccountRepositoryProtocol.Save.class, this::save)
-      .build();
+  private InMemoryAccountRepository() {
   }
 
-  private void save(AccountRepositoryProtocol.Save save) {
-    AccountId accountId = save.accountId();
-
-    context()
-      .actorOf(Account.props(), accountId.value())
-      .tell(new AccountProtocol.Create(save.accountName(), save.balance(), save.allocatedBalance()), self());
+  public static Props props() {
+    return props(Runtime.getRuntime().availableProcessors());
   }
 
-  private void forward(AccountRepositoryProtocol.Forward msg) {
-    getContext().findChild(msg.accountId().value())
-      .ifPresent(ref -> ref.forward(msg.command(), context()));
+  public static Props props(int partitions) {
+    return new ConsistentHashingPool(partitions)
+      .withSupervisorStrategy(SupervisorStrategy.defaultStrategy())
+      .props(AccountPartition.props().withMailbox("akka-training.instrumented-mailbox"));
   }
 }
@@ -3,23 +3,86 @@ package com.wirecard.akkatraining.infrastructure.repository;
 import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.view.Account;
 import com.wirecard.akkatraining.domain.view.AccountViewRepository;
+import com.wirecard.akkatraining.domain.view.Turnover;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
+/**
+ * Account views keyed by {@link AccountId}. Reads never lock, writers of one account
+ * do not block readers or writers of other accounts.
+ */
 public class InMemoryAccountViewViewRepository implements AccountViewRepository {
 
-  private final List<Account> accounts = new ArrayList<>();
+  private final Map<AccountId, Account> accounts = new ConcurrentHashMap<>();
+  private final Map<AccountId, List<Turnover>> parkedTurnovers = new ConcurrentHashMap<>();
 
   @Override
   public Account find(AccountId accountId) {
-    return accounts.stream()
-      .filter(view -> view.accountId().equals(accountId))
-      .findFirst()
-      .orElse(null);
+    return accounts.get(accountId);
   }
 
   public void add(Account account) {
-    accounts.add(account);
+    accounts.put(account.accountId(), account);
+  }
+
+  @Override
+  public List<Account> snapshot() {
+    return accounts.values().stream().map(Account::copy).collect(Collectors.toList());
+  }
+
+  @Override
+  public Map<AccountId, List<Turnover>> parkedTurnovers() {
+    Map<AccountId, List<Turnover>> snapshot = new HashMap<>();
+    parkedTurnovers.forEach((accountId, turnovers) -> snapshot.put(accountId, new ArrayList<>(turnovers)));
+    return snapshot;
+  }
+
+  @Override
+  public void restore(List<Account> snapshot, Map<AccountId, List<Turnover>> parked) {
+    accounts.clear();
+    parkedTurnovers.clear();
+    snapshot.forEach(this::add);
+    parked.forEach((accountId, turnovers) -> parkedTurnovers.put(accountId, new ArrayList<>(turnovers)));
+  }
+
+  @Override
+  public boolean update(AccountId accountId, Consumer<Account> update) {
+    return accounts.computeIfPresent(accountId, (id, account) -> {
+      update.accept(account);
+      return account;
+    }) != null;
+  }
+
+  @Override
+  public void addTurnovers(AccountId accountId, List<Turnover> turnovers) {
+    accounts.compute(accountId, (id, account) -> {
+      if (account == null) {
+        parkedTurnovers.computeIfAbsent(id, parkedId -> new ArrayList<>()).addAll(turnovers);
+      } else {
+        turnovers.forEach(account::addTurnover);
+      }
+      return account;
+    });
+  }
+
+  @Override
+  public void compute(AccountId accountId, UnaryOperator<Account> function) {
+    accounts.compute(accountId, (id, account) -> {
+      Account computed = function.apply(account);
+      if (computed != null) {
+        List<Turnover> parked = parkedTurnovers.remove(id);
+        if (parked != null) {
+          parked.forEach(computed::addTurnover);
+        }
+      }
+      return computed;
+    });
   }
 }
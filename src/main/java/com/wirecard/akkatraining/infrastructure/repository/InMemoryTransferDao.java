@@ -1,23 +1,190 @@
 package com.wirecard.akkatraining.infrastructure.repository;
 
+import com.wirecard.akkatraining.domain.account.AccountId;
 import com.wirecard.akkatraining.domain.transfer.TransferId;
 import com.wirecard.akkatraining.domain.view.Transfer;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Transfer read model indexed by {@link TransferId}, by debtor/creditor and by status.
+ * Keeps at most {@code maxTransfers}, the oldest transfers are evicted first.
+ */
 public class InMemoryTransferDao {
 
-  private final List<Transfer> transfers = new ArrayList<>();
+  private final int maxTransfers;
+  private final Map<TransferId, Transfer> transfers = new LinkedHashMap<>();
+  private final Map<AccountId, Deque<TransferId>> byAccount = new HashMap<>();
+  private final Map<String, Deque<TransferId>> byStatus = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  public InMemoryTransferDao(int maxTransfers) {
+    if (maxTransfers <= 0) {
+      throw new IllegalArgumentException("maxTransfers must be positive");
+    }
+    this.maxTransfers = maxTransfers;
+  }
 
   public void add(Transfer transfer) {
-    transfers.add(transfer);
+    lock.writeLock().lock();
+    try {
+      Transfer previous = transfers.remove(transfer.transferId());
+      if (previous != null) {
+        unindex(previous);
+      }
+      transfers.put(transfer.transferId(), transfer);
+      index(transfer);
+      evictOverflow();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void addAll(List<Transfer> batch) {
+    lock.writeLock().lock();
+    try {
+      batch.forEach(this::add);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Retained transfers, oldest first.
+   */
+  public List<Transfer> snapshot() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(transfers.values());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void restore(List<Transfer> snapshot) {
+    lock.writeLock().lock();
+    try {
+      transfers.clear();
+      byAccount.clear();
+      byStatus.clear();
+      snapshot.forEach(this::add);
+    } finally {
+      lock.writeLock().unlock();
+    }
   }
 
   public Transfer find(TransferId transferId) {
-    return transfers.stream()
-      .filter(t -> t.transferId().equals(transferId))
-      .findFirst()
-      .orElse(null);
+    lock.readLock().lock();
+    try {
+      return transfers.get(transferId);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Transfers where the account is debtor or creditor, newest first.
+   */
+  public List<Transfer> findByAccount(AccountId accountId, int offset, int limit) {
+    lock.readLock().lock();
+    try {
+      return page(byAccount.get(accountId), offset, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Transfers with the given status, newest first.
+   */
+  public List<Transfer> findByStatus(String status, int offset, int limit) {
+    lock.readLock().lock();
+    try {
+      return page(byStatus.get(status), offset, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return transfers.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private List<Transfer> page(Deque<TransferId> ids, int offset, int limit) {
+    List<Transfer> page = new ArrayList<>();
+    if (ids == null) {
+      return page;
+    }
+    Iterator<TransferId> newestFirst = ids.descendingIterator();
+    for (int i = 0; i < offset && newestFirst.hasNext(); i++) {
+      newestFirst.next();
+    }
+    while (page.size() < limit && newestFirst.hasNext()) {
+      page.add(transfers.get(newestFirst.next()));
+    }
+    return page;
+  }
+
+  private void index(Transfer transfer) {
+    TransferId id = transfer.transferId();
+    byAccount.computeIfAbsent(transfer.debtor(), key -> new ArrayDeque<>()).addLast(id);
+    if (!transfer.creditor().equals(transfer.debtor())) {
+      byAccount.computeIfAbsent(transfer.creditor(), key -> new ArrayDeque<>()).addLast(id);
+    }
+    byStatus.computeIfAbsent(transfer.status(), key -> new ArrayDeque<>()).addLast(id);
+  }
+
+  // replaced transfers are rare (journal replay), so the linear removal is fine here
+  private void unindex(Transfer transfer) {
+    TransferId id = transfer.transferId();
+    removeFrom(byAccount, transfer.debtor(), id);
+    removeFrom(byAccount, transfer.creditor(), id);
+    removeFrom(byStatus, transfer.status(), id);
+  }
+
+  private static <K> void removeFrom(Map<K, Deque<TransferId>> index, K key, TransferId id) {
+    Deque<TransferId> ids = index.get(key);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  // the evicted transfer is the oldest one, hence it is at the head of each of its index entries
+  private void evictOverflow() {
+    Iterator<Transfer> oldestFirst = transfers.values().iterator();
+    while (transfers.size() > maxTransfers) {
+      Transfer evicted = oldestFirst.next();
+      oldestFirst.remove();
+      pollOldest(byAccount, evicted.debtor());
+      if (!evicted.creditor().equals(evicted.debtor())) {
+        pollOldest(byAccount, evicted.creditor());
+      }
+      pollOldest(byStatus, evicted.status());
+    }
+  }
+
+  private static <K> void pollOldest(Map<K, Deque<TransferId>> index, K key) {
+    Deque<TransferId> ids = index.get(key);
+    ids.pollFirst();
+    if (ids.isEmpty()) {
+      index.remove(key);
+    }
   }
 }
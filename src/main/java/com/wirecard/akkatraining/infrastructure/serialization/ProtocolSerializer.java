@@ -0,0 +1,980 @@
+package com.wirecard.akkatraining.infrastructure.serialization;
+
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.SerializerWithStringManifest;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountState;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.account.ProcessedCommand;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.ConfirmationType;
+import com.wirecard.akkatraining.domain.transfer.Status;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerState;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferState;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.AccountMessages;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.CommonMessages;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.TransferMessages;
+
+import java.io.NotSerializableException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Protobuf serializer of the persisted {@link AccountProtocol}, {@link TransferProtocol} and
+ * {@link BulkTransferProtocol} events, of the {@link TransferManagerProtocol} events and of the {@link AccountState},
+ * {@link TransferState} and {@link TransferManagerState} snapshots. The schemas are in {@code src/main/proto}.
+ * <p>
+ * The manifest carries the schema version. When a schema changes incompatibly, the new
+ * version gets a new manifest and the old manifest stays readable in {@link #fromBinary}.
+ * Added fields keep the manifest, they are read as empty from messages written before.
+ * <p>
+ * Amounts are written as {@link Money}. Events written before carry a decimal amount only,
+ * it is read in the {@code akka-training.money.legacy-currency}. Such an amount is never rounded: one with more
+ * decimals than the currency fails with a {@link NotSerializableException} naming the manifest, as does
+ * an amount with an unknown currency or without any digits.
+ */
+public class ProtocolSerializer extends SerializerWithStringManifest {
+
+  private static final String accountCreatedV1 = "account.Created.v1";
+  private static final String accountCreated = "account.Created.v2";
+  private static final String moneyAllocatedV1 = "account.MoneyAllocated.v1";
+  private static final String moneyAllocated = "account.MoneyAllocated.v2";
+  private static final String debitSuccessfulV1 = "account.DebitSuccessful.v1";
+  private static final String debitSuccessful = "account.DebitSuccessful.v2";
+  private static final String creditSuccessfulV1 = "account.CreditSuccessful.v1";
+  private static final String creditSuccessful = "account.CreditSuccessful.v2";
+  private static final String moneyAllocatedBatch = "account.MoneyAllocatedBatch.v1";
+  private static final String debitBatchSuccessful = "account.DebitBatchSuccessful.v1";
+  private static final String creditBatchSuccessful = "account.CreditBatchSuccessful.v1";
+  private static final String accountStateV1 = "account.AccountState.v1";
+  private static final String accountState = "account.AccountState.v2";
+  private static final String transferInitiatedV1 = "transfer.TransferInitiated.v1";
+  private static final String transferInitiatedV2 = "transfer.TransferInitiated.v2";
+  private static final String transferInitiated = "transfer.TransferInitiated.v3";
+  private static final String messageSentV1 = "transfer.MessageSent.v1";
+  private static final String allocateMoneySentV1 = "transfer.AllocateMoneySent.v1";
+  private static final String allocateMoneySent = "transfer.AllocateMoneySent.v2";
+  private static final String creditSentV1 = "transfer.CreditSent.v1";
+  private static final String creditSent = "transfer.CreditSent.v2";
+  private static final String debitSent = "transfer.DebitSent.v1";
+  private static final String refundSent = "transfer.RefundSent.v1";
+  private static final String messageConfirmed = "transfer.MessageConfirmed.v1";
+  private static final String transferCompletedV1 = "transfer.TransferCompleted.v1";
+  private static final String transferCompleted = "transfer.TransferCompleted.v2";
+  private static final String transferFailedV1 = "transfer.TransferFailed.v1";
+  private static final String transferFailed = "transfer.TransferFailed.v2";
+  private static final String transferStateV1 = "transfer.TransferState.v1";
+  private static final String transferState = "transfer.TransferState.v2";
+  private static final String transferStarted = "transfer.TransferStarted.v1";
+  private static final String transferFinished = "transfer.TransferFinished.v1";
+  private static final String transferManagerState = "transfer.TransferManagerState.v1";
+  private static final String bulkTransferInitiated = "transfer.BulkTransferInitiated.v1";
+  private static final String allocationsConfirmed = "transfer.AllocationsConfirmed.v1";
+  private static final String creditsConfirmed = "transfer.CreditsConfirmed.v1";
+  private static final String debitsConfirmed = "transfer.DebitsConfirmed.v1";
+  private static final String creditsRejected = "transfer.CreditsRejected.v1";
+  private static final String refundsConfirmed = "transfer.RefundsConfirmed.v1";
+  private static final String bulkTransferFinished = "transfer.BulkTransferFinished.v1";
+
+  private final Currency legacyCurrency;
+
+  public ProtocolSerializer() {
+    this(Currency.getInstance("EUR"));
+  }
+
+  public ProtocolSerializer(ExtendedActorSystem system) {
+    this(Currency.getInstance(system.settings().config().getString("akka-training.money.legacy-currency")));
+  }
+
+  public ProtocolSerializer(Currency legacyCurrency) {
+    this.legacyCurrency = legacyCurrency;
+  }
+
+  @Override
+  public int identifier() {
+    return 1_946_001;
+  }
+
+  @Override
+  public String manifest(Object o) {
+    if (o instanceof AccountProtocol.Created) {
+      return accountCreated;
+    } else if (o instanceof AccountProtocol.MoneyAllocated) {
+      return moneyAllocated;
+    } else if (o instanceof AccountProtocol.DebitSuccessful) {
+      return debitSuccessful;
+    } else if (o instanceof AccountProtocol.CreditSuccessful) {
+      return creditSuccessful;
+    } else if (o instanceof AccountProtocol.MoneyAllocatedBatch) {
+      return moneyAllocatedBatch;
+    } else if (o instanceof AccountProtocol.DebitBatchSuccessful) {
+      return debitBatchSuccessful;
+    } else if (o instanceof AccountProtocol.CreditBatchSuccessful) {
+      return creditBatchSuccessful;
+    } else if (o instanceof AccountState) {
+      return accountState;
+    } else if (o instanceof TransferProtocol.TransferInitiated) {
+      return transferInitiated;
+    } else if (o instanceof TransferProtocol.AllocateMoneySent) {
+      return allocateMoneySent;
+    } else if (o instanceof TransferProtocol.CreditSent) {
+      return creditSent;
+    } else if (o instanceof TransferProtocol.DebitSent) {
+      return debitSent;
+    } else if (o instanceof TransferProtocol.RefundSent) {
+      return refundSent;
+    } else if (o instanceof TransferProtocol.MessageConfirmed) {
+      return messageConfirmed;
+    } else if (o instanceof TransferProtocol.TransferCompleted) {
+      return transferCompleted;
+    } else if (o instanceof TransferProtocol.TransferFailed) {
+      return transferFailed;
+    } else if (o instanceof TransferState) {
+      return transferState;
+    } else if (o instanceof TransferManagerProtocol.TransferStarted) {
+      return transferStarted;
+    } else if (o instanceof TransferManagerProtocol.TransferFinished) {
+      return transferFinished;
+    } else if (o instanceof TransferManagerState) {
+      return transferManagerState;
+    } else if (o instanceof BulkTransferProtocol.BulkTransferInitiated) {
+      return bulkTransferInitiated;
+    } else if (o instanceof BulkTransferProtocol.AllocationsConfirmed) {
+      return allocationsConfirmed;
+    } else if (o instanceof BulkTransferProtocol.CreditsConfirmed) {
+      return creditsConfirmed;
+    } else if (o instanceof BulkTransferProtocol.DebitsConfirmed) {
+      return debitsConfirmed;
+    } else if (o instanceof BulkTransferProtocol.CreditsRejected) {
+      return creditsRejected;
+    } else if (o instanceof BulkTransferProtocol.RefundsConfirmed) {
+      return refundsConfirmed;
+    } else if (o instanceof BulkTransferProtocol.BulkTransferFinished) {
+      return bulkTransferFinished;
+    }
+    throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+  }
+
+  @Override
+  public byte[] toBinary(Object o) {
+    if (o instanceof AccountProtocol.Created) {
+      return created((AccountProtocol.Created) o).toByteArray();
+    } else if (o instanceof AccountProtocol.MoneyAllocated) {
+      return moneyAllocated((AccountProtocol.MoneyAllocated) o).toByteArray();
+    } else if (o instanceof AccountProtocol.DebitSuccessful) {
+      return debitSuccessful((AccountProtocol.DebitSuccessful) o).toByteArray();
+    } else if (o instanceof AccountProtocol.CreditSuccessful) {
+      return creditSuccessful((AccountProtocol.CreditSuccessful) o).toByteArray();
+    } else if (o instanceof AccountProtocol.MoneyAllocatedBatch) {
+      return moneyAllocatedBatch((AccountProtocol.MoneyAllocatedBatch) o).toByteArray();
+    } else if (o instanceof AccountProtocol.DebitBatchSuccessful) {
+      return debitBatchSuccessful((AccountProtocol.DebitBatchSuccessful) o).toByteArray();
+    } else if (o instanceof AccountProtocol.CreditBatchSuccessful) {
+      return creditBatchSuccessful((AccountProtocol.CreditBatchSuccessful) o).toByteArray();
+    } else if (o instanceof AccountState) {
+      return accountState((AccountState) o).toByteArray();
+    } else if (o instanceof TransferProtocol.TransferInitiated) {
+      return transferInitiated((TransferProtocol.TransferInitiated) o).toByteArray();
+    } else if (o instanceof TransferProtocol.AllocateMoneySent) {
+      return allocateMoneySent((TransferProtocol.AllocateMoneySent) o).toByteArray();
+    } else if (o instanceof TransferProtocol.CreditSent) {
+      return creditSent((TransferProtocol.CreditSent) o).toByteArray();
+    } else if (o instanceof TransferProtocol.DebitSent) {
+      return debitSent((TransferProtocol.DebitSent) o).toByteArray();
+    } else if (o instanceof TransferProtocol.RefundSent) {
+      return refundSent((TransferProtocol.RefundSent) o).toByteArray();
+    } else if (o instanceof TransferProtocol.MessageConfirmed) {
+      return messageConfirmed((TransferProtocol.MessageConfirmed) o).toByteArray();
+    } else if (o instanceof TransferProtocol.TransferCompleted) {
+      return transferCompleted((TransferProtocol.TransferCompleted) o).toByteArray();
+    } else if (o instanceof TransferProtocol.TransferFailed) {
+      return transferFailed((TransferProtocol.TransferFailed) o).toByteArray();
+    } else if (o instanceof TransferState) {
+      return transferState((TransferState) o).toByteArray();
+    } else if (o instanceof TransferManagerProtocol.TransferStarted) {
+      return transferStarted((TransferManagerProtocol.TransferStarted) o).toByteArray();
+    } else if (o instanceof TransferManagerProtocol.TransferFinished) {
+      return transferFinished((TransferManagerProtocol.TransferFinished) o).toByteArray();
+    } else if (o instanceof TransferManagerState) {
+      return transferManagerState((TransferManagerState) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.BulkTransferInitiated) {
+      return bulkTransferInitiated((BulkTransferProtocol.BulkTransferInitiated) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.AllocationsConfirmed) {
+      return allocationsConfirmed((BulkTransferProtocol.AllocationsConfirmed) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.CreditsConfirmed) {
+      return creditsConfirmed((BulkTransferProtocol.CreditsConfirmed) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.DebitsConfirmed) {
+      return debitsConfirmed((BulkTransferProtocol.DebitsConfirmed) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.CreditsRejected) {
+      return creditsRejected((BulkTransferProtocol.CreditsRejected) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.RefundsConfirmed) {
+      return refundsConfirmed((BulkTransferProtocol.RefundsConfirmed) o).toByteArray();
+    } else if (o instanceof BulkTransferProtocol.BulkTransferFinished) {
+      return bulkTransferFinished((BulkTransferProtocol.BulkTransferFinished) o).toByteArray();
+    }
+    throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+  }
+
+  @Override
+  public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+    try {
+      switch (manifest) {
+        case accountCreatedV1:
+        case accountCreated:
+          return created(AccountMessages.Created.parseFrom(bytes));
+        case moneyAllocatedV1:
+        case moneyAllocated:
+          return moneyAllocated(AccountMessages.MoneyAllocated.parseFrom(bytes));
+        case debitSuccessfulV1:
+        case debitSuccessful:
+          return debitSuccessful(AccountMessages.DebitSuccessful.parseFrom(bytes));
+        case creditSuccessfulV1:
+        case creditSuccessful:
+          return creditSuccessful(AccountMessages.CreditSuccessful.parseFrom(bytes));
+        case moneyAllocatedBatch:
+          return moneyAllocatedBatch(AccountMessages.MoneyAllocatedBatch.parseFrom(bytes));
+        case debitBatchSuccessful:
+          return debitBatchSuccessful(AccountMessages.DebitBatchSuccessful.parseFrom(bytes));
+        case creditBatchSuccessful:
+          return creditBatchSuccessful(AccountMessages.CreditBatchSuccessful.parseFrom(bytes));
+        case accountStateV1:
+        case accountState:
+          return accountState(AccountMessages.AccountState.parseFrom(bytes));
+        case transferInitiatedV1:
+          return transferInitiatedV1(TransferMessages.TransferInitiated.parseFrom(bytes));
+        case transferInitiatedV2:
+        case transferInitiated:
+          return transferInitiated(TransferMessages.TransferInitiated.parseFrom(bytes));
+        case messageSentV1:
+          return messageSentV1(TransferMessages.MessageSent.parseFrom(bytes));
+        case allocateMoneySentV1:
+        case allocateMoneySent:
+          return allocateMoneySent(TransferMessages.AllocateMoneySent.parseFrom(bytes));
+        case creditSentV1:
+        case creditSent:
+          return creditSent(TransferMessages.CreditSent.parseFrom(bytes));
+        case debitSent:
+          return debitSent(TransferMessages.DebitSent.parseFrom(bytes));
+        case refundSent:
+          return refundSent(TransferMessages.RefundSent.parseFrom(bytes));
+        case messageConfirmed:
+          return messageConfirmed(TransferMessages.MessageConfirmed.parseFrom(bytes));
+        case transferCompletedV1:
+        case transferCompleted:
+          return transferCompleted(TransferMessages.TransferCompleted.parseFrom(bytes));
+        case transferFailedV1:
+        case transferFailed:
+          return transferFailed(TransferMessages.TransferFailed.parseFrom(bytes));
+        case transferStateV1:
+        case transferState:
+          return transferState(TransferMessages.TransferState.parseFrom(bytes));
+        case transferStarted:
+          return transferStarted(TransferMessages.TransferStarted.parseFrom(bytes));
+        case transferFinished:
+          return transferFinished(TransferMessages.TransferFinished.parseFrom(bytes));
+        case transferManagerState:
+          return transferManagerState(TransferMessages.TransferManagerState.parseFrom(bytes));
+        case bulkTransferInitiated:
+          return bulkTransferInitiated(TransferMessages.BulkTransferInitiated.parseFrom(bytes));
+        case allocationsConfirmed:
+          return allocationsConfirmed(TransferMessages.AllocationsConfirmed.parseFrom(bytes));
+        case creditsConfirmed:
+          return creditsConfirmed(TransferMessages.CreditsConfirmed.parseFrom(bytes));
+        case debitsConfirmed:
+          return debitsConfirmed(TransferMessages.DebitsConfirmed.parseFrom(bytes));
+        case creditsRejected:
+          return creditsRejected(TransferMessages.CreditsRejected.parseFrom(bytes));
+        case refundsConfirmed:
+          return refundsConfirmed(TransferMessages.RefundsConfirmed.parseFrom(bytes));
+        case bulkTransferFinished:
+          return bulkTransferFinished(TransferMessages.BulkTransferFinished.parseFrom(bytes));
+        default:
+          throw new NotSerializableException("Unknown manifest " + manifest);
+      }
+    } catch (InvalidProtocolBufferException e) {
+      NotSerializableException exception = new NotSerializableException(manifest);
+      exception.initCause(e);
+      throw exception;
+    } catch (ArithmeticException | IllegalArgumentException e) {
+      // also an unknown currency code and an empty legacy decimal (NumberFormatException)
+      NotSerializableException exception = new NotSerializableException(manifest + ": " + e.getMessage());
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  // ACCOUNT
+
+  private static AccountMessages.Created created(AccountProtocol.Created created) {
+    return AccountMessages.Created.newBuilder()
+      .setAccountId(created.accountId().value())
+      .setAccountName(created.accountName())
+      .setBalance(money(created.balance()))
+      .setAllocatedBalance(money(created.allocatedBalance()))
+      .build();
+  }
+
+  private AccountProtocol.Created created(AccountMessages.Created created) {
+    return new AccountProtocol.Created(
+      AccountId.of(created.getAccountId()),
+      created.getAccountName(),
+      money(created.hasBalance(), created.getBalance(), created.getLegacyBalance()),
+      money(created.hasAllocatedBalance(), created.getAllocatedBalance(), created.getLegacyAllocatedBalance()));
+  }
+
+  private static AccountMessages.MoneyAllocated moneyAllocated(AccountProtocol.MoneyAllocated moneyAllocated) {
+    return AccountMessages.MoneyAllocated.newBuilder()
+      .setDeliveryId(moneyAllocated.deliveryId())
+      .setTransferId(moneyAllocated.transferId().value())
+      .setDebtor(moneyAllocated.debtor().value())
+      .setCreditor(moneyAllocated.creditor().value())
+      .setAmount(money(moneyAllocated.amount()))
+      .build();
+  }
+
+  private AccountProtocol.MoneyAllocated moneyAllocated(AccountMessages.MoneyAllocated moneyAllocated) {
+    return new AccountProtocol.MoneyAllocated(
+      moneyAllocated.getDeliveryId(),
+      new TransferId(moneyAllocated.getTransferId()),
+      AccountId.of(moneyAllocated.getDebtor()),
+      AccountId.of(moneyAllocated.getCreditor()),
+      money(moneyAllocated.hasAmount(), moneyAllocated.getAmount(), moneyAllocated.getLegacyAmount()));
+  }
+
+  private static AccountMessages.DebitSuccessful debitSuccessful(AccountProtocol.DebitSuccessful debitSuccessful) {
+    return AccountMessages.DebitSuccessful.newBuilder()
+      .setDeliveryId(debitSuccessful.deliveryId())
+      .setDebtor(debitSuccessful.debtor().value())
+      .setPendingTransfer(pendingTransfer(debitSuccessful.pendingTransfer()))
+      .build();
+  }
+
+  private AccountProtocol.DebitSuccessful debitSuccessful(AccountMessages.DebitSuccessful debitSuccessful) {
+    return new AccountProtocol.DebitSuccessful(
+      debitSuccessful.getDeliveryId(),
+      AccountId.of(debitSuccessful.getDebtor()),
+      pendingTransfer(debitSuccessful.getPendingTransfer()));
+  }
+
+  private static AccountMessages.CreditSuccessful creditSuccessful(AccountProtocol.CreditSuccessful creditSuccessful) {
+    return AccountMessages.CreditSuccessful.newBuilder()
+      .setDeliveryId(creditSuccessful.deliveryId())
+      .setTransferId(creditSuccessful.transferId().value())
+      .setAmount(money(creditSuccessful.amount()))
+      .setCreditor(creditSuccessful.creditor().value())
+      .build();
+  }
+
+  private AccountProtocol.CreditSuccessful creditSuccessful(AccountMessages.CreditSuccessful creditSuccessful) {
+    return new AccountProtocol.CreditSuccessful(
+      creditSuccessful.getDeliveryId(),
+      new TransferId(creditSuccessful.getTransferId()),
+      money(creditSuccessful.hasAmount(), creditSuccessful.getAmount(), creditSuccessful.getLegacyAmount()),
+      AccountId.of(creditSuccessful.getCreditor()));
+  }
+
+  private static AccountMessages.MoneyAllocatedBatch moneyAllocatedBatch(AccountProtocol.MoneyAllocatedBatch batch) {
+    return AccountMessages.MoneyAllocatedBatch.newBuilder()
+      .setDeliveryId(batch.deliveryId())
+      .setDebtor(batch.debtor().value())
+      .addAllAllocated(batch.allocated().stream()
+        .map(ProtocolSerializer::moneyAllocated)
+        .collect(Collectors.toList()))
+      .addAllRejected(batch.rejected().stream()
+        .map(rejected -> AccountMessages.MoneyAllocationFailed.newBuilder()
+          .setTransferId(rejected.transferId().value())
+          .setDebtor(rejected.debtor().value())
+          .setReason(rejected.reason())
+          .build())
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private AccountProtocol.MoneyAllocatedBatch moneyAllocatedBatch(AccountMessages.MoneyAllocatedBatch batch) {
+    return new AccountProtocol.MoneyAllocatedBatch(
+      batch.getDeliveryId(),
+      AccountId.of(batch.getDebtor()),
+      batch.getAllocatedList().stream()
+        .map(this::moneyAllocated)
+        .collect(Collectors.toList()),
+      batch.getRejectedList().stream()
+        .map(rejected -> new AccountProtocol.MoneyAllocationFailed(
+          0, new TransferId(rejected.getTransferId()), AccountId.of(rejected.getDebtor()), rejected.getReason()))
+        .collect(Collectors.toList()));
+  }
+
+  private static AccountMessages.DebitBatchSuccessful debitBatchSuccessful(AccountProtocol.DebitBatchSuccessful batch) {
+    return AccountMessages.DebitBatchSuccessful.newBuilder()
+      .setDeliveryId(batch.deliveryId())
+      .setDebtor(batch.debtor().value())
+      .addAllPendingTransfers(batch.pendingTransfers().stream()
+        .map(ProtocolSerializer::pendingTransfer)
+        .collect(Collectors.toList()))
+      .addAllRejected(batch.rejected().stream()
+        .map(rejected -> AccountMessages.DebitFailed.newBuilder()
+          .setTransferId(rejected.transferId().value())
+          .setReason(rejected.reason())
+          .build())
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private AccountProtocol.DebitBatchSuccessful debitBatchSuccessful(AccountMessages.DebitBatchSuccessful batch) {
+    return new AccountProtocol.DebitBatchSuccessful(
+      batch.getDeliveryId(),
+      AccountId.of(batch.getDebtor()),
+      batch.getPendingTransfersList().stream()
+        .map(this::pendingTransfer)
+        .collect(Collectors.toList()),
+      batch.getRejectedList().stream()
+        .map(rejected -> new AccountProtocol.DebitFailed(
+          0, new TransferId(rejected.getTransferId()), rejected.getReason()))
+        .collect(Collectors.toList()));
+  }
+
+  private static AccountMessages.CreditBatchSuccessful creditBatchSuccessful(
+    AccountProtocol.CreditBatchSuccessful batch) {
+    return AccountMessages.CreditBatchSuccessful.newBuilder()
+      .setDeliveryId(batch.deliveryId())
+      .setCreditor(batch.creditor().value())
+      .addAllCredits(batch.credits().stream()
+        .map(ProtocolSerializer::creditSuccessful)
+        .collect(Collectors.toList()))
+      .addAllRejected(batch.rejected().stream()
+        .map(rejected -> AccountMessages.CreditFailed.newBuilder()
+          .setTransferId(rejected.transferId().value())
+          .setCreditor(rejected.creditor().value())
+          .setReason(rejected.reason())
+          .build())
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private AccountProtocol.CreditBatchSuccessful creditBatchSuccessful(AccountMessages.CreditBatchSuccessful batch) {
+    return new AccountProtocol.CreditBatchSuccessful(
+      batch.getDeliveryId(),
+      AccountId.of(batch.getCreditor()),
+      batch.getCreditsList().stream()
+        .map(this::creditSuccessful)
+        .collect(Collectors.toList()),
+      batch.getRejectedList().stream()
+        .map(rejected -> new AccountProtocol.CreditFailed(
+          0, new TransferId(rejected.getTransferId()), AccountId.of(rejected.getCreditor()), rejected.getReason()))
+        .collect(Collectors.toList()));
+  }
+
+  private static AccountMessages.AccountState accountState(AccountState state) {
+    return AccountMessages.AccountState.newBuilder()
+      .setBalance(money(state.balance()))
+      .setAllocatedBalance(money(state.allocatedBalance()))
+      .addAllTransfers(state.transfers().stream()
+        .map(ProtocolSerializer::pendingTransfer)
+        .collect(Collectors.toList()))
+      .addAllProcessedCommands(state.processedCommands().stream()
+        .map(ProtocolSerializer::processedCommand)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private AccountState accountState(AccountMessages.AccountState state) {
+    return new AccountState(
+      money(state.hasBalance(), state.getBalance(), state.getLegacyBalance()),
+      money(state.hasAllocatedBalance(), state.getAllocatedBalance(), state.getLegacyAllocatedBalance()),
+      state.getTransfersList().stream()
+        .map(this::pendingTransfer)
+        .collect(Collectors.toList()),
+      state.getProcessedCommandsList().stream()
+        .map(ProtocolSerializer::processedCommand)
+        .collect(Collectors.toList()));
+  }
+
+  private static AccountMessages.PendingTransfer pendingTransfer(PendingTransfer pendingTransfer) {
+    return AccountMessages.PendingTransfer.newBuilder()
+      .setTransferId(pendingTransfer.transferId().value())
+      .setAmount(money(pendingTransfer.amount()))
+      .setCreditor(pendingTransfer.creditor().value())
+      .build();
+  }
+
+  private PendingTransfer pendingTransfer(AccountMessages.PendingTransfer pendingTransfer) {
+    return new PendingTransfer(
+      new TransferId(pendingTransfer.getTransferId()),
+      money(pendingTransfer.hasAmount(), pendingTransfer.getAmount(), pendingTransfer.getLegacyAmount()),
+      AccountId.of(pendingTransfer.getCreditor()));
+  }
+
+  private static AccountMessages.ProcessedCommand processedCommand(ProcessedCommand command) {
+    return AccountMessages.ProcessedCommand.newBuilder()
+      .setKind(AccountMessages.ProcessedCommandKind.valueOf(command.kind().name()))
+      .setTransferId(command.transferId().value())
+      .setAmount(money(command.amount()))
+      .setCreditor(command.creditor().value())
+      .build();
+  }
+
+  private static ProcessedCommand processedCommand(AccountMessages.ProcessedCommand command) {
+    return new ProcessedCommand(
+      ProcessedCommand.Kind.valueOf(command.getKind().name()),
+      new TransferId(command.getTransferId()),
+      money(command.getAmount()),
+      AccountId.of(command.getCreditor()));
+  }
+
+  // TRANSFER
+
+  private static TransferMessages.TransferInitiated transferInitiated(TransferProtocol.TransferInitiated initiated) {
+    return TransferMessages.TransferInitiated.newBuilder()
+      .setTransferId(initiated.transferId().value())
+      .setDebtor(initiated.debtor().value())
+      .setCreditor(initiated.creditor().value())
+      .setAmount(money(initiated.amount()))
+      .setCorrelationId(initiated.correlationId())
+      .build();
+  }
+
+  private TransferProtocol.TransferInitiated transferInitiated(TransferMessages.TransferInitiated initiated) {
+    return new TransferProtocol.TransferInitiated(
+      new TransferId(initiated.getTransferId()),
+      AccountId.of(initiated.getDebtor()),
+      AccountId.of(initiated.getCreditor()),
+      money(initiated.hasAmount(), initiated.getAmount(), initiated.getLegacyAmount()),
+      initiated.getCorrelationId());
+  }
+
+  // v1 persisted the requester's actor path, it is kept as correlation id and never resolved
+  @SuppressWarnings("deprecation")
+  private TransferProtocol.TransferInitiated transferInitiatedV1(TransferMessages.TransferInitiated initiated) {
+    return new TransferProtocol.TransferInitiated(
+      new TransferId(initiated.getTransferId()),
+      AccountId.of(initiated.getDebtor()),
+      AccountId.of(initiated.getCreditor()),
+      money(initiated.hasAmount(), initiated.getAmount(), initiated.getLegacyAmount()),
+      initiated.getRequester());
+  }
+
+  private static TransferMessages.AllocateMoneySent allocateMoneySent(TransferProtocol.AllocateMoneySent sent) {
+    return TransferMessages.AllocateMoneySent.newBuilder().setCommand(allocateMoney(sent.command())).build();
+  }
+
+  private TransferProtocol.AllocateMoneySent allocateMoneySent(TransferMessages.AllocateMoneySent sent) {
+    return new TransferProtocol.AllocateMoneySent(allocateMoney(sent.getCommand()));
+  }
+
+  private static TransferMessages.CreditSent creditSent(TransferProtocol.CreditSent sent) {
+    return TransferMessages.CreditSent.newBuilder().setCommand(credit(sent.command())).build();
+  }
+
+  private TransferProtocol.CreditSent creditSent(TransferMessages.CreditSent sent) {
+    return new TransferProtocol.CreditSent(credit(sent.getCommand()));
+  }
+
+  private static TransferMessages.DebitSent debitSent(TransferProtocol.DebitSent sent) {
+    return TransferMessages.DebitSent.newBuilder().setCommand(debit(sent.command())).build();
+  }
+
+  private static TransferProtocol.DebitSent debitSent(TransferMessages.DebitSent sent) {
+    return new TransferProtocol.DebitSent(debit(sent.getCommand()));
+  }
+
+  private static TransferMessages.RefundSent refundSent(TransferProtocol.RefundSent sent) {
+    return TransferMessages.RefundSent.newBuilder()
+      .setCommand(credit(sent.command()))
+      .setReason(sent.reason())
+      .build();
+  }
+
+  private TransferProtocol.RefundSent refundSent(TransferMessages.RefundSent sent) {
+    return new TransferProtocol.RefundSent(credit(sent.getCommand()), sent.getReason());
+  }
+
+  // v1 persisted an untyped message
+  private TransferProtocol.MessageSent messageSentV1(TransferMessages.MessageSent messageSent)
+    throws NotSerializableException {
+    switch (messageSent.getMessageCase()) {
+      case ALLOCATE_MONEY:
+        return new TransferProtocol.AllocateMoneySent(allocateMoney(messageSent.getAllocateMoney()));
+      case CREDIT:
+        return new TransferProtocol.CreditSent(credit(messageSent.getCredit()));
+      case DEBIT:
+        return new TransferProtocol.DebitSent(debit(messageSent.getDebit()));
+      default:
+        throw new NotSerializableException("MessageSent without message");
+    }
+  }
+
+  private static TransferMessages.MessageConfirmed messageConfirmed(TransferProtocol.MessageConfirmed confirmed) {
+    return TransferMessages.MessageConfirmed.newBuilder()
+      .setDeliveryId(confirmed.deliveryId())
+      .setConfirmationType(TransferMessages.ConfirmationType.valueOf(confirmed.confirmationType().name()))
+      .build();
+  }
+
+  private static TransferProtocol.MessageConfirmed messageConfirmed(TransferMessages.MessageConfirmed confirmed) {
+    return new TransferProtocol.MessageConfirmed(
+      confirmed.getDeliveryId(),
+      ConfirmationType.valueOf(confirmed.getConfirmationType().name()));
+  }
+
+  private static TransferMessages.TransferCompleted transferCompleted(TransferProtocol.TransferCompleted completed) {
+    return TransferMessages.TransferCompleted.newBuilder()
+      .setTransferId(completed.transferId().value())
+      .setDebtor(completed.debtor().value())
+      .setCreditor(completed.creditor().value())
+      .setAmount(money(completed.amount()))
+      .build();
+  }
+
+  private TransferProtocol.TransferCompleted transferCompleted(TransferMessages.TransferCompleted completed) {
+    return new TransferProtocol.TransferCompleted(
+      new TransferId(completed.getTransferId()),
+      AccountId.of(completed.getDebtor()),
+      AccountId.of(completed.getCreditor()),
+      money(completed.hasAmount(), completed.getAmount(), completed.getLegacyAmount()));
+  }
+
+  private static TransferMessages.TransferFailed transferFailed(TransferProtocol.TransferFailed failed) {
+    return TransferMessages.TransferFailed.newBuilder()
+      .setTransferId(failed.transferId().value())
+      .setDebtor(failed.debtor().value())
+      .setCreditor(failed.creditor().value())
+      .setAmount(money(failed.amount()))
+      .setReason(failed.reason())
+      .build();
+  }
+
+  private TransferProtocol.TransferFailed transferFailed(TransferMessages.TransferFailed failed) {
+    return new TransferProtocol.TransferFailed(
+      new TransferId(failed.getTransferId()),
+      AccountId.of(failed.getDebtor()),
+      AccountId.of(failed.getCreditor()),
+      money(failed.hasAmount(), failed.getAmount(), failed.getLegacyAmount()),
+      failed.getReason());
+  }
+
+  private static TransferMessages.TransferState transferState(TransferState state) {
+    return TransferMessages.TransferState.newBuilder()
+      .setDebtor(state.debtor().value())
+      .setCreditor(state.creditor().value())
+      .setAmount(money(state.amount()))
+      .setStatus(TransferMessages.Status.valueOf(state.status().name()))
+      .setMoneyAllocated(state.moneyAllocated())
+      .setCreditCompleted(state.creditCompleted())
+      .setDebitCompleted(state.debitCompleted())
+      .setCreditRejected(state.creditRejected())
+      .setRefunded(state.refunded())
+      .setRefundReason(state.refundReason())
+      .setCurrentDeliveryId(state.currentDeliveryId())
+      .addAllOutstandingDeliveries(state.outstandingDeliveries().stream()
+        .map(ProtocolSerializer::outstandingDelivery)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private TransferState transferState(TransferMessages.TransferState state) throws NotSerializableException {
+    List<TransferState.OutstandingDelivery> outstanding = new ArrayList<>();
+    for (TransferMessages.OutstandingDelivery delivery : state.getOutstandingDeliveriesList()) {
+      outstanding.add(outstandingDelivery(delivery));
+    }
+    return new TransferState(
+      AccountId.of(state.getDebtor()),
+      AccountId.of(state.getCreditor()),
+      money(state.hasAmount(), state.getAmount(), state.getLegacyAmount()),
+      Status.valueOf(state.getStatus().name()),
+      state.getMoneyAllocated(),
+      state.getCreditCompleted(),
+      state.getDebitCompleted(),
+      state.getCreditRejected(),
+      state.getRefunded(),
+      state.getRefundReason(),
+      state.getCurrentDeliveryId(),
+      outstanding);
+  }
+
+  private static TransferMessages.OutstandingDelivery outstandingDelivery(TransferState.OutstandingDelivery delivery) {
+    TransferMessages.OutstandingDelivery.Builder builder = TransferMessages.OutstandingDelivery.newBuilder()
+      .setDeliveryId(delivery.deliveryId())
+      .setRecipient(delivery.recipient().value());
+    AccountProtocol.Command command = delivery.command();
+    if (command instanceof AccountProtocol.AllocateMoney) {
+      builder.setAllocateMoney(allocateMoney((AccountProtocol.AllocateMoney) command));
+    } else if (command instanceof AccountProtocol.Credit) {
+      builder.setCredit(credit((AccountProtocol.Credit) command));
+    } else if (command instanceof AccountProtocol.Debit) {
+      builder.setDebit(debit((AccountProtocol.Debit) command));
+    } else {
+      throw new IllegalArgumentException("Cannot serialize " + command.getClass().getName());
+    }
+    return builder.build();
+  }
+
+  private TransferState.OutstandingDelivery outstandingDelivery(TransferMessages.OutstandingDelivery delivery)
+    throws NotSerializableException {
+    AccountProtocol.Command command;
+    switch (delivery.getCommandCase()) {
+      case ALLOCATE_MONEY:
+        command = allocateMoney(delivery.getAllocateMoney());
+        break;
+      case CREDIT:
+        command = credit(delivery.getCredit());
+        break;
+      case DEBIT:
+        command = debit(delivery.getDebit());
+        break;
+      default:
+        throw new NotSerializableException("OutstandingDelivery without command");
+    }
+    return new TransferState.OutstandingDelivery(delivery.getDeliveryId(), AccountId.of(delivery.getRecipient()), command);
+  }
+
+  // TRANSFER MANAGER
+
+  private static TransferMessages.TransferStarted transferStarted(TransferManagerProtocol.TransferStarted started) {
+    return TransferMessages.TransferStarted.newBuilder().setTransferId(started.transferId().value()).build();
+  }
+
+  private static TransferManagerProtocol.TransferStarted transferStarted(TransferMessages.TransferStarted started) {
+    return new TransferManagerProtocol.TransferStarted(new TransferId(started.getTransferId()));
+  }
+
+  private static TransferMessages.TransferFinished transferFinished(TransferManagerProtocol.TransferFinished finished) {
+    return TransferMessages.TransferFinished.newBuilder().setTransferId(finished.transferId().value()).build();
+  }
+
+  private static TransferManagerProtocol.TransferFinished transferFinished(TransferMessages.TransferFinished finished) {
+    return new TransferManagerProtocol.TransferFinished(new TransferId(finished.getTransferId()));
+  }
+
+  private static TransferMessages.TransferManagerState transferManagerState(TransferManagerState state) {
+    return TransferMessages.TransferManagerState.newBuilder()
+      .addAllUnfinished(state.unfinished().stream().map(TransferId::value).collect(Collectors.toList()))
+      .build();
+  }
+
+  private static TransferManagerState transferManagerState(TransferMessages.TransferManagerState state) {
+    return new TransferManagerState(
+      state.getUnfinishedList().stream().map(TransferId::new).collect(Collectors.toList()));
+  }
+
+  // BULK TRANSFER
+
+  private static TransferMessages.BulkTransferInitiated bulkTransferInitiated(
+    BulkTransferProtocol.BulkTransferInitiated initiated) {
+    return TransferMessages.BulkTransferInitiated.newBuilder()
+      .setBulkTransferId(initiated.bulkTransferId().value())
+      .addAllLines(initiated.lines().stream()
+        .map(line -> TransferMessages.BulkTransferLine.newBuilder()
+          .setDebtor(line.debtor().value())
+          .setCreditor(line.creditor().value())
+          .setAmount(money(line.amount()))
+          .build())
+        .collect(Collectors.toList()))
+      .setCorrelationId(initiated.correlationId())
+      .build();
+  }
+
+  private static BulkTransferProtocol.BulkTransferInitiated bulkTransferInitiated(
+    TransferMessages.BulkTransferInitiated initiated) {
+    return new BulkTransferProtocol.BulkTransferInitiated(
+      new TransferId(initiated.getBulkTransferId()),
+      initiated.getLinesList().stream()
+        .map(line -> new BulkTransferProtocol.BulkTransferLine(
+          AccountId.of(line.getDebtor()),
+          AccountId.of(line.getCreditor()),
+          money(line.getAmount())))
+        .collect(Collectors.toList()),
+      initiated.getCorrelationId());
+  }
+
+  private static TransferMessages.AllocationsConfirmed allocationsConfirmed(
+    BulkTransferProtocol.AllocationsConfirmed confirmed) {
+    return TransferMessages.AllocationsConfirmed.newBuilder()
+      .setDeliveryId(confirmed.deliveryId())
+      .setDebtor(confirmed.debtor().value())
+      .addAllRejected(confirmed.rejected().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private static BulkTransferProtocol.AllocationsConfirmed allocationsConfirmed(
+    TransferMessages.AllocationsConfirmed confirmed) {
+    return new BulkTransferProtocol.AllocationsConfirmed(
+      confirmed.getDeliveryId(),
+      AccountId.of(confirmed.getDebtor()),
+      confirmed.getRejectedList().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()));
+  }
+
+  private static TransferMessages.LineRejected lineRejected(BulkTransferProtocol.LineRejected rejected) {
+    return TransferMessages.LineRejected.newBuilder()
+      .setLine(rejected.line())
+      .setReason(rejected.reason())
+      .build();
+  }
+
+  private static BulkTransferProtocol.LineRejected lineRejected(TransferMessages.LineRejected rejected) {
+    return new BulkTransferProtocol.LineRejected(rejected.getLine(), rejected.getReason());
+  }
+
+  private static TransferMessages.CreditsConfirmed creditsConfirmed(BulkTransferProtocol.CreditsConfirmed confirmed) {
+    return TransferMessages.CreditsConfirmed.newBuilder()
+      .setDeliveryId(confirmed.deliveryId())
+      .setCreditor(confirmed.creditor().value())
+      .addAllRejected(confirmed.rejected().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private static BulkTransferProtocol.CreditsConfirmed creditsConfirmed(TransferMessages.CreditsConfirmed confirmed) {
+    return new BulkTransferProtocol.CreditsConfirmed(
+      confirmed.getDeliveryId(),
+      AccountId.of(confirmed.getCreditor()),
+      confirmed.getRejectedList().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()));
+  }
+
+  private static TransferMessages.DebitsConfirmed debitsConfirmed(BulkTransferProtocol.DebitsConfirmed confirmed) {
+    return TransferMessages.DebitsConfirmed.newBuilder()
+      .setDeliveryId(confirmed.deliveryId())
+      .setDebtor(confirmed.debtor().value())
+      .addAllRejected(confirmed.rejected().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private static BulkTransferProtocol.DebitsConfirmed debitsConfirmed(TransferMessages.DebitsConfirmed confirmed) {
+    return new BulkTransferProtocol.DebitsConfirmed(
+      confirmed.getDeliveryId(),
+      AccountId.of(confirmed.getDebtor()),
+      confirmed.getRejectedList().stream()
+        .map(ProtocolSerializer::lineRejected)
+        .collect(Collectors.toList()));
+  }
+
+  private static TransferMessages.CreditsRejected creditsRejected(BulkTransferProtocol.CreditsRejected rejected) {
+    return TransferMessages.CreditsRejected.newBuilder()
+      .setDeliveryId(rejected.deliveryId())
+      .setCreditor(rejected.creditor().value())
+      .build();
+  }
+
+  private static BulkTransferProtocol.CreditsRejected creditsRejected(TransferMessages.CreditsRejected rejected) {
+    return new BulkTransferProtocol.CreditsRejected(rejected.getDeliveryId(), AccountId.of(rejected.getCreditor()));
+  }
+
+  private static TransferMessages.RefundsConfirmed refundsConfirmed(BulkTransferProtocol.RefundsConfirmed confirmed) {
+    return TransferMessages.RefundsConfirmed.newBuilder()
+      .setDeliveryId(confirmed.deliveryId())
+      .setDebtor(confirmed.debtor().value())
+      .setCreditor(confirmed.creditor().value())
+      .build();
+  }
+
+  private static BulkTransferProtocol.RefundsConfirmed refundsConfirmed(TransferMessages.RefundsConfirmed confirmed) {
+    return new BulkTransferProtocol.RefundsConfirmed(
+      confirmed.getDeliveryId(), AccountId.of(confirmed.getDebtor()), AccountId.of(confirmed.getCreditor()));
+  }
+
+  private static TransferMessages.BulkTransferFinished bulkTransferFinished(
+    BulkTransferProtocol.BulkTransferFinished finished) {
+    return TransferMessages.BulkTransferFinished.newBuilder()
+      .setBulkTransferId(finished.bulkTransferId().value())
+      .addAllCompleted(finished.completed().stream()
+        .map(ProtocolSerializer::transferCompleted)
+        .collect(Collectors.toList()))
+      .addAllFailed(finished.failed().stream()
+        .map(ProtocolSerializer::transferFailed)
+        .collect(Collectors.toList()))
+      .build();
+  }
+
+  private BulkTransferProtocol.BulkTransferFinished bulkTransferFinished(
+    TransferMessages.BulkTransferFinished finished) {
+    return new BulkTransferProtocol.BulkTransferFinished(
+      new TransferId(finished.getBulkTransferId()),
+      finished.getCompletedList().stream()
+        .map(this::transferCompleted)
+        .collect(Collectors.toList()),
+      finished.getFailedList().stream()
+        .map(this::transferFailed)
+        .collect(Collectors.toList()));
+  }
+
+  // ACCOUNT COMMANDS
+
+  private static AccountMessages.AllocateMoney allocateMoney(AccountProtocol.AllocateMoney allocateMoney) {
+    return AccountMessages.AllocateMoney.newBuilder()
+      .setTransferId(allocateMoney.transferId().value())
+      .setCreditor(allocateMoney.creditor().value())
+      .setAmount(money(allocateMoney.amount()))
+      .build();
+  }
+
+  private AccountProtocol.AllocateMoney allocateMoney(AccountMessages.AllocateMoney allocateMoney) {
+    return new AccountProtocol.AllocateMoney(
+      new TransferId(allocateMoney.getTransferId()),
+      AccountId.of(allocateMoney.getCreditor()),
+      money(allocateMoney.hasAmount(), allocateMoney.getAmount(), allocateMoney.getLegacyAmount()));
+  }
+
+  private static AccountMessages.Credit credit(AccountProtocol.Credit credit) {
+    return AccountMessages.Credit.newBuilder()
+      .setTransferId(credit.transferId().value())
+      .setAmount(money(credit.amount()))
+      .build();
+  }
+
+  private AccountProtocol.Credit credit(AccountMessages.Credit credit) {
+    return new AccountProtocol.Credit(
+      new TransferId(credit.getTransferId()),
+      money(credit.hasAmount(), credit.getAmount(), credit.getLegacyAmount()));
+  }
+
+  private static AccountMessages.Debit debit(AccountProtocol.Debit debit) {
+    return AccountMessages.Debit.newBuilder()
+      .setTransferId(debit.transferId().value())
+      .build();
+  }
+
+  private static AccountProtocol.Debit debit(AccountMessages.Debit debit) {
+    return new AccountProtocol.Debit(new TransferId(debit.getTransferId()));
+  }
+
+  // COMMON
+
+  private static BigDecimal decimal(CommonMessages.Decimal value) {
+    return new BigDecimal(new BigInteger(value.getUnscaled().toByteArray()), value.getScale());
+  }
+
+  private static CommonMessages.Money money(Money value) {
+    return CommonMessages.Money.newBuilder()
+      .setMinorUnits(value.minorUnits())
+      .setCurrency(value.currency().getCurrencyCode())
+      .build();
+  }
+
+  private static Money money(CommonMessages.Money value) {
+    return Money.ofMinor(value.getMinorUnits(), Currency.getInstance(value.getCurrency()));
+  }
+
+  private Money money(boolean present, CommonMessages.Money value, CommonMessages.Decimal legacy) {
+    if (present) {
+      return money(value);
+    }
+    return Money.of(decimal(legacy), legacyCurrency);
+  }
+}
@@ -0,0 +1,88 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoney;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Create;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Credit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocated;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocationFailed;
+import com.wirecard.akkatraining.domain.account.AccountSettings;
+import com.wirecard.akkatraining.domain.account.PersistMode;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountAsyncPersistTest extends AbstractActorSystemTest {
+
+  private static final int allocations = 500;
+  private static final Money initialBalance = Money.of("100", "EUR");
+
+  @Test
+  public void thatPipelinedWritesNeverAllocateMoreThanTheBalance() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config())
+      .withPersistMode(PersistMode.ASYNC);
+    String accountName = "Account-" + UUID.randomUUID();
+    AccountId creditor = AccountId.of("Account-creditor");
+    TestKit probe = new TestKit(system());
+
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, initialBalance, Money.of("0", "EUR")), probe.getRef());
+    for (int i = 0; i < allocations; i++) {
+      account.tell(new AllocateMoney(new TransferId("Transfer-" + i), creditor, Money.of("1", "EUR")), probe.getRef());
+    }
+
+    List<Object> replies = probe.receiveN(allocations, FiniteDuration.create(30, TimeUnit.SECONDS));
+    assertThat(replies.stream().filter(MoneyAllocated.class::isInstance).count()).isEqualTo(100);
+    assertThat(replies.stream().filter(MoneyAllocationFailed.class::isInstance).count()).isEqualTo(allocations - 100);
+
+    account.tell(GetAccountOverview.instance(), probe.getRef());
+    probe.expectMsg(new AccountOverview(initialBalance, initialBalance, 100));
+
+    // every reply was sent after its event was written, so a recovered account sees all of them
+    probe.watch(account);
+    account.tell(PoisonPill.getInstance(), ActorRef.noSender());
+    probe.expectTerminated(account);
+    ActorRef recovered = system().actorOf(Account.props(settings), accountName);
+    recovered.tell(GetAccountOverview.instance(), probe.getRef());
+    probe.expectMsg(new AccountOverview(initialBalance, initialBalance, 100));
+  }
+
+  @Test
+  public void thatRedeliveriesOfCommandsInFlightAreAppliedOnce() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config())
+      .withPersistMode(PersistMode.ASYNC);
+    String accountName = "Account-" + UUID.randomUUID();
+    AccountId creditor = AccountId.of("Account-creditor");
+    TestKit probe = new TestKit(system());
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, initialBalance, Money.of("0", "EUR")), probe.getRef());
+
+    // each redelivery arrives before the event of the first delivery is written
+    AllocateMoney allocateMoney = new AllocateMoney(new TransferId("Transfer-1"), creditor, Money.of("4", "EUR"));
+    Credit credit = new Credit(new TransferId("Transfer-2"), Money.of("1", "EUR"));
+    account.tell(new Delivery(1, allocateMoney), probe.getRef());
+    account.tell(new Delivery(2, allocateMoney), probe.getRef());
+    account.tell(new Delivery(3, credit), probe.getRef());
+    account.tell(new Delivery(4, credit), probe.getRef());
+
+    List<Object> replies = probe.receiveN(2, FiniteDuration.create(3, TimeUnit.SECONDS));
+    assertThat(replies).extracting(Object::getClass)
+      .containsExactlyInAnyOrder(MoneyAllocated.class, CreditSuccessful.class);
+    probe.expectNoMessage(FiniteDuration.create(200, TimeUnit.MILLISECONDS));
+    account.tell(GetAccountOverview.instance(), probe.getRef());
+    probe.expectMsg(new AccountOverview(Money.of("101", "EUR"), Money.of("4", "EUR"), 1));
+  }
+}
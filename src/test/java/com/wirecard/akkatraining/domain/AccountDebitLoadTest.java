@@ -0,0 +1,71 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoney;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Debit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocated;
+import com.wirecard.akkatraining.domain.account.AccountSettings;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static akka.actor.ActorRef.noSender;
+import static com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Forward;
+import static com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountDebitLoadTest extends AbstractActorSystemTest {
+
+  private static final int accounts = 500;
+
+  private ActorRef accountRepository;
+
+  protected void before() {
+    accountRepository = system().actorOf(InMemoryAccountRepository.props(), "account-repository");
+  }
+
+  @Test
+  public void thatDebitThroughputScalesWithAccountsNotDispatcherThreads() {
+    TestKit probe = new TestKit(system());
+    FiniteDuration settlementDelay = AccountSettings.fromConfig(system().settings().config()).debitSettlementDelay();
+    String run = UUID.randomUUID().toString();
+
+    List<AccountId> accountIds = new ArrayList<>();
+    for (int i = 0; i < accounts; i++) {
+      AccountId accountId = AccountId.of("Account-" + run + "-" + i);
+      accountIds.add(accountId);
+      accountRepository.tell(
+        new Save("account-" + i, accountId, Money.of("10", "EUR"), Money.of("0", "EUR")), noSender());
+      accountRepository.tell(
+        new Forward(accountId, new AllocateMoney(transferId(run, i), accountId, Money.of("1", "EUR"))), probe.getRef());
+    }
+    probe.receiveN(accounts, FiniteDuration.create(30, TimeUnit.SECONDS))
+      .forEach(msg -> assertThat(msg).isInstanceOf(MoneyAllocated.class));
+
+    long start = System.nanoTime();
+    for (int i = 0; i < accounts; i++) {
+      accountRepository.tell(new Forward(accountIds.get(i), new Debit(transferId(run, i))), probe.getRef());
+    }
+    probe.receiveN(accounts, FiniteDuration.create(30, TimeUnit.SECONDS))
+      .forEach(msg -> assertThat(msg).isInstanceOf(DebitSuccessful.class));
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // with a blocking settlement the debits would take at least accounts * delay / dispatcher threads
+    assertThat(elapsedMillis)
+      .as("%d debits with %s settlement delay", accounts, settlementDelay)
+      .isLessThan(settlementDelay.toMillis() * 10);
+  }
+
+  private static TransferId transferId(String run, int i) {
+    return new TransferId("Transfer-" + run + "-" + i);
+  }
+}
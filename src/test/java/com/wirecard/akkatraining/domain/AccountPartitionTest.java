@@ -0,0 +1,116 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Terminated;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Credit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Forward;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Passivate;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.account.AccountSettings;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.infrastructure.repository.AccountPartition;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static akka.actor.ActorRef.noSender;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountPartitionTest extends AbstractActorSystemTest {
+
+  private final AccountId accountId = AccountId.of("Account-" + UUID.randomUUID());
+
+  @Test
+  public void thatAccountsAreStartedOnDemand() {
+    ActorRef partition = system().actorOf(AccountPartition.props(), "partition-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+
+    partition.tell(new Save("account", accountId, eur("10"), eur("0")), noSender());
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+
+    assertThat(probe.expectMsgClass(AccountOverview.class).balance()).isEqualTo(eur("10"));
+    assertThat(probe.getLastSender().path().parent()).isEqualTo(partition.path());
+    assertThat(probe.getLastSender().path().name()).isEqualTo(accountId.value());
+  }
+
+  @Test
+  public void thatColdAccountsAreRecoveredFromTheJournal() {
+    ActorRef partition = system().actorOf(AccountPartition.props(), "partition-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+    partition.tell(new Save("account", accountId, eur("10"), eur("0")), noSender());
+    partition.tell(new Forward(accountId, new Credit(transferId(), eur("5"))), probe.getRef());
+    probe.expectMsgClass(CreditSuccessful.class);
+    probe.watch(partition);
+    partition.tell(PoisonPill.getInstance(), noSender());
+    probe.expectTerminated(partition);
+
+    ActorRef restarted = system().actorOf(AccountPartition.props(), "partition-" + UUID.randomUUID());
+    restarted.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+
+    assertThat(probe.expectMsgClass(AccountOverview.class).balance()).isEqualTo(eur("15"));
+  }
+
+  @Test
+  public void thatIdleAccountsArePassivated() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config())
+      .withPassivateAfter(FiniteDuration.create(200, TimeUnit.MILLISECONDS));
+    ActorRef partition = system().actorOf(AccountPartition.props(Account.props(settings)), "partition");
+    TestKit probe = new TestKit(system());
+    partition.tell(new Save("account", accountId, eur("10"), eur("0")), noSender());
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+    probe.expectMsgClass(AccountOverview.class);
+    ActorRef account = probe.getLastSender();
+    probe.watch(account);
+
+    probe.expectTerminated(FiniteDuration.create(5, TimeUnit.SECONDS), account);
+
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+    assertThat(probe.expectMsgClass(AccountOverview.class).balance()).isEqualTo(eur("10"));
+    assertThat(probe.getLastSender()).isNotEqualTo(account);
+  }
+
+  @Test
+  public void thatMessagesForAPassivatingAccountAreDeliveredToItsNextIncarnation() {
+    ActorRef partition = system().actorOf(AccountPartition.props(), "partition");
+    TestKit probe = new TestKit(system());
+    partition.tell(new Save("account", accountId, eur("10"), eur("0")), noSender());
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+    probe.expectMsgClass(AccountOverview.class);
+    ActorRef account = probe.getLastSender();
+    probe.watch(account);
+
+    // as sent by the idle account, the messages right behind it are buffered until it stopped
+    partition.tell(Passivate.instance(), account);
+    partition.tell(new Forward(accountId, new Credit(transferId(), eur("5"))), probe.getRef());
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+
+    List<Object> received = probe.receiveN(3, FiniteDuration.create(5, TimeUnit.SECONDS));
+    assertThat(received)
+      .hasAtLeastOneElementOfType(Terminated.class)
+      .hasAtLeastOneElementOfType(CreditSuccessful.class);
+    assertThat(received).filteredOn(AccountOverview.class::isInstance)
+      .extracting("balance").containsExactly(eur("15"));
+    partition.tell(new Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+    probe.expectMsgClass(AccountOverview.class);
+    assertThat(probe.getLastSender()).isNotEqualTo(account);
+    assertThat(probe.getLastSender().path()).isEqualTo(account.path());
+  }
+
+  private static TransferId transferId() {
+    return new TransferId("Transfer-" + UUID.randomUUID());
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+}
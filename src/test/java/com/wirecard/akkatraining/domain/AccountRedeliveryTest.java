@@ -0,0 +1,157 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoney;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoneyBatch;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Create;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Credit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Debit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitBatch;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitBatchSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitFailed;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocated;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocatedBatch;
+import com.wirecard.akkatraining.domain.account.AccountSettings;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountRedeliveryTest extends AbstractActorSystemTest {
+
+  private final String accountName = "Account-" + UUID.randomUUID();
+  private final AccountId creditor = AccountId.of("Account-creditor");
+  private final TransferId transferId = new TransferId("Transfer-" + UUID.randomUUID());
+  // more than the 1000 commands the former count-based window remembered
+  private final int manyCommands = 1500;
+
+  @Test
+  public void thatRedeliveriesAreAnsweredWithTheOriginalConfirmation() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config());
+    TestKit probe = new TestKit(system());
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, eur("10"), eur("0")), probe.getRef());
+
+    AllocateMoney allocateMoney = new AllocateMoney(transferId, creditor, eur("4"));
+    account.tell(new Delivery(1, allocateMoney), probe.getRef());
+    probe.expectMsgClass(MoneyAllocated.class);
+    account.tell(new Delivery(2, allocateMoney), probe.getRef());
+    assertThat(probe.expectMsgClass(MoneyAllocated.class).deliveryId()).isEqualTo(2);
+
+    Credit credit = new Credit(new TransferId("Transfer-" + UUID.randomUUID()), eur("1"));
+    account.tell(new Delivery(3, credit), probe.getRef());
+    probe.expectMsgClass(CreditSuccessful.class);
+    account.tell(new Delivery(4, credit), probe.getRef());
+    assertThat(probe.expectMsgClass(CreditSuccessful.class).deliveryId()).isEqualTo(4);
+
+    account.tell(new Delivery(5, new Debit(transferId)), probe.getRef());
+    probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), DebitSuccessful.class);
+    assertOverview(probe, account, new AccountOverview(eur("7"), eur("0"), 0));
+
+    // the window is rebuilt by the recovery
+    probe.watch(account);
+    account.tell(PoisonPill.getInstance(), ActorRef.noSender());
+    probe.expectTerminated(account);
+    ActorRef recovered = system().actorOf(Account.props(settings), accountName);
+    recovered.tell(new Delivery(6, new Debit(transferId)), probe.getRef());
+    DebitSuccessful debitSuccessful = probe.expectMsgClass(DebitSuccessful.class);
+    assertThat(debitSuccessful.deliveryId()).isEqualTo(6);
+    assertThat(debitSuccessful.pendingTransfer()).isEqualTo(new PendingTransfer(transferId, eur("4"), creditor));
+    recovered.tell(new Delivery(7, allocateMoney), probe.getRef());
+    probe.expectMsgClass(MoneyAllocated.class);
+    assertOverview(probe, recovered, new AccountOverview(eur("7"), eur("0"), 0));
+  }
+
+  @Test
+  public void thatRedeliveriesAfterManyOtherCommandsAreNotProcessedAgain() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config());
+    TestKit probe = new TestKit(system());
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, eur("10"), eur("0")), probe.getRef());
+
+    Credit credit = new Credit(transferId, eur("1"));
+    account.tell(new Delivery(1, credit), probe.getRef());
+    for (int i = 0; i < manyCommands; i++) {
+      account.tell(new Delivery(2, new Credit(new TransferId("Transfer-" + UUID.randomUUID()), eur("1"))),
+        probe.getRef());
+    }
+    account.tell(new Delivery(3, credit), probe.getRef());
+    probe.receiveN(manyCommands + 1);
+
+    assertThat(probe.expectMsgClass(CreditSuccessful.class).deliveryId()).isEqualTo(3);
+    assertOverview(probe, account, new AccountOverview(eur("1511"), eur("0"), 0));
+  }
+
+  @Test
+  public void thatRedeliveredBatchesWithManyLinesAreAnsweredAsDebited() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config());
+    TestKit probe = new TestKit(system());
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, eur("10000"), eur("0")), probe.getRef());
+    List<AllocateMoney> allocations = new ArrayList<>();
+    List<Debit> debits = new ArrayList<>();
+    for (int i = 0; i < manyCommands; i++) {
+      TransferId line = new TransferId("Transfer-" + UUID.randomUUID());
+      allocations.add(new AllocateMoney(line, creditor, eur("1")));
+      debits.add(new Debit(line));
+    }
+    account.tell(new Delivery(1, new AllocateMoneyBatch(allocations)), probe.getRef());
+    probe.expectMsgClass(MoneyAllocatedBatch.class);
+    account.tell(new Delivery(2, new DebitBatch(debits)), probe.getRef());
+    probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), DebitBatchSuccessful.class);
+
+    // the batch confirmation was lost, every line is answered from the processed commands
+    account.tell(new Delivery(3, new DebitBatch(debits)), probe.getRef());
+
+    DebitBatchSuccessful redelivered = probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS),
+      DebitBatchSuccessful.class);
+    assertThat(redelivered.pendingTransfers()).hasSize(manyCommands);
+    assertThat(redelivered.rejected()).isEmpty();
+    assertOverview(probe, account, new AccountOverview(eur("8500"), eur("0"), 0));
+  }
+
+  @Test
+  public void thatBatchDebitsWithoutAllocatedMoneyAreRejected() {
+    AccountSettings settings = AccountSettings.fromConfig(system().settings().config());
+    TestKit probe = new TestKit(system());
+    ActorRef account = system().actorOf(Account.props(settings), accountName);
+    account.tell(new Create(accountName, eur("10"), eur("0")), probe.getRef());
+    account.tell(new Delivery(1, new AllocateMoney(transferId, creditor, eur("4"))), probe.getRef());
+    probe.expectMsgClass(MoneyAllocated.class);
+
+    TransferId unknown = new TransferId("Transfer-" + UUID.randomUUID());
+    account.tell(new Delivery(2, new DebitBatch(Arrays.asList(new Debit(transferId), new Debit(unknown)))),
+      probe.getRef());
+
+    DebitBatchSuccessful batch = probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS),
+      DebitBatchSuccessful.class);
+    assertThat(batch.pendingTransfers()).containsExactly(new PendingTransfer(transferId, eur("4"), creditor));
+    assertThat(batch.rejected()).containsExactly(new DebitFailed(0, unknown, "No allocated money for such transfer"));
+    assertOverview(probe, account, new AccountOverview(eur("6"), eur("0"), 0));
+  }
+
+  private static void assertOverview(TestKit probe, ActorRef account, AccountOverview overview) {
+    account.tell(GetAccountOverview.instance(), probe.getRef());
+    probe.expectMsg(overview);
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+}
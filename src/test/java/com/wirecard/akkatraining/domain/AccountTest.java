@@ -15,7 +15,6 @@ import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferInitia
 import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
 import org.junit.Test;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 import static akka.actor.ActorRef.noSender;
@@ -37,18 +36,20 @@ public class AccountTest extends AbstractActorSystemTest {
     AccountId debtor = AccountId.of("Account-123456");
     AccountId creditor = AccountId.of("Account-23133");
 
-    accountRepository.tell(new Save("debtors-account", debtor, BigDecimal.TEN, BigDecimal.ZERO), noSender());
-    accountRepository.tell(new Save("creditors-account",creditor, BigDecimal.ONE, BigDecimal.ZERO), noSender());
+    accountRepository.tell(
+      new Save("debtors-account", debtor, Money.of("10", "EUR"), Money.of("0", "EUR")), noSender());
+    accountRepository.tell(
+      new Save("creditors-account",creditor, Money.of("1", "EUR"), Money.of("0", "EUR")), noSender());
 
     ActorRef transfer = newTransfer();
 
-    transfer.tell(new ExecuteTransfer(new BigDecimal("5"), creditor, debtor), probe.getRef());
+    transfer.tell(new ExecuteTransfer(Money.of("5", "EUR"), creditor, debtor), probe.getRef());
 
     probe.expectMsgClass(TransferInitiated.class);
     probe.expectMsgClass(TransferCompleted.class);
 
-    assertAccountOverview(probe, debtor, new BigDecimal("5"), BigDecimal.ZERO, 0);
-    assertAccountOverview(probe, creditor, new BigDecimal("6"), BigDecimal.ZERO, 0);
+    assertAccountOverview(probe, debtor, Money.of("5", "EUR"), Money.of("0", "EUR"), 0);
+    assertAccountOverview(probe, creditor, Money.of("6", "EUR"), Money.of("0", "EUR"), 0);
   }
 
   @Test
@@ -57,12 +58,13 @@ public class AccountTest extends AbstractActorSystemTest {
     AccountId debtor = AccountId.of("Account-123456");
     AccountId creditor = AccountId.of("Account-23133");
 
-    accountRepository.tell(new Save("debtors-account",debtor, BigDecimal.TEN, new BigDecimal("6")), noSender());
-    accountRepository.tell(new Save("creditors-account", creditor, BigDecimal.ONE, BigDecimal.ZERO), noSender());
+    accountRepository.tell(new Save("debtors-account",debtor, Money.of("10", "EUR"), Money.of("6", "EUR")), noSender());
+    accountRepository.tell(
+      new Save("creditors-account", creditor, Money.of("1", "EUR"), Money.of("0", "EUR")), noSender());
 
     ActorRef transfer = newTransfer();
 
-    transfer.tell(new ExecuteTransfer(new BigDecimal("5"), creditor, debtor), probe.getRef());
+    transfer.tell(new ExecuteTransfer(Money.of("5", "EUR"), creditor, debtor), probe.getRef());
 
     probe.expectMsgClass(TransferInitiated.class);
     TransferFailed transferFailed = probe.expectMsgClass(TransferFailed.class);
@@ -82,8 +84,8 @@ public class AccountTest extends AbstractActorSystemTest {
   private void assertAccountOverview(
     TestKit probe,
     AccountId accountId,
-    BigDecimal balance,
-    BigDecimal blocked,
+    Money balance,
+    Money blocked,
     int pendingTransfers
   ) {
     accountOverview(accountId, probe);
@@ -0,0 +1,166 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.transfer.BulkTransfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferFinished;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferInitiated;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferLine;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferRejected;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.BulkTransferResults;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.ExecuteBulkTransfer;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.GetBulkTransferResults;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.LineResult;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol.LineStatus;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferFailed;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static akka.actor.ActorRef.noSender;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class BulkTransferTest extends AbstractActorSystemTest {
+
+  private final AccountId debtor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId otherDebtor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId creditor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId otherCreditor = AccountId.of("Account-" + UUID.randomUUID());
+  private final TransferId bulkTransferId = new TransferId("BulkTransfer-" + UUID.randomUUID());
+  private ActorRef accountRepository;
+  private ActorRef manager;
+
+  @Override
+  protected void before() {
+    accountRepository = system().actorOf(InMemoryAccountRepository.props(), "account-repository");
+    manager = system().actorOf(
+      TransferManager.props(BulkTransfer.props(accountRepository)), "bulk-manager-" + UUID.randomUUID());
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(new Save("other-debtors-account", otherDebtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(new Save("creditors-account", creditor, eur("1"), eur("0")), noSender());
+    accountRepository.tell(new Save("other-creditors-account", otherCreditor, eur("1"), eur("0")), noSender());
+  }
+
+  @Test
+  public void thatLinesAreBookedPerAccountAndReported() {
+    TestKit probe = new TestKit(system());
+    ExecuteBulkTransfer execute = new ExecuteBulkTransfer(Arrays.asList(
+      new BulkTransferLine(debtor, creditor, eur("4")),
+      new BulkTransferLine(debtor, otherCreditor, eur("5")),
+      // exceeds the remaining balance of the debtor
+      new BulkTransferLine(debtor, creditor, eur("3")),
+      new BulkTransferLine(otherDebtor, creditor, eur("2"))
+    ));
+
+    manager.tell(new Forward(bulkTransferId, execute), probe.getRef());
+
+    probe.expectMsgClass(BulkTransferInitiated.class);
+    BulkTransferFinished finished =
+      probe.expectMsgClass(FiniteDuration.create(10, TimeUnit.SECONDS), BulkTransferFinished.class);
+    assertThat(finished.completed()).extracting(TransferCompleted::transferId).containsExactly(
+      new TransferId(bulkTransferId.value() + "-0"),
+      new TransferId(bulkTransferId.value() + "-1"),
+      new TransferId(bulkTransferId.value() + "-3"));
+    assertThat(finished.failed()).hasSize(1);
+    assertThat(finished.failed().get(0).reason()).isEqualTo("Not enough balance!");
+
+    assertAccountOverview(probe, debtor, eur("1"), 0);
+    assertAccountOverview(probe, otherDebtor, eur("8"), 0);
+    assertAccountOverview(probe, creditor, eur("7"), 0);
+    assertAccountOverview(probe, otherCreditor, eur("6"), 0);
+
+    // the finished bulk transfer is recovered to answer
+    manager.tell(new Forward(bulkTransferId, new GetBulkTransferResults(1, 2)), probe.getRef());
+    BulkTransferResults results = probe.expectMsgClass(BulkTransferResults.class);
+    assertThat(results.results()).extracting(LineResult::line, LineResult::status).containsExactly(
+      tuple(1, LineStatus.SUCCEEDED),
+      tuple(2, LineStatus.FAILED));
+  }
+
+  @Test
+  public void thatLinesOfUnknownAccountsFailAndAreRefunded() {
+    TestKit probe = new TestKit(system());
+    AccountId unknown = AccountId.of("Account-" + UUID.randomUUID());
+    ExecuteBulkTransfer execute = new ExecuteBulkTransfer(Arrays.asList(
+      new BulkTransferLine(debtor, creditor, eur("4")),
+      new BulkTransferLine(debtor, unknown, eur("5")),
+      new BulkTransferLine(unknown, creditor, eur("2"))
+    ));
+
+    manager.tell(new Forward(bulkTransferId, execute), probe.getRef());
+
+    probe.expectMsgClass(BulkTransferInitiated.class);
+    BulkTransferFinished finished =
+      probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), BulkTransferFinished.class);
+    assertThat(finished.completed()).hasSize(1);
+    assertThat(finished.failed()).extracting(TransferFailed::reason).containsExactly(
+      "Creditor account not found, refunded!",
+      "Debtor account not found!");
+
+    assertAccountOverview(probe, debtor, eur("6"), 0);
+    assertAccountOverview(probe, creditor, eur("5"), 0);
+  }
+
+  @Test
+  public void thatLinesRejectedByTheCreditorAreRefunded() {
+    TestKit probe = new TestKit(system());
+    AccountId dollarCreditor = AccountId.of("Account-" + UUID.randomUUID());
+    accountRepository.tell(
+      new Save("dollar-creditors-account", dollarCreditor, Money.of("1", "USD"), Money.of("0", "USD")), noSender());
+    ExecuteBulkTransfer execute = new ExecuteBulkTransfer(Arrays.asList(
+      new BulkTransferLine(debtor, creditor, eur("4")),
+      new BulkTransferLine(debtor, dollarCreditor, eur("5")),
+      new BulkTransferLine(otherDebtor, dollarCreditor, Money.of("2", "USD"))
+    ));
+
+    manager.tell(new Forward(bulkTransferId, execute), probe.getRef());
+
+    probe.expectMsgClass(BulkTransferInitiated.class);
+    BulkTransferFinished finished =
+      probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), BulkTransferFinished.class);
+    assertThat(finished.completed()).hasSize(1);
+    assertThat(finished.failed()).extracting(TransferFailed::reason).containsExactly(
+      "Currency mismatch! Refunded!",
+      "Currency mismatch!");
+
+    assertAccountOverview(probe, debtor, eur("6"), 0);
+    assertAccountOverview(probe, otherDebtor, eur("10"), 0);
+    assertAccountOverview(probe, dollarCreditor, Money.of("1", "USD"), 0);
+  }
+
+  @Test
+  public void thatEmptyBulkTransfersAreRejected() {
+    TestKit probe = new TestKit(system());
+
+    manager.tell(new Forward(bulkTransferId, new ExecuteBulkTransfer(Collections.emptyList())), probe.getRef());
+
+    probe.expectMsgClass(BulkTransferRejected.class);
+  }
+
+  private void assertAccountOverview(TestKit probe, AccountId accountId, Money balance, int pendingTransfers) {
+    accountRepository.tell(
+      new AccountRepositoryProtocol.Forward(accountId, GetAccountOverview.instance()), probe.getRef());
+    AccountOverview overview = probe.expectMsgClass(AccountOverview.class);
+    assertThat(overview.balance()).isEqualTo(balance);
+    assertThat(overview.pendingTransfers()).isEqualTo(pendingTransfers);
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+}
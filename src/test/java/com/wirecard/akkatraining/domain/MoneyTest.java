@@ -0,0 +1,46 @@
+package com.wirecard.akkatraining.domain;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MoneyTest {
+
+  private static final Currency eur = Currency.getInstance("EUR");
+
+  @Test
+  public void thatAmountsAreKeptInMinorUnits() {
+    Money money = Money.of("12.3", "EUR");
+
+    assertThat(money.minorUnits()).isEqualTo(1230L);
+    assertThat(money.toBigDecimal()).isEqualTo(new BigDecimal("12.30"));
+    assertThat(money).isEqualTo(Money.ofMinor(1230, eur));
+    assertThat(money.toString()).isEqualTo("12.30 EUR");
+  }
+
+  @Test
+  public void thatArithmeticIsExact() {
+    Money money = Money.of("0.10", "EUR").plus(Money.of("0.20", "EUR"));
+
+    assertThat(money).isEqualTo(Money.of("0.30", "EUR"));
+    assertThat(money.minus(Money.of("0.31", "EUR")).isNegative()).isTrue();
+    assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE, eur).plus(Money.ofMinor(1, eur)))
+      .isInstanceOf(ArithmeticException.class);
+    assertThatThrownBy(() -> Money.of("0.001", "EUR")).isInstanceOf(ArithmeticException.class);
+  }
+
+  @Test
+  public void thatCurrenciesAreNotMixed() {
+    Money eur = Money.of("1", "EUR");
+    Money usd = Money.of("1", "USD");
+
+    assertThat(eur.sameCurrencyAs(usd)).isFalse();
+    assertThat(eur).isNotEqualTo(usd);
+    assertThatThrownBy(() -> eur.plus(usd)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> eur.compareTo(usd)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,37 @@
+package com.wirecard.akkatraining.domain;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SnapshotPolicyTest {
+
+  @Test
+  public void thatBigStatesAreSnapshottedLessOften() {
+    SnapshotPolicy policy = SnapshotPolicy.scaledByStateSize(100, 0.1);
+
+    assertThat(policy.shouldSnapshot(100, 0, 0)).isTrue();
+    assertThat(policy.shouldSnapshot(100, 0, 50_000)).isFalse();
+    assertThat(policy.shouldSnapshot(5_000, 0, 50_000)).isTrue();
+  }
+
+  @Test
+  public void thatPolicyIsReadFromConfig() {
+    SnapshotPolicy policy = SnapshotPolicy.fromConfig(ConfigFactory.parseString(
+      "events = 10, events-per-state-entry = 0, interval = 1s"));
+
+    assertThat(policy.shouldSnapshot(10, 0, 0)).isTrue();
+    assertThat(policy.shouldSnapshot(1, 1_000, 0)).isTrue();
+    assertThat(policy.shouldSnapshot(0, 1_000, 0)).isFalse();
+    assertThat(policy.shouldSnapshot(9, 999, 0)).isFalse();
+  }
+
+  @Test
+  public void thatZeroTurnsSnapshotsOff() {
+    SnapshotPolicy policy = SnapshotPolicy.fromConfig(ConfigFactory.parseString(
+      "events = 0, events-per-state-entry = 0, interval = 0s"));
+
+    assertThat(policy.shouldSnapshot(Long.MAX_VALUE, Long.MAX_VALUE, 0)).isFalse();
+  }
+}
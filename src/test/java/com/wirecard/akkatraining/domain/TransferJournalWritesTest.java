@@ -0,0 +1,107 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.persistence.AtomicWrite;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.ExecuteTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
+import com.wirecard.akkatraining.infrastructure.journal.MappedJournal;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.Future;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static akka.actor.ActorRef.noSender;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferJournalWritesTest {
+
+  private final AccountId debtor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId creditor = AccountId.of("Account-" + UUID.randomUUID());
+  private Path directory;
+  private ActorSystem system;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("transfer-journal-writes-test");
+    system = ActorSystem.create("transfer-journal-writes-test", ConfigFactory.parseString(
+      "akka.persistence.journal.plugin = \"counting-journal\"\n" +
+        "counting-journal = ${akka-training.mapped-journal}\n" +
+        "counting-journal.class = \"" + CountingJournal.class.getName() + "\"\n" +
+        "counting-journal.dir = \"" + directory + "\"\n")
+      .withFallback(ConfigFactory.load())
+      .resolve());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TestKit.shutdownActorSystem(system);
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void thatACompletedTransferTakesFourJournalWrites() {
+    ActorRef accountRepository = system.actorOf(InMemoryAccountRepository.props(), "account-repository");
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(new Save("creditors-account", creditor, eur("1"), eur("0")), noSender());
+    ActorRef manager = system.actorOf(TransferManager.props(accountRepository), "transfer-manager");
+    TestKit probe = new TestKit(system);
+    TransferId transferId = new TransferId("Transfer-" + UUID.randomUUID());
+
+    manager.tell(new Forward(transferId, new ExecuteTransfer(eur("5"), creditor, debtor)), probe.getRef());
+    probe.expectMsgClass(FiniteDuration.create(10, TimeUnit.SECONDS), TransferCompleted.class);
+
+    // initiation, allocation, credit confirmation, debit confirmation with the completion
+    assertThat(CountingJournal.writes(transferId.value())).isEqualTo(4);
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+
+  /**
+   * Counts the atomic writes per persistence id, each is one journal round trip of the writer.
+   */
+  public static class CountingJournal extends MappedJournal {
+
+    private static final Map<String, LongAdder> writes = new ConcurrentHashMap<>();
+
+    public CountingJournal(Config config) {
+      super(config);
+    }
+
+    static long writes(String persistenceId) {
+      LongAdder count = writes.get(persistenceId);
+      return count == null ? 0 : count.sum();
+    }
+
+    @Override
+    public Future<Iterable<Optional<Exception>>> doAsyncWriteMessages(Iterable<AtomicWrite> messages) {
+      messages.forEach(write -> writes.computeIfAbsent(write.persistenceId(), id -> new LongAdder()).increment());
+      return super.doAsyncWriteMessages(messages);
+    }
+  }
+}
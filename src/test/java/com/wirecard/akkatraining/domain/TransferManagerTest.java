@@ -0,0 +1,196 @@
+package com.wirecard.akkatraining.domain;
+
+import akka.actor.ActorRef;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AllocateMoney;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Debit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.DebitFailed;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.MoneyAllocated;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.transfer.Transfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerSettings;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.ExecuteTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferFailed;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferInitiated;
+import com.wirecard.akkatraining.domain.transfer.TransferSettings;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static akka.actor.ActorRef.noSender;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferManagerTest extends AbstractActorSystemTest {
+
+  private final AccountId debtor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId creditor = AccountId.of("Account-" + UUID.randomUUID());
+
+  @Test
+  public void thatFinishedTransfersAreStopped() {
+    ActorRef accountRepository = system().actorOf(InMemoryAccountRepository.props(), "account-repository");
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(new Save("creditors-account", creditor, eur("1"), eur("0")), noSender());
+    ActorRef manager = system().actorOf(TransferManager.props(accountRepository), "manager-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), creditor, debtor)), probe.getRef());
+
+    probe.expectMsgClass(TransferInitiated.class);
+    ActorRef transfer = probe.getLastSender();
+    probe.watch(transfer);
+    probe.expectMsgClass(FiniteDuration.create(10, TimeUnit.SECONDS), TransferCompleted.class);
+    probe.expectTerminated(transfer);
+  }
+
+  @Test
+  public void thatTransfersOfUnknownAccountsFailWithoutRedelivery() {
+    ActorRef accountRepository = system().actorOf(InMemoryAccountRepository.props(), "account-repository");
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    ActorRef manager = system().actorOf(TransferManager.props(accountRepository), "manager-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+    // well below the minimum redelivery backoff
+    FiniteDuration failFast = FiniteDuration.create(3, TimeUnit.SECONDS);
+
+    AccountId unknown = AccountId.of("Account-" + UUID.randomUUID());
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), creditor, unknown)), probe.getRef());
+    probe.expectMsgClass(TransferInitiated.class);
+    assertThat(probe.expectMsgClass(failFast, TransferFailed.class).reason()).isEqualTo("Debtor account not found!");
+
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), unknown, debtor)), probe.getRef());
+    probe.expectMsgClass(TransferInitiated.class);
+    assertThat(probe.expectMsgClass(failFast, TransferFailed.class).reason())
+      .isEqualTo("Creditor account not found, refunded!");
+    accountRepository.tell(new AccountRepositoryProtocol.Forward(debtor, GetAccountOverview.instance()), probe.getRef());
+    AccountOverview overview = probe.expectMsgClass(AccountOverview.class);
+    assertThat(overview.balance()).isEqualTo(eur("10"));
+    assertThat(overview.pendingTransfers()).isEqualTo(0);
+  }
+
+  @Test
+  public void thatCreditsInAnotherCurrencyAreRefunded() {
+    ActorRef accountRepository = system().actorOf(InMemoryAccountRepository.props(), "account-repository");
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(
+      new Save("creditors-account", creditor, Money.of("1", "USD"), Money.of("0", "USD")), noSender());
+    ActorRef manager = system().actorOf(TransferManager.props(accountRepository), "manager-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), creditor, debtor)), probe.getRef());
+
+    probe.expectMsgClass(TransferInitiated.class);
+    assertThat(probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), TransferFailed.class).reason())
+      .isEqualTo("Currency mismatch! Refunded!");
+    accountRepository.tell(new AccountRepositoryProtocol.Forward(debtor, GetAccountOverview.instance()), probe.getRef());
+    AccountOverview overview = probe.expectMsgClass(AccountOverview.class);
+    assertThat(overview.balance()).isEqualTo(eur("10"));
+    assertThat(overview.pendingTransfers()).isEqualTo(0);
+  }
+
+  @Test
+  public void thatRejectedDebitsFailTheTransfer() {
+    TestKit accountRepository = new TestKit(system());
+    ActorRef manager = system().actorOf(
+      TransferManager.props(Transfer.props(accountRepository.getRef())), "manager-" + UUID.randomUUID());
+    TestKit probe = new TestKit(system());
+    TransferId transferId = transferId();
+
+    manager.tell(new Forward(transferId, new ExecuteTransfer(eur("5"), creditor, debtor)), probe.getRef());
+    probe.expectMsgClass(TransferInitiated.class);
+    long allocation = expectAllocation(accountRepository).deliveryId();
+    ActorRef transfer = accountRepository.getLastSender();
+    probe.watch(transfer);
+    transfer.tell(new MoneyAllocated(allocation, transferId, debtor, creditor, eur("5")), noSender());
+    for (Delivery delivery : accountRepository.receiveN(2).stream()
+      .map(forward -> (Delivery) ((AccountRepositoryProtocol.Forward) forward).command())
+      .collect(Collectors.toList())) {
+      if (delivery.message() instanceof Debit) {
+        transfer.tell(new DebitFailed(delivery.deliveryId(), transferId, "No allocated money"), noSender());
+      }
+    }
+
+    assertThat(probe.expectMsgClass(FiniteDuration.create(3, TimeUnit.SECONDS), TransferFailed.class).reason())
+      .isEqualTo("No allocated money");
+    probe.expectTerminated(transfer);
+  }
+
+  @Test
+  public void thatRedeliveringTransfersArePassivated() {
+    TestKit accountRepository = new TestKit(system());
+    // the configured ratio of passivate-after to the redelivery backoff, scaled down
+    TransferSettings configured = TransferSettings.fromConfig(system().settings().config());
+    TransferSettings transferSettings = configured
+      .withPassivateAfter(configured.passivateAfter().div(200))
+      .withRedelivery(configured.redelivery()
+        .withMinBackoff(configured.redelivery().minBackoff().div(200))
+        .withMaxBackoff(configured.redelivery().maxBackoff().div(200)));
+    ActorRef manager = system().actorOf(
+      TransferManager.props(Transfer.props(accountRepository.getRef(), transferSettings)),
+      "manager-" + UUID.randomUUID());
+
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), creditor, debtor)), noSender());
+    expectAllocation(accountRepository);
+    ActorRef transfer = accountRepository.getLastSender();
+
+    // the accounts never answer, the transfer keeps redelivering until it is passivated
+    TestKit probe = new TestKit(system());
+    probe.watch(transfer);
+    probe.expectTerminated(FiniteDuration.create(5, TimeUnit.SECONDS), transfer);
+  }
+
+  @Test
+  public void thatUnfinishedTransfersAreResumedAndWokenUp() {
+    TestKit accountRepository = new TestKit(system());
+    TransferSettings transferSettings = TransferSettings.fromConfig(system().settings().config())
+      .withPassivateAfter(FiniteDuration.create(300, TimeUnit.MILLISECONDS));
+    TransferManagerSettings managerSettings = TransferManagerSettings.fromConfig(system().settings().config())
+      .withWakeUpAfter(FiniteDuration.create(300, TimeUnit.MILLISECONDS));
+    Props transferProps = Transfer.props(accountRepository.getRef(), transferSettings);
+    Props managerProps = TransferManager.props(transferProps, managerSettings);
+    String managerName = "manager-" + UUID.randomUUID();
+    ActorRef manager = system().actorOf(managerProps, managerName);
+
+    manager.tell(new Forward(transferId(), new ExecuteTransfer(eur("5"), creditor, debtor)), noSender());
+    expectAllocation(accountRepository);
+
+    // the accounts never answer, the passivated transfer is woken up and redelivers
+    expectAllocation(accountRepository);
+
+    TestKit probe = new TestKit(system());
+    probe.watch(manager);
+    manager.tell(PoisonPill.getInstance(), noSender());
+    probe.expectTerminated(manager);
+    system().actorOf(managerProps, managerName);
+    expectAllocation(accountRepository);
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+
+  private static TransferId transferId() {
+    return new TransferId("Transfer-" + UUID.randomUUID());
+  }
+
+  private Delivery expectAllocation(TestKit accountRepository) {
+    AccountRepositoryProtocol.Forward forward = accountRepository.expectMsgClass(
+      FiniteDuration.create(10, TimeUnit.SECONDS), AccountRepositoryProtocol.Forward.class);
+    assertThat(forward.accountId()).isEqualTo(debtor);
+    Delivery delivery = (Delivery) forward.command();
+    assertThat(delivery.message()).isInstanceOf(AllocateMoney.class);
+    return delivery;
+  }
+}
@@ -0,0 +1,55 @@
+package com.wirecard.akkatraining.domain.view;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountViewTest {
+
+  private final AccountId accountId = AccountId.of("Account-1");
+  private final AccountId other = AccountId.of("Account-2");
+  private final Account account = Account.builder()
+    .accountId(accountId)
+    .accountName("account")
+    .balance(BigDecimal.TEN)
+    .maxTurnovers(3)
+    .build();
+
+  @Test
+  public void thatAllocatedBalanceFollowsPendingTransfers() {
+    account.addPendingTransfer(pendingTransfer("Transfer-1", "1.50"));
+    account.addPendingTransfer(pendingTransfer("Transfer-2", "2.25"));
+    account.removePendingTransfer(new TransferId("Transfer-1"));
+    account.removePendingTransfer(new TransferId("Transfer-unknown"));
+
+    assertThat(account.allocatedBalance()).isEqualTo(new BigDecimal("2.25"));
+    assertThat(account.summary().pendingTransfers()).isEqualTo(1);
+  }
+
+  @Test
+  public void thatTurnoverTotalsCountTurnoversBeyondTheRetainedOnes() {
+    for (int i = 1; i <= 5; i++) {
+      account.addTurnover(new Turnover(accountId, BigDecimal.valueOf(i), other));
+    }
+    account.addTurnover(new Turnover(accountId, BigDecimal.valueOf(-4), other));
+
+    AccountSummary summary = account.summary();
+    assertThat(summary.turnovers()).isEqualTo(6);
+    assertThat(summary.credited()).isEqualByComparingTo("15");
+    assertThat(summary.debited()).isEqualByComparingTo("4");
+    assertThat(account.turnovers()).extracting(Turnover::amount)
+      .containsExactly(BigDecimal.valueOf(4), BigDecimal.valueOf(5), BigDecimal.valueOf(-4));
+    assertThat(account.turnovers(1, 5)).extracting(Turnover::amount)
+      .containsExactly(BigDecimal.valueOf(5), BigDecimal.valueOf(4));
+  }
+
+  private PendingTransfer pendingTransfer(String transferId, String amount) {
+    return new PendingTransfer(new TransferId(transferId), Money.of(amount, "EUR"), other);
+  }
+}
@@ -0,0 +1,77 @@
+package com.wirecard.akkatraining.infrastructure.eventbus;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Sink;
+import akka.testkit.javadsl.TestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DomainEventBusTest {
+
+  private ActorSystem system;
+  private Materializer materializer;
+
+  @Before
+  public void setUp() {
+    system = ActorSystem.create();
+    materializer = ActorMaterializer.create(system);
+  }
+
+  @After
+  public void tearDown() {
+    TestKit.shutdownActorSystem(system);
+  }
+
+  @Test
+  public void thatSubscribersGetOnlyEventsOfTheirClass() throws Exception {
+    DomainEventBus bus = DomainEventBus.get(system);
+    CompletionStage<List<Integer>> integers = bus.events(Integer.class).take(3).runWith(Sink.seq(), materializer);
+    awaitSubscription(bus);
+
+    bus.publish("ignored");
+    bus.publish(1);
+    bus.publish(2L);
+    bus.publish(2);
+    bus.publish(3);
+
+    assertThat(integers.toCompletableFuture().get(5, TimeUnit.SECONDS)).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void thatSlowSubscriberDoesNotHoldBackOthers() throws Exception {
+    DomainEventBus bus = DomainEventBus.get(system);
+    CountDownLatch slowSubscriberBlocked = new CountDownLatch(1);
+    bus.events(Integer.class, 10, OverflowStrategy.dropHead())
+      .runWith(Sink.foreach(i -> slowSubscriberBlocked.await(10, TimeUnit.SECONDS)), materializer);
+    CompletionStage<List<Integer>> fast = bus.events(Integer.class).take(5_000).runWith(Sink.seq(), materializer);
+    awaitSubscription(bus);
+
+    for (int i = 0; i < 5_000; i++) {
+      bus.publish(i);
+    }
+
+    assertThat(fast.toCompletableFuture().get(10, TimeUnit.SECONDS)).hasSize(5_000);
+    slowSubscriberBlocked.countDown();
+  }
+
+  // the hub attaches subscribers asynchronously, events published before are not delivered to them
+  private void awaitSubscription(DomainEventBus bus) throws Exception {
+    CompletionStage<String> probe = bus.events(String.class).filter("subscribed"::equals).runWith(Sink.head(), materializer);
+    new TestKit(system).awaitAssert(() -> {
+      bus.publish("subscribed");
+      assertThat(probe.toCompletableFuture().isDone()).isTrue();
+      return null;
+    });
+  }
+}
@@ -0,0 +1,167 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.persistence.query.EventEnvelope;
+import akka.persistence.query.NoOffset;
+import akka.persistence.query.PersistenceQuery;
+import akka.persistence.query.Sequence;
+import akka.stream.ActorMaterializer;
+import akka.stream.javadsl.Sink;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.Delivery;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.Account;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.AccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Create;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.Credit;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.CreditSuccessful;
+import com.wirecard.akkatraining.domain.account.AccountProtocol.GetAccountOverview;
+import com.wirecard.akkatraining.domain.account.AccountSettings;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedJournalTest {
+
+  private static final String tag = AccountProtocol.Event.class.getName();
+
+  private final String accountName = "Account-mapped";
+  private Path directory;
+  private ActorSystem system;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("mapped-journal-test");
+    system = start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TestKit.shutdownActorSystem(system);
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void thatAccountsAreRecoveredFromAllSegments() throws Exception {
+    TestKit probe = new TestKit(system);
+    ActorRef account = createAccount(probe);
+    credit(probe, account, 30);
+
+    TestKit.shutdownActorSystem(system);
+    system = start();
+    probe = new TestKit(system);
+    ActorRef recovered = system.actorOf(accountProps(), accountName);
+    recovered.tell(GetAccountOverview.instance(), probe.getRef());
+
+    probe.expectMsg(new AccountOverview(eur("40"), eur("0"), 0));
+    try (Stream<Path> segments = Files.list(directory.resolve("journal"))) {
+      assertThat(segments.count()).isGreaterThan(1);
+    }
+  }
+
+  @Test
+  public void thatAccountsAreRecoveredAfterTheirEventsWereDeleted() throws Exception {
+    TestKit.shutdownActorSystem(system);
+    // every 5 events a snapshot, the events it covers are deleted
+    String deletingSnapshots = "akka-training.account.snapshot {\n" +
+      "  events = 5\n" +
+      "  events-per-state-entry = 0\n" +
+      "  delete-events = on\n" +
+      "}\n";
+    system = start(deletingSnapshots);
+    TestKit probe = new TestKit(system);
+    ActorRef account = createAccount(probe);
+    credit(probe, account, 12);
+
+    for (int restart = 0; restart < 2; restart++) {
+      TestKit.shutdownActorSystem(system);
+      system = start(deletingSnapshots);
+      probe = new TestKit(system);
+      account = system.actorOf(accountProps(), accountName);
+      credit(probe, account, 1);
+    }
+
+    account.tell(GetAccountOverview.instance(), probe.getRef());
+    probe.expectMsg(new AccountOverview(eur("24"), eur("0"), 0));
+  }
+
+  @Test
+  public void thatTagQueriesContinueAfterTheGivenOffset() throws Exception {
+    TestKit probe = new TestKit(system);
+    ActorRef account = createAccount(probe);
+    credit(probe, account, 3);
+    MappedReadJournal readJournal = PersistenceQuery.get(system)
+      .getReadJournalFor(MappedReadJournal.class, MappedReadJournal.Identifier);
+    ActorMaterializer materializer = ActorMaterializer.create(system);
+
+    List<EventEnvelope> all = readJournal.currentEventsByTag(tag, NoOffset.getInstance())
+      .runWith(Sink.seq(), materializer).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    List<EventEnvelope> afterSecond = readJournal.currentEventsByTag(tag, new Sequence(2))
+      .runWith(Sink.seq(), materializer).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    CompletionStage<List<EventEnvelope>> live = readJournal.eventsByTag(tag, new Sequence(4))
+      .take(1)
+      .runWith(Sink.seq(), materializer);
+    credit(probe, account, 1);
+
+    assertThat(all).extracting(EventEnvelope::offset)
+      .containsExactly(new Sequence(1), new Sequence(2), new Sequence(3), new Sequence(4));
+    assertThat(all).extracting(EventEnvelope::sequenceNr).containsExactly(1L, 2L, 3L, 4L);
+    assertThat(afterSecond).extracting(EventEnvelope::offset).containsExactly(new Sequence(3), new Sequence(4));
+    List<EventEnvelope> next = live.toCompletableFuture().get(5, TimeUnit.SECONDS);
+    assertThat(next).extracting(EventEnvelope::offset).containsExactly(new Sequence(5));
+    assertThat(next.get(0).event()).isInstanceOf(CreditSuccessful.class);
+  }
+
+  private ActorSystem start() {
+    return start("");
+  }
+
+  private ActorSystem start(String config) {
+    return ActorSystem.create("mapped-journal-test", ConfigFactory.parseString(config +
+      "akka.persistence.journal.plugin = \"akka-training.mapped-journal\"\n" +
+        "akka-training.mapped-journal.dir = \"" + directory.resolve("journal") + "\"\n" +
+        // a few events per segment
+        "akka-training.mapped-journal.segment-size = 4 KiB\n" +
+        "akka.persistence.snapshot-store.local.dir = \"" + directory.resolve("snapshots") + "\"\n")
+      .withFallback(ConfigFactory.load()));
+  }
+
+  private ActorRef createAccount(TestKit probe) {
+    ActorRef account = system.actorOf(accountProps(), accountName);
+    account.tell(new Create(accountName, eur("10"), eur("0")), probe.getRef());
+    return account;
+  }
+
+  private Props accountProps() {
+    return Account.props(AccountSettings.fromConfig(system.settings().config()));
+  }
+
+  private static void credit(TestKit probe, ActorRef account, int credits) {
+    for (int i = 0; i < credits; i++) {
+      Credit credit = new Credit(new TransferId("Transfer-" + System.nanoTime()), eur("1"));
+      account.tell(new Delivery(i, credit), probe.getRef());
+      probe.expectMsgClass(CreditSuccessful.class);
+    }
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+}
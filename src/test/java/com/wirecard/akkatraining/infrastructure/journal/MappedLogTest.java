@@ -0,0 +1,194 @@
+package com.wirecard.akkatraining.infrastructure.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedLogTest {
+
+  private static final int segmentSize = 4096;
+  private static final String persistenceId = "Account-log";
+
+  private Path directory;
+  private MappedLog log;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("mapped-log-test");
+    log = open();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    log.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void thatRecordsAfterTheLastCommitAreDropped() throws Exception {
+    append(event(1, 10), event(2, 10));
+    log.close();
+    int committedEnd = size(event(1, 10), event(2, 10), JournalRecord.commit());
+    // a group commit torn by a crash: a complete record without its commit record, then garbage
+    writeToSegment(committedEnd, concat(event(3, 10).encode(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9}));
+
+    log = open();
+
+    assertThat(replayed()).containsExactly(1L, 2L);
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(2);
+    append(event(3, 20));
+    log.close();
+    log = open();
+    assertThat(replayed()).containsExactly(1L, 2L, 3L);
+    assertThat(payloadSizes()).containsExactly(10, 10, 20);
+  }
+
+  @Test
+  public void thatTheTornTailIsZeroed() throws Exception {
+    append(event(1, 10));
+    log.close();
+    int committedEnd = size(event(1, 10), JournalRecord.commit());
+    // the last page of the torn write reached the disk, the ones before it did not
+    writeToSegment(segmentSize - 16, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16});
+    writeToSegment(committedEnd, event(2, 10).encode());
+
+    log = open();
+
+    byte[] segment = Files.readAllBytes(directory.resolve(Segment.fileName(0)));
+    assertThat(Arrays.copyOfRange(segment, committedEnd, segmentSize)).containsOnly((byte) 0);
+    assertThat(replayed()).containsExactly(1L);
+  }
+
+  @Test
+  public void thatAFailedGroupCommitIsRolledBack() throws Exception {
+    append(event(1, 100));
+    // the next segment cannot be created, the group commit fails after its first record was written
+    Path blocked = Files.createDirectory(directory.resolve(Segment.fileName(1)));
+
+    CompletionStage<Void> failed = log.append(Arrays.asList(event(2, 1000), event(3, 3500)));
+
+    assertThatThrownBy(() -> failed.toCompletableFuture().get(5, TimeUnit.SECONDS))
+      .isInstanceOf(ExecutionException.class);
+    Files.delete(blocked);
+    append(event(2, 10));
+    assertThat(replayed()).containsExactly(1L, 2L);
+    log.close();
+    log = open();
+    assertThat(replayed()).containsExactly(1L, 2L);
+    assertThat(payloadSizes()).containsExactly(100, 10);
+  }
+
+  @Test
+  public void thatDeletedEventsAreNotReplayed() throws Exception {
+    append(event(1, 10), event(2, 10), event(3, 10));
+    log.deleteTo(persistenceId, 2).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(replayed()).containsExactly(3L);
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(3);
+    log.close();
+    log = open();
+    assertThat(replayed()).containsExactly(3L);
+    log.deleteTo(persistenceId, 3).toCompletableFuture().get(5, TimeUnit.SECONDS);
+    assertThat(replayed()).isEmpty();
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(3);
+    log.close();
+    log = open();
+    assertThat(replayed()).isEmpty();
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(3);
+  }
+
+  @Test
+  public void thatFullyDeletedPersistenceIdsOnlyKeepTheirHighestSequenceNr() throws Exception {
+    append(event(1, 10), event(2, 10));
+    log.deleteTo(persistenceId, 2).toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+    assertThat(log.indexedPersistenceIds()).isEqualTo(0);
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(2);
+    log.close();
+    log = open();
+    assertThat(log.indexedPersistenceIds()).isEqualTo(0);
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(2);
+    append(event(3, 10));
+    assertThat(replayed()).containsExactly(3L);
+    assertThat(log.highestSequenceNr(persistenceId)).isEqualTo(3);
+  }
+
+  @Test
+  public void thatAppendsAfterCloseFail() throws Exception {
+    log.close();
+
+    CompletionStage<Void> rejected = log.append(Collections.singletonList(event(1, 10)));
+
+    assertThatThrownBy(() -> rejected.toCompletableFuture().get(5, TimeUnit.SECONDS))
+      .hasCauseInstanceOf(IllegalStateException.class);
+    log = open();
+    assertThat(replayed()).isEmpty();
+  }
+
+  private MappedLog open() {
+    return new MappedLog(new MappedJournalSettings(directory, segmentSize, true, 16));
+  }
+
+  /**
+   * Appends the records as one group commit and waits for it.
+   */
+  private void append(JournalRecord... records) throws Exception {
+    log.append(Arrays.asList(records)).toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+
+  private List<Long> replayed() {
+    List<Long> sequenceNrs = new ArrayList<>();
+    log.replay(persistenceId, 0, Long.MAX_VALUE, Long.MAX_VALUE, record -> sequenceNrs.add(record.sequenceNr()));
+    return sequenceNrs;
+  }
+
+  private List<Integer> payloadSizes() {
+    List<Integer> sizes = new ArrayList<>();
+    log.replay(persistenceId, 0, Long.MAX_VALUE, Long.MAX_VALUE, record -> sizes.add(record.payload().length));
+    return sizes;
+  }
+
+  private void writeToSegment(int position, byte[] bytes) throws Exception {
+    try (FileChannel channel = FileChannel.open(directory.resolve(Segment.fileName(0)), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(bytes), position);
+    }
+  }
+
+  private static JournalRecord event(long sequenceNr, int payloadSize) {
+    return JournalRecord.event(persistenceId, sequenceNr, Collections.singletonList("tag"), new byte[payloadSize]);
+  }
+
+  private static int size(JournalRecord... records) {
+    int size = 0;
+    for (JournalRecord record : records) {
+      size += record.encode().length;
+    }
+    return size;
+  }
+
+  private static byte[] concat(byte[] first, byte[] second) {
+    byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, bytes, first.length, second.length);
+    return bytes;
+  }
+}
@@ -0,0 +1,114 @@
+package com.wirecard.akkatraining.infrastructure.metrics;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.japi.pf.ReceiveBuilder;
+import akka.testkit.javadsl.TestKit;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MetricsTest {
+
+  private ActorSystem system;
+
+  @Before
+  public void setUp() {
+    system = ActorSystem.create("metrics-test");
+  }
+
+  @After
+  public void tearDown() {
+    TestKit.shutdownActorSystem(system);
+  }
+
+  @Test
+  public void thatCommandsAndLatenciesAreReadThroughJmx() throws Exception {
+    Metrics metrics = Metrics.get(system);
+    AccountId accountId = AccountId.of("Account-1");
+    metrics.accountCommand(accountId);
+    metrics.accountCommand(accountId);
+    metrics.persisted(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+
+    ObjectName name = new ObjectName("com.wirecard.akkatraining:type=Metrics,name=\"metrics-test\"");
+    assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "account.commands")).isEqualTo(2L);
+    assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "account.persistLatency.count"))
+      .isEqualTo(1L);
+    assertThat(metrics.commandsOf(accountId)).isEqualTo(2);
+  }
+
+  @Test
+  public void thatTheProjectionLagIsMeasuredAgainstTheJournalHead() throws Exception {
+    Metrics metrics = Metrics.get(system);
+    String projection = "com.example.Event";
+    metrics.projectionHead(projection, () -> 5000);
+    // the read offset is only ahead by what the stream buffers hold
+    metrics.projectionRead(projection, 1200);
+    metrics.projectionApplied(projection, 1000);
+
+    ObjectName name = new ObjectName("com.wirecard.akkatraining:type=Metrics,name=\"metrics-test\"");
+    assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "projection.Event.lag")).isEqualTo(4000L);
+    assertThat(ManagementFactory.getPlatformMBeanServer().getMBeanInfo(name).getAttributes())
+      .extracting(MBeanAttributeInfo::getName)
+      .contains("projection.Event.headOffset", "projection.Event.lag", "account.hottest");
+  }
+
+  @Test
+  public void thatHotAccountsStayTrackedAmongManyColdOnes() {
+    HotAccounts hotAccounts = new HotAccounts(64);
+    AccountId hot = AccountId.of("Account-hot");
+    for (int i = 0; i < 100_000; i++) {
+      hotAccounts.increment(AccountId.of("Account-" + i));
+      if (i % 10 == 0) {
+        hotAccounts.increment(hot);
+      }
+    }
+
+    assertThat(hotAccounts.count(hot)).isGreaterThanOrEqualTo(10_000);
+    assertThat(hotAccounts.hottest(1)).startsWith("Account-hot=");
+  }
+
+  @Test
+  public void thatInstrumentedMailboxReportsItsDepth() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    ActorRef actor = system.actorOf(Props.create(Blocking.class, () -> new Blocking(blocked))
+      .withMailbox("akka-training.instrumented-mailbox"), "blocking");
+    String owner = actor.path().toStringWithoutAddress();
+
+    for (int i = 0; i < 10; i++) {
+      actor.tell(i, ActorRef.noSender());
+    }
+    // the first message blocks the actor, the others wait in its mailbox
+    new TestKit(system).awaitAssert(() -> assertThat(Metrics.get(system).mailboxDepth(owner)).isEqualTo(9));
+
+    blocked.countDown();
+    new TestKit(system).awaitAssert(() -> assertThat(Metrics.get(system).mailboxDepth(owner)).isEqualTo(0));
+  }
+
+  static class Blocking extends AbstractActor {
+
+    private final CountDownLatch blocked;
+
+    Blocking(CountDownLatch blocked) {
+      this.blocked = blocked;
+    }
+
+    @Override
+    public Receive createReceive() {
+      return ReceiveBuilder.create()
+        .matchAny(message -> blocked.await(10, TimeUnit.SECONDS))
+        .build();
+    }
+  }
+}
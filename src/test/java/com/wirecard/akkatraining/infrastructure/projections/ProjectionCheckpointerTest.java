@@ -0,0 +1,118 @@
+package com.wirecard.akkatraining.infrastructure.projections;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import com.typesafe.config.ConfigFactory;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountRepositoryProtocol.Save;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManager;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol.Forward;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.ExecuteTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol.TransferCompleted;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountRepository;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryAccountViewViewRepository;
+import com.wirecard.akkatraining.infrastructure.repository.InMemoryTransferDao;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static akka.actor.ActorRef.noSender;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectionCheckpointerTest {
+
+  private static final String transferTag = TransferProtocol.Event.class.getName();
+
+  private final AccountId debtor = AccountId.of("Account-" + UUID.randomUUID());
+  private final AccountId creditor = AccountId.of("Account-" + UUID.randomUUID());
+  private Path directory;
+  private ActorSystem system;
+  private InMemoryAccountViewViewRepository accountViews;
+  private InMemoryTransferDao transferDao;
+  private ProjectionCheckpointer checkpointer;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("projection-checkpointer-test");
+    system = start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    TestKit.shutdownActorSystem(system);
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void thatRestartedProjectionsResumeFromTheCheckpoint() {
+    ActorRef accountRepository = system.actorOf(InMemoryAccountRepository.props(), "account-repository");
+    accountRepository.tell(new Save("debtors-account", debtor, eur("10"), eur("0")), noSender());
+    accountRepository.tell(new Save("creditors-account", creditor, eur("1"), eur("0")), noSender());
+    startProjections();
+    TransferId first = transfer(accountRepository);
+    new TestKit(system).awaitAssert(() -> assertThat(transferDao.find(first)).isNotNull());
+    checkpointer.checkpoint();
+    long transferOffset = checkpointer.offset(transferTag);
+
+    TestKit.shutdownActorSystem(system);
+    system = start();
+    startProjections();
+
+    assertThat(checkpointer.offset(transferTag)).isEqualTo(transferOffset);
+    assertThat(accountViews.find(debtor).summary().turnovers()).isEqualTo(1);
+    assertThat(transferDao.find(first)).isNotNull();
+    // the accounts are recovered from the journal
+    TransferId second = transfer(system.actorOf(InMemoryAccountRepository.props(), "account-repository"));
+    new TestKit(system).awaitAssert(() -> assertThat(transferDao.find(second)).isNotNull());
+    // the first transfer is not applied again
+    assertThat(accountViews.find(debtor).summary().turnovers()).isEqualTo(2);
+  }
+
+  private ActorSystem start() {
+    return ActorSystem.create("projection-checkpointer-test", ConfigFactory.parseString(
+      "akka.persistence.journal.plugin = \"akka-training.mapped-journal\"\n" +
+        "akka-training.mapped-journal.dir = \"" + directory.resolve("journal") + "\"\n" +
+        "akka.persistence.snapshot-store.local.dir = \"" + directory.resolve("snapshots") + "\"\n" +
+        "akka-training.projection.read-journal = \"akka-training.mapped-read-journal\"\n" +
+        "akka-training.projection.checkpoint.directory = \"" + directory.resolve("projections") + "\"\n" +
+        // only the checkpoints written by the test
+        "akka-training.projection.checkpoint.interval = 1h\n")
+      .withFallback(ConfigFactory.load()));
+  }
+
+  private void startProjections() {
+    accountViews = new InMemoryAccountViewViewRepository();
+    transferDao = new InMemoryTransferDao(1000);
+    checkpointer = ProjectionCheckpointer.fromConfig(system.settings().config(), accountViews, transferDao);
+    checkpointer.restore();
+    new InMemoryAccountProjection(system, accountViews, checkpointer).runStream();
+    new InMemoryTransferProjection(system, transferDao, accountViews, checkpointer).runStream();
+  }
+
+  private TransferId transfer(ActorRef accountRepository) {
+    ActorRef manager = system.actorOf(TransferManager.props(accountRepository), "transfer-manager");
+    TestKit probe = new TestKit(system);
+    TransferId transferId = new TransferId("Transfer-" + UUID.randomUUID());
+    manager.tell(new Forward(transferId, new ExecuteTransfer(eur("1"), creditor, debtor)), probe.getRef());
+    probe.expectMsgClass(FiniteDuration.create(10, TimeUnit.SECONDS), TransferCompleted.class);
+    return transferId;
+  }
+
+  private static Money eur(String amount) {
+    return Money.of(amount, "EUR");
+  }
+}
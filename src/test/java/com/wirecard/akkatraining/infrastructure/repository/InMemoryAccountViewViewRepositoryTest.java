@@ -0,0 +1,95 @@
+package com.wirecard.akkatraining.infrastructure.repository;
+
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.view.Account;
+import com.wirecard.akkatraining.domain.view.Turnover;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryAccountViewViewRepositoryTest {
+
+  private static final int accounts = 100;
+  private static final int updates = 1_000;
+
+  private final InMemoryAccountViewViewRepository repository = new InMemoryAccountViewViewRepository();
+
+  @Test
+  public void thatConcurrentProjectionWritersAndReadersDoNotLoseUpdates() {
+    IntStream.range(0, accounts).forEach(i -> repository.add(account(accountId(i))));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    CompletableFuture<Void> pendingTransfersWriter = CompletableFuture.runAsync(() -> forEachUpdate((accountId, i) ->
+      repository.update(accountId, account -> account.addPendingTransfer(
+        new PendingTransfer(new TransferId(accountId.value() + "-" + i), Money.of("1", "EUR"), accountId)))), executor);
+    CompletableFuture<Void> turnoverWriter = CompletableFuture.runAsync(() -> forEachUpdate((accountId, i) ->
+      repository.update(accountId, account -> account.addTurnover(
+        new Turnover(accountId, BigDecimal.ONE, accountId)))), executor);
+    CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> forEachUpdate((accountId, i) ->
+      assertThat(repository.find(accountId).toString()).isNotEmpty()), executor);
+
+    CompletableFuture.allOf(pendingTransfersWriter, turnoverWriter, reader).join();
+    executor.shutdown();
+
+    IntStream.range(0, accounts).forEach(i -> {
+      Account account = repository.find(accountId(i));
+      assertThat(account.pendingTransfers()).hasSize(updates / accounts);
+      assertThat(account.turnovers()).hasSize(updates / accounts);
+    });
+  }
+
+  @Test
+  public void thatUpdateOfUnknownAccountIsRejected() {
+    assertThat(repository.update(accountId(-1), account -> {
+      throw new IllegalStateException("must not be called");
+    })).isFalse();
+  }
+
+  @Test
+  public void thatTurnoversOfAccountsWithoutViewAreParkedUntilItIsCreated() {
+    AccountId accountId = accountId(1);
+    Turnover turnover = new Turnover(accountId, BigDecimal.ONE, accountId(2));
+    repository.addTurnovers(accountId, Collections.singletonList(turnover));
+
+    // the parked turnovers are part of the checkpoint
+    InMemoryAccountViewViewRepository restored = new InMemoryAccountViewViewRepository();
+    restored.restore(repository.snapshot(), repository.parkedTurnovers());
+    restored.compute(accountId, account -> account(accountId));
+
+    assertThat(restored.find(accountId).turnovers()).containsExactly(turnover);
+    assertThat(restored.parkedTurnovers()).isEmpty();
+  }
+
+  private static void forEachUpdate(Update update) {
+    for (int i = 0; i < updates; i++) {
+      update.apply(accountId(i % accounts), i);
+    }
+  }
+
+  private static AccountId accountId(int i) {
+    return AccountId.of("Account-" + i);
+  }
+
+  private static Account account(AccountId accountId) {
+    return Account.builder()
+      .accountId(accountId)
+      .accountName(accountId.value())
+      .balance(BigDecimal.TEN)
+      .maxTurnovers(updates)
+      .build();
+  }
+
+  private interface Update {
+    void apply(AccountId accountId, int i);
+  }
+}
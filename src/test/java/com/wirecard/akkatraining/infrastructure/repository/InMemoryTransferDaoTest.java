@@ -0,0 +1,75 @@
+package com.wirecard.akkatraining.infrastructure.repository;
+
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.transfer.Status;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.view.Transfer;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryTransferDaoTest {
+
+  private final AccountId debtor = AccountId.of("Account-1");
+  private final AccountId creditor = AccountId.of("Account-2");
+  private final AccountId other = AccountId.of("Account-3");
+
+  @Test
+  public void thatTransfersOfAccountArePagedNewestFirst() {
+    InMemoryTransferDao dao = new InMemoryTransferDao(100);
+    dao.add(transfer("T-1", debtor, creditor, Status.SUCCESS));
+    dao.add(transfer("T-2", creditor, debtor, Status.SUCCESS));
+    dao.add(transfer("T-3", other, creditor, Status.FAILED));
+    dao.add(transfer("T-4", debtor, other, Status.SUCCESS));
+
+    assertThat(dao.findByAccount(debtor, 0, 2))
+      .extracting(t -> t.transferId().value())
+      .containsExactly("T-4", "T-2");
+    assertThat(dao.findByAccount(debtor, 2, 2))
+      .extracting(t -> t.transferId().value())
+      .containsExactly("T-1");
+    assertThat(dao.findByStatus(Status.FAILED.name(), 0, 10))
+      .extracting(t -> t.transferId().value())
+      .containsExactly("T-3");
+    assertThat(dao.find(new TransferId("T-3")).creditor()).isEqualTo(creditor);
+  }
+
+  @Test
+  public void thatOldestTransfersAreEvicted() {
+    InMemoryTransferDao dao = new InMemoryTransferDao(2);
+    dao.add(transfer("T-1", debtor, creditor, Status.FAILED));
+    dao.add(transfer("T-2", debtor, creditor, Status.SUCCESS));
+    dao.add(transfer("T-3", other, creditor, Status.SUCCESS));
+
+    assertThat(dao.size()).isEqualTo(2);
+    assertThat(dao.find(new TransferId("T-1"))).isNull();
+    assertThat(dao.findByStatus(Status.FAILED.name(), 0, 10)).isEmpty();
+    assertThat(dao.findByAccount(debtor, 0, 10))
+      .extracting(t -> t.transferId().value())
+      .containsExactly("T-2");
+    assertThat(dao.findByAccount(creditor, 0, 10)).hasSize(2);
+  }
+
+  @Test
+  public void thatReplayedTransferReplacesIndexEntries() {
+    InMemoryTransferDao dao = new InMemoryTransferDao(10);
+    dao.add(transfer("T-1", debtor, creditor, Status.FAILED));
+    dao.add(transfer("T-1", debtor, creditor, Status.SUCCESS));
+
+    assertThat(dao.size()).isEqualTo(1);
+    assertThat(dao.findByStatus(Status.FAILED.name(), 0, 10)).isEmpty();
+    assertThat(dao.findByAccount(debtor, 0, 10)).hasSize(1);
+  }
+
+  private static Transfer transfer(String id, AccountId debtor, AccountId creditor, Status status) {
+    return Transfer.builder()
+      .transferId(new TransferId(id))
+      .debtor(debtor)
+      .creditor(creditor)
+      .amount(BigDecimal.ONE)
+      .status(status.name())
+      .build();
+  }
+}
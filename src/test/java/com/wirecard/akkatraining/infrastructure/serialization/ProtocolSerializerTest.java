@@ -0,0 +1,225 @@
+package com.wirecard.akkatraining.infrastructure.serialization;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.SerializerWithStringManifest;
+import akka.testkit.javadsl.TestKit;
+import com.google.protobuf.ByteString;
+import com.wirecard.akkatraining.domain.Money;
+import com.wirecard.akkatraining.domain.account.AccountId;
+import com.wirecard.akkatraining.domain.account.AccountProtocol;
+import com.wirecard.akkatraining.domain.account.AccountState;
+import com.wirecard.akkatraining.domain.account.PendingTransfer;
+import com.wirecard.akkatraining.domain.account.ProcessedCommand;
+import com.wirecard.akkatraining.domain.transfer.BulkTransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.ConfirmationType;
+import com.wirecard.akkatraining.domain.transfer.Status;
+import com.wirecard.akkatraining.domain.transfer.TransferId;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferManagerState;
+import com.wirecard.akkatraining.domain.transfer.TransferProtocol;
+import com.wirecard.akkatraining.domain.transfer.TransferState;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.AccountMessages;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.CommonMessages;
+import com.wirecard.akkatraining.infrastructure.serialization.proto.TransferMessages;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.NotSerializableException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProtocolSerializerTest {
+
+  private static final AccountId debtor = AccountId.of("Account-1");
+  private static final AccountId creditor = AccountId.of("Account-2");
+  private static final TransferId transferId = new TransferId("Transfer-1");
+  private static final Money amount = Money.of("12.34", "EUR");
+
+  private static ActorSystem system;
+  private static Serialization serialization;
+
+  @BeforeClass
+  public static void setUp() {
+    system = ActorSystem.create();
+    serialization = SerializationExtension.get(system);
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    TestKit.shutdownActorSystem(system);
+  }
+
+  @Test
+  public void thatAccountEventsRoundTrip() {
+    PendingTransfer pendingTransfer = new PendingTransfer(transferId, amount, creditor);
+
+    assertRoundTrip(
+      new AccountProtocol.Created(debtor, "debtors-account", Money.of("10", "EUR"), Money.of("0", "EUR")));
+    assertRoundTrip(new AccountProtocol.MoneyAllocated(1L, transferId, debtor, creditor, amount));
+    assertRoundTrip(new AccountProtocol.DebitSuccessful(2L, debtor, pendingTransfer));
+    assertRoundTrip(new AccountProtocol.CreditSuccessful(3L, transferId, amount, creditor));
+    assertRoundTrip(new AccountState(Money.of("10", "EUR"), amount, Arrays.asList(pendingTransfer, pendingTransfer),
+      Arrays.asList(
+        new ProcessedCommand(ProcessedCommand.Kind.ALLOCATION, transferId, amount, creditor),
+        new ProcessedCommand(ProcessedCommand.Kind.DEBIT, transferId, amount, creditor))));
+  }
+
+  @Test
+  public void thatTransferEventsRoundTrip() {
+    assertRoundTrip(new TransferProtocol.TransferInitiated(transferId, debtor, creditor, amount, "correlation-1"));
+    assertRoundTrip(new TransferProtocol.AllocateMoneySent(new AccountProtocol.AllocateMoney(transferId, creditor, amount)));
+    assertRoundTrip(new TransferProtocol.CreditSent(new AccountProtocol.Credit(transferId, amount)));
+    assertRoundTrip(new TransferProtocol.DebitSent(new AccountProtocol.Debit(transferId)));
+    assertRoundTrip(
+      new TransferProtocol.RefundSent(new AccountProtocol.Credit(transferId, amount), "Currency mismatch! Refunded!"));
+    assertRoundTrip(new TransferProtocol.MessageConfirmed(4L, ConfirmationType.MONEY_ALLOCATION_FAILED));
+    assertRoundTrip(new TransferProtocol.MessageConfirmed(5L, ConfirmationType.REFUND));
+    assertRoundTrip(new TransferProtocol.MessageConfirmed(6L, ConfirmationType.DEBIT_REJECTED));
+    assertRoundTrip(new TransferProtocol.TransferCompleted(transferId, debtor, creditor, amount));
+    assertRoundTrip(new TransferProtocol.TransferFailed(transferId, debtor, creditor, amount, "Not enough balance!"));
+  }
+
+  @Test
+  public void thatTransferStateRoundTrips() {
+    assertRoundTrip(new TransferState(debtor, creditor, amount, Status.IN_PROGRESS, true, true, false, true, false,
+      "Currency mismatch! Refunded!", 3L,
+      Arrays.asList(
+        new TransferState.OutstandingDelivery(3L, debtor, new AccountProtocol.Debit(transferId)),
+        new TransferState.OutstandingDelivery(2L, creditor, new AccountProtocol.Credit(transferId, amount)))));
+  }
+
+  @Test
+  public void thatTransferManagerEventsRoundTrip() {
+    assertRoundTrip(new TransferManagerProtocol.TransferStarted(transferId));
+    assertRoundTrip(new TransferManagerProtocol.TransferFinished(transferId));
+    assertRoundTrip(new TransferManagerState(Arrays.asList(transferId, new TransferId("Transfer-2"))));
+  }
+
+  @Test
+  public void thatBulkTransferEventsRoundTrip() {
+    TransferId line = new TransferId("BulkTransfer-1-0");
+    assertRoundTrip(new AccountProtocol.MoneyAllocatedBatch(5L, debtor,
+      Collections.singletonList(new AccountProtocol.MoneyAllocated(0, line, debtor, creditor, amount)),
+      Collections.singletonList(
+        new AccountProtocol.MoneyAllocationFailed(0, transferId, debtor, "Not enough balance!"))));
+    assertRoundTrip(new AccountProtocol.DebitBatchSuccessful(6L, debtor,
+      Collections.singletonList(new PendingTransfer(line, amount, creditor)),
+      Collections.singletonList(
+        new AccountProtocol.DebitFailed(0, transferId, "No allocated money for such transfer"))));
+    assertRoundTrip(new AccountProtocol.CreditBatchSuccessful(7L, creditor,
+      Collections.singletonList(new AccountProtocol.CreditSuccessful(0, line, amount, creditor)),
+      Collections.singletonList(new AccountProtocol.CreditFailed(0, transferId, creditor, "Currency mismatch!"))));
+    assertRoundTrip(new BulkTransferProtocol.BulkTransferInitiated(new TransferId("BulkTransfer-1"),
+      Collections.singletonList(new BulkTransferProtocol.BulkTransferLine(debtor, creditor, amount)), "correlation-1"));
+    assertRoundTrip(new BulkTransferProtocol.AllocationsConfirmed(5L, debtor,
+      Collections.singletonList(new BulkTransferProtocol.LineRejected(1, "Not enough balance!"))));
+    assertRoundTrip(new BulkTransferProtocol.CreditsConfirmed(7L, creditor,
+      Collections.singletonList(new BulkTransferProtocol.LineRejected(2, "Currency mismatch! Refunded!"))));
+    assertRoundTrip(new BulkTransferProtocol.DebitsConfirmed(6L, debtor,
+      Collections.singletonList(new BulkTransferProtocol.LineRejected(3, "No allocated money for such transfer"))));
+    assertRoundTrip(new BulkTransferProtocol.CreditsRejected(7L, creditor));
+    assertRoundTrip(new BulkTransferProtocol.RefundsConfirmed(8L, debtor, creditor));
+    assertRoundTrip(new BulkTransferProtocol.BulkTransferFinished(new TransferId("BulkTransfer-1"),
+      Collections.singletonList(new TransferProtocol.TransferCompleted(line, debtor, creditor, amount)),
+      Collections.emptyList()));
+  }
+
+  @Test
+  public void thatVersionOneTransferEventsAreReadAsTypedEvents() throws Exception {
+    ProtocolSerializer serializer = new ProtocolSerializer();
+    byte[] messageSent = TransferMessages.MessageSent.newBuilder()
+      .setDebit(AccountMessages.Debit.newBuilder().setTransferId(transferId.value()))
+      .build()
+      .toByteArray();
+
+    assertThat(serializer.fromBinary(messageSent, "transfer.MessageSent.v1"))
+      .isEqualTo(new TransferProtocol.DebitSent(new AccountProtocol.Debit(transferId)));
+  }
+
+  @Test
+  public void thatVersionOneAmountsAreReadInTheLegacyCurrency() throws Exception {
+    ProtocolSerializer serializer = new ProtocolSerializer(Currency.getInstance("CHF"));
+    byte[] moneyAllocated = AccountMessages.MoneyAllocated.newBuilder()
+      .setDeliveryId(1L)
+      .setTransferId(transferId.value())
+      .setDebtor(debtor.value())
+      .setCreditor(creditor.value())
+      .setLegacyAmount(CommonMessages.Decimal.newBuilder()
+        .setUnscaled(ByteString.copyFrom(BigInteger.valueOf(1234).toByteArray()))
+        .setScale(2))
+      .build()
+      .toByteArray();
+
+    assertThat(serializer.fromBinary(moneyAllocated, "account.MoneyAllocated.v1"))
+      .isEqualTo(new AccountProtocol.MoneyAllocated(1L, transferId, debtor, creditor, Money.of("12.34", "CHF")));
+  }
+
+  @Test
+  public void thatVersionOneAmountsWithMoreDecimalsThanTheLegacyCurrencyAreNotRounded() {
+    ProtocolSerializer serializer = new ProtocolSerializer(Currency.getInstance("EUR"));
+    byte[] creditSuccessful = AccountMessages.CreditSuccessful.newBuilder()
+      .setDeliveryId(1L)
+      .setTransferId(transferId.value())
+      .setCreditor(creditor.value())
+      .setLegacyAmount(CommonMessages.Decimal.newBuilder()
+        .setUnscaled(ByteString.copyFrom(BigInteger.valueOf(12345).toByteArray()))
+        .setScale(3))
+      .build()
+      .toByteArray();
+
+    assertThatThrownBy(() -> serializer.fromBinary(creditSuccessful, "account.CreditSuccessful.v1"))
+      .isInstanceOf(NotSerializableException.class)
+      .hasMessageContaining("account.CreditSuccessful.v1")
+      .hasMessageContaining("12.345");
+  }
+
+  @Test
+  public void thatAmountsWithAnUnknownCurrencyAreNotSerializable() {
+    ProtocolSerializer serializer = new ProtocolSerializer(Currency.getInstance("EUR"));
+    byte[] moneyAllocated = AccountMessages.MoneyAllocated.newBuilder()
+      .setDeliveryId(1L)
+      .setTransferId(transferId.value())
+      .setDebtor(debtor.value())
+      .setCreditor(creditor.value())
+      .setAmount(CommonMessages.Money.newBuilder().setMinorUnits(1234).setCurrency("XX"))
+      .build()
+      .toByteArray();
+
+    assertThatThrownBy(() -> serializer.fromBinary(moneyAllocated, "account.MoneyAllocated.v2"))
+      .isInstanceOf(NotSerializableException.class)
+      .hasMessageContaining("account.MoneyAllocated.v2");
+  }
+
+  @Test
+  public void thatEmptyVersionOneAmountsAreNotSerializable() {
+    ProtocolSerializer serializer = new ProtocolSerializer(Currency.getInstance("EUR"));
+    byte[] creditSuccessful = AccountMessages.CreditSuccessful.newBuilder()
+      .setDeliveryId(1L)
+      .setTransferId(transferId.value())
+      .setCreditor(creditor.value())
+      .build()
+      .toByteArray();
+
+    assertThatThrownBy(() -> serializer.fromBinary(creditSuccessful, "account.CreditSuccessful.v1"))
+      .isInstanceOf(NotSerializableException.class)
+      .hasMessageContaining("account.CreditSuccessful.v1");
+  }
+
+  private static void assertRoundTrip(Object event) {
+    assertThat(serialization.findSerializerFor(event)).isInstanceOf(ProtocolSerializer.class);
+    SerializerWithStringManifest serializer = (SerializerWithStringManifest) serialization.findSerializerFor(event);
+
+    byte[] bytes = serializer.toBinary(event);
+    String manifest = serializer.manifest(event);
+
+    assertThat(serialization.deserialize(bytes, serializer.identifier(), manifest).get()).isEqualTo(event);
+  }
+}